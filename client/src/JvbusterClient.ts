@@ -119,6 +119,9 @@ export class JvbusterClient {
     private waitingSdpOffersAccept;
 
     private offers: Offer[] = [];
+    private offersETag: string | null = null;
+    private offersStream: AbortController | null = null;
+    private readonly expiredEndpoints: Set<string> = new Set();
     private firstAnswerProcessed: boolean = false;
 
     constructor(
@@ -468,6 +471,10 @@ a=mid:confId-${offer.conferenceId}\r
 
     private clearInternalStructures() {
         this.updateOffersDelayed.cancel();
+        if(this.offersStream) {
+            this.offersStream.abort();
+            this.offersStream = null;
+        }
         this.pinnedEndpoints.clear();
         this.lastMedias.clear();
         this.lastAudioChannelIds.clear();
@@ -475,6 +482,8 @@ a=mid:confId-${offer.conferenceId}\r
         this.lastStreams.clear();
         this.lastSessionVersions.clear();
         this.offers = [];
+        this.offersETag = null;
+        this.expiredEndpoints.clear();
         this.firstAnswerProcessed = false;
     }
 
@@ -493,6 +502,7 @@ a=mid:confId-${offer.conferenceId}\r
         if(this.onEndpoints) {
             this.onEndpoints(this.getEndpoints());
         }
+        this.streamOffers();
         return this.offers.map(x => this.toOfferSdp(x)!);
     }
 
@@ -537,6 +547,7 @@ a=mid:confId-${offer.conferenceId}\r
                 this.updateOffersDelayed.delay(100);
             }
         } else if(evt.colibriClass === 'EndpointExpiredEvent' && evt.endpoint !== this.endpoint) {
+            this.expiredEndpoints.add(evt.endpoint);
             this.updateOffersDelayed.delay(100);
         } else if(evt.colibriClass === 'NewVideobridgeAddedToConference') {
             throw 'Not implemented';
@@ -552,13 +563,105 @@ a=mid:confId-${offer.conferenceId}\r
     }
 
     private async updateOffers():Promise<void> {
+        // an endpoint may expire on the videobridge without any change of the conference version
+        const expiredEndpointPresent = this.getEndpoints().some(x => this.expiredEndpoints.has(x));
+        this.expiredEndpoints.clear();
+        const headers: Record<string, string> = {
+            'Authorization': 'Bearer ' + this.token
+        };
+        if(this.offersETag && !expiredEndpointPresent) {
+            headers['If-None-Match'] = this.offersETag;
+        }
         const offersResponse = await fetch(`${this.address}/signaling-new/current-offers`, {
             method: 'GET',
-            headers: {
-                'Authorization': 'Bearer ' + this.token
-            }
+            headers: headers
         });
+        if(offersResponse.status === 304) {
+            this.logger.debug('JvbusterClient', 'offers have not been modified');
+            return;
+        }
         this.offers = await this.getOffers(offersResponse);
+        this.offersETag = offersResponse.headers.get('ETag');
+        if(this.onEndpoints) {
+            this.onEndpoints(this.getEndpoints());
+        }
+    }
+
+    private streamOffers(): void {
+        const stream = new AbortController();
+        this.offersStream = stream;
+        this.readOffersStream(stream.signal)
+            .catch(e => {
+                if(!stream.signal.aborted) {
+                    this.logger.warn('JvbusterClient', `offers stream error: ${e}`);
+                }
+            })
+            .finally(() => {
+                // the stream is opened again until the client is stopped
+                setTimeout(() => {
+                    if(this.offersStream === stream) {
+                        this.streamOffers();
+                    }
+                }, 1000);
+            });
+    }
+
+    private async readOffersStream(signal: AbortSignal): Promise<void> {
+        const headers: Record<string, string> = {
+            'Authorization': 'Bearer ' + this.token,
+            'Accept': 'text/event-stream'
+        };
+        if(this.offersETag) {
+            headers['Last-Event-ID'] = this.offersETag.replace(/"/g, '');
+        }
+        const response = await fetch(`${this.address}/signaling-new/offers-stream`, {
+            method: 'GET',
+            headers: headers,
+            signal: signal
+        });
+        if(response.status !== 200 || !response.body) {
+            throw `Bad response. Response(status=${response.status}, statusText=${response.statusText})`;
+        }
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+        while(true) {
+            const {done, value} = await reader.read();
+            if(done) return;
+            buffer += decoder.decode(value, {stream: true});
+            let eventEnd;
+            while((eventEnd = buffer.indexOf('\n\n')) >= 0) {
+                this.processOffersEvent(buffer.substring(0, eventEnd));
+                buffer = buffer.substring(eventEnd + 2);
+            }
+        }
+    }
+
+    private processOffersEvent(evt: string): void {
+        let id: string | null = null;
+        let name = 'message';
+        const data: string[] = [];
+        for(const line of evt.split('\n')) {
+            // comments are heartbeats
+            if(line.startsWith(':')) continue;
+            const colon = line.indexOf(':');
+            const field = colon < 0 ? line : line.substring(0, colon);
+            let value = colon < 0 ? '' : line.substring(colon + 1);
+            if(value.startsWith(' ')) value = value.substring(1);
+            if(field === 'id') id = value;
+            else if(field === 'event') name = value;
+            else if(field === 'data') data.push(value);
+        }
+        if(name !== 'offers' || data.length === 0) return;
+        const offersText = data.join('\n');
+        const offers = JSON.parse(offersText);
+        if(!Array.isArray(offers)) {
+            this.logger.warn('JvbusterClient', `Bad offers event. This is the wrong event:\n${offersText}`);
+            return;
+        }
+        this.logger.debug('JvbusterClient', `pushed offers=${offersText}`);
+        this.offers = offers;
+        this.offersETag = id ? `"${id}"` : null;
         if(this.onEndpoints) {
             this.onEndpoints(this.getEndpoints());
         }
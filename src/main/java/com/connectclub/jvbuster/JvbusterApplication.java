@@ -1,10 +1,13 @@
 package com.connectclub.jvbuster;
 
+import com.connectclub.jvbuster.utils.MDCCopyHelper;
 import net.javacrumbs.shedlock.core.LockProvider;
 import net.javacrumbs.shedlock.provider.redis.spring.RedisLockProvider;
 import net.javacrumbs.shedlock.spring.annotation.EnableSchedulerLock;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
@@ -13,6 +16,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -22,6 +26,7 @@ import org.springframework.web.filter.CommonsRequestLoggingFilter;
 
 import javax.servlet.http.HttpServletRequest;
 import java.time.Instant;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
@@ -45,17 +50,19 @@ public class JvbusterApplication {
     @Bean
     public CommonsRequestLoggingFilter logFilter() {
         CommonsRequestLoggingFilter filter = new CommonsRequestLoggingFilter() {
-            private final ThreadLocal<Instant> endRequestThreshold = new ThreadLocal<>();
+            // kept in the request, an asynchronous request ends on another thread
+            private final String endRequestThresholdAttribute = getClass().getName() + ".END_REQUEST_THRESHOLD";
 
             @Override
             protected void beforeRequest(HttpServletRequest request, String message) {
                 super.beforeRequest(request, message);
-                endRequestThreshold.set(Instant.now().plusSeconds(5));
+                request.setAttribute(endRequestThresholdAttribute, Instant.now().plusSeconds(5));
             }
 
             @Override
             protected void afterRequest(HttpServletRequest request, String message) {
-                if(Instant.now().isAfter(endRequestThreshold.get())) {
+                Instant endRequestThreshold = (Instant) request.getAttribute(endRequestThresholdAttribute);
+                if(endRequestThreshold != null && Instant.now().isAfter(endRequestThreshold)) {
                     logger.warn(message + " (It took too long!)");
                 } else {
                     logger.debug(message);
@@ -69,14 +76,92 @@ public class JvbusterApplication {
     }
 
     @Bean
-    public OkHttpClient okHttpClient() {
+    public OkHttpClient okHttpClient(
+            @Value("${jvb.client.max-requests}") int maxRequests,
+            @Value("${jvb.client.max-requests-per-host}") int maxRequestsPerHost
+    ) {
+        // Limits only apply to the asynchronous calls
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
         return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
                 .connectTimeout(5, TimeUnit.SECONDS)
                 .writeTimeout(5, TimeUnit.SECONDS)
                 .readTimeout(5, TimeUnit.SECONDS)
                 .build();
     }
 
+    @Bean
+    public ThreadPoolTaskExecutor fanOutExecutor(
+            @Value("${jvb.fan-out.pool-size}") int poolSize,
+            @Value("${jvb.fan-out.queue-capacity}") int queueCapacity
+    ) {
+        // Continuations of the videobridge requests, so the okhttp threads only do the I/O
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("fan-out-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(JvbusterApplication::copyMDC);
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor signalingExecutor(
+            @Value("${jvb.signaling.pool-size}") int poolSize,
+            @Value("${jvb.signaling.queue-capacity}") int queueCapacity
+    ) {
+        // Short blocking steps of the signaling requests (database, conference creation), the request threads
+        // are released as soon as the request is accepted, an overload fails the requests instead of queueing them
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("signaling-");
+        executor.setTaskDecorator(JvbusterApplication::copyMDC);
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor syncExecutor(
+            @Value("${jvb.conference.sync.pool-size}") int poolSize
+    ) {
+        // Octo syncs requested by the signaling, they block on the locks and the videobridges
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("sync-");
+        executor.setTaskDecorator(JvbusterApplication::copyMDC);
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor pushExecutor(
+            @Value("${jvb.offers-push.pool-size}") int poolSize
+    ) {
+        // Offers pushed to the subscribed endpoints, they block on writing to the streams
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("push-");
+        executor.setTaskDecorator(JvbusterApplication::copyMDC);
+        return executor;
+    }
+
+    private static Runnable copyMDC(Runnable runnable) {
+        MDCCopyHelper mdcCopyHelper = new MDCCopyHelper();
+        return () -> {
+            mdcCopyHelper.set();
+            try {
+                runnable.run();
+            } finally {
+                mdcCopyHelper.clear();
+            }
+        };
+    }
+
     @Bean
     public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
         return new TransactionTemplate(transactionManager, new TransactionDefinition() {
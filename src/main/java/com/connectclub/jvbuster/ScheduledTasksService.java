@@ -2,6 +2,8 @@ package com.connectclub.jvbuster;
 
 import com.connectclub.jvbuster.monitoring.i.JvbConferencesTasksService;
 import com.connectclub.jvbuster.monitoring.i.JvbInstancesTasksService;
+import com.connectclub.jvbuster.videobridge.i.EndpointTeardownService;
+import com.connectclub.jvbuster.web.OffersPush;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.redisson.api.RAtomicLong;
@@ -17,6 +19,10 @@ public class ScheduledTasksService {
 
     private final JvbConferencesTasksService jvbConferencesTasksService;
 
+    private final EndpointTeardownService endpointTeardownService;
+
+    private final OffersPush offersPush;
+
     private final RAtomicLong cacheConferencesLaunchTime;
     private final RAtomicLong expireConferenceLaunchTime;
     private final RAtomicLong stopAndScaleInstancesLaunchTime;
@@ -24,10 +30,14 @@ public class ScheduledTasksService {
     public ScheduledTasksService(
             JvbInstancesTasksService jvbInstancesTasksService,
             JvbConferencesTasksService jvbConferencesTasksService,
+            EndpointTeardownService endpointTeardownService,
+            OffersPush offersPush,
             RedissonClient redissonClient
     ) {
         this.jvbInstancesTasksService = jvbInstancesTasksService;
         this.jvbConferencesTasksService = jvbConferencesTasksService;
+        this.endpointTeardownService = endpointTeardownService;
+        this.offersPush = offersPush;
         cacheConferencesLaunchTime = redissonClient.getAtomicLong("CacheConferencesLaunchTime");
         expireConferenceLaunchTime = redissonClient.getAtomicLong("ExpireConferenceLaunchTime");
         stopAndScaleInstancesLaunchTime = redissonClient.getAtomicLong("StopAndScaleInstancesLaunchTime");
@@ -62,4 +72,24 @@ public class ScheduledTasksService {
             log.error("cacheAndMonitor exception", e);
         }
     }
+
+    // not locked, every jvbuster takes its own share of the queue
+    @Scheduled(fixedDelayString = "${jvb.endpoint-teardown.poll-interval-in-millis}")
+    public void processEndpointTeardowns() {
+        try {
+            endpointTeardownService.processDue();
+        } catch (Exception e) {
+            log.error("processEndpointTeardowns exception", e);
+        }
+    }
+
+    // not locked, every jvbuster keeps its own streams
+    @Scheduled(fixedDelayString = "${jvb.offers-push.heartbeat-interval-in-millis}")
+    public void sendOffersPushHeartbeats() {
+        try {
+            offersPush.sendHeartbeats();
+        } catch (Exception e) {
+            log.error("sendOffersPushHeartbeats exception", e);
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package com.connectclub.jvbuster.monitoring;
+
+import com.connectclub.jvbuster.monitoring.i.ConferenceSyncService;
+import com.connectclub.jvbuster.monitoring.i.JvbConferencesTasksService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+@Slf4j
+@Service
+public class DefaultConferenceSyncService implements ConferenceSyncService {
+
+    private final JvbConferencesTasksService jvbConferencesTasksService;
+    private final Executor syncExecutor;
+
+    // syncs which have been requested but have not started yet
+    private final ConcurrentMap<String, CompletableFuture<Void>> pendingSyncs = new ConcurrentHashMap<>();
+
+    public DefaultConferenceSyncService(
+            JvbConferencesTasksService jvbConferencesTasksService,
+            @Qualifier("syncExecutor") Executor syncExecutor
+    ) {
+        this.jvbConferencesTasksService = jvbConferencesTasksService;
+        this.syncExecutor = syncExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Void> requestSync(String gid) {
+        CompletableFuture<Void> sync = new CompletableFuture<>();
+        CompletableFuture<Void> pendingSync = pendingSyncs.putIfAbsent(gid, sync);
+        if (pendingSync != null) {
+            return pendingSync;
+        }
+        try {
+            syncExecutor.execute(() -> {
+                // a request arriving from now on may carry changes this sync does not see
+                pendingSyncs.remove(gid, sync);
+                try {
+                    jvbConferencesTasksService.syncConferences(gid);
+                    sync.complete(null);
+                } catch (Exception e) {
+                    log.error("Conferences sync failed(gid={})", gid, e);
+                    sync.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingSyncs.remove(gid, sync);
+            sync.completeExceptionally(e);
+        }
+        return sync;
+    }
+}
@@ -5,21 +5,24 @@ import com.connectclub.jvbuster.repository.data.JvbConferenceData;
 import com.connectclub.jvbuster.repository.data.JvbInstanceData;
 import com.connectclub.jvbuster.repository.i.JvbConferenceDataRepository;
 import com.connectclub.jvbuster.repository.i.JvbInstanceDataRepository;
-import com.connectclub.jvbuster.utils.MDCCopyHelper;
 import com.connectclub.jvbuster.utils.MethodSync;
 import com.connectclub.jvbuster.utils.MethodSyncArg;
+import com.connectclub.jvbuster.utils.Outbox;
 import com.connectclub.jvbuster.videobridge.JvbConferenceUtils;
 import com.connectclub.jvbuster.videobridge.JvbInstance;
 import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,14 +37,25 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
     private final int jvbInstanceSpeakerMaxUtilization;
     private final int jvbInstanceListenerMaxUtilization;
 
-    private final OkHttpClient okHttpClient;
+    private final JvbInstanceRegistryService jvbInstanceRegistryService;
+    private final ConferenceSnapshotService conferenceSnapshotService;
+    private final long syncMaxStalenessInMillis;
+
+    private final TransactionTemplate transactionTemplate;
+    private final RedissonClient redissonClient;
+    private final ConferenceVersionService conferenceVersionService;
 
     public DefaultJvbConferencesTasksService(
             @Value("${jvb.conference.instance-max-utilization.speaker}") int jvbInstanceSpeakerMaxUtilization,
             @Value("${jvb.conference.instance-max-utilization.listener}") int jvbInstanceListenerMaxUtilization,
+            @Value("${jvb.conference.snapshot.sync-max-staleness-in-millis}") long syncMaxStalenessInMillis,
             JvbConferenceDataRepository jvbConferenceDataRepository,
             JvbInstanceDataRepository jvbInstanceDataRepository,
-            OkHttpClient okHttpClient
+            JvbInstanceRegistryService jvbInstanceRegistryService,
+            ConferenceSnapshotService conferenceSnapshotService,
+            TransactionTemplate transactionTemplate,
+            RedissonClient redissonClient,
+            ConferenceVersionService conferenceVersionService
     ) {
         this.jvbInstanceSpeakerMaxUtilization = jvbInstanceSpeakerMaxUtilization;
         this.jvbInstanceListenerMaxUtilization = jvbInstanceListenerMaxUtilization;
@@ -49,56 +63,122 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
         this.jvbConferenceDataRepository = jvbConferenceDataRepository;
         this.jvbInstanceDataRepository = jvbInstanceDataRepository;
 
-        this.okHttpClient = okHttpClient;
+        this.jvbInstanceRegistryService = jvbInstanceRegistryService;
+        this.conferenceSnapshotService = conferenceSnapshotService;
+        this.syncMaxStalenessInMillis = syncMaxStalenessInMillis;
+
+        this.transactionTemplate = transactionTemplate;
+        this.redissonClient = redissonClient;
+        this.conferenceVersionService = conferenceVersionService;
     }
 
-    private List<Conference> getConferencesFromInstance(JvbInstance jvbInstance) {
+    private static List<Conference> awaitConferencesFromInstance(JvbInstanceData jvbInstanceData, CompletableFuture<List<Conference>> conferences) {
         try {
-            return jvbInstance.getConferences();
+            return JvbInstance.await(conferences);
         } catch (Exception e) {
-            log.warn("Can not get conferences from instance(id={})", jvbInstance.getId(), e);
+            log.warn("Can not get conferences from instance(id={})", jvbInstanceData.getId(), e);
             return List.of();
         }
     }
 
+    // the same lock as `@MethodSync(lockName = "conference")` of the signaling methods with the gid argument
+    private RLock conferenceWriteLock(String gid) {
+        return redissonClient.getReadWriteLock("conference-" + gid).writeLock();
+    }
+
     @Override
-    @MethodSync(lockName = "conference-global", mode = MethodSync.Mode.WRITE)
-    @Transactional
     public void cacheConferences() {
         List<JvbInstanceData> liveInstances = jvbInstanceDataRepository.findAllByRespondingIsTrue();
 
-        MDCCopyHelper mdcCopyHelper = new MDCCopyHelper();
-        List<JvbConferenceData> jvbConferenceDataList = liveInstances.parallelStream()
-                .peek(mdcCopyHelper::set)
-                .map(x -> JvbInstance.from(x, okHttpClient))
-                .flatMap(jvbInstance -> getConferencesFromInstance(jvbInstance).stream()
-                        .filter(conf -> conf.getGid() != null && !conf.getGid().isBlank())
-                        .map(conf -> JvbConferenceData.builder()
-                                .id(JvbConferenceData.buildId(conf.getGid(), conf.getId()))
-                                .gid(conf.getGid())
-                                .confId(conf.getId())
-                                .instance(jvbInstanceDataRepository.getOne(jvbInstance.getId()))
-                                .build())
-                )
-                .peek(mdcCopyHelper::clear)
-                .collect(Collectors.toList());
+        Map<String, CompletableFuture<List<Conference>>> instancesConferences = new LinkedHashMap<>();
+        liveInstances.forEach(x -> instancesConferences.put(x.getId(), jvbInstanceRegistryService.get(x).getConferencesAsync()));
 
-        List<String> ids = jvbConferenceDataList.stream()
-                .map(JvbConferenceData::getId)
-                .collect(Collectors.toList());
-        if (ids.isEmpty()) {
-            jvbConferenceDataRepository.deleteAll();
-        } else {
-            jvbConferenceDataRepository.deleteAllByIdNotIn(ids);
+        Map<String, Map<String, JvbConferenceData>> remoteConferences = new HashMap<>();
+        for (JvbInstanceData jvbInstanceData : liveInstances) {
+            awaitConferencesFromInstance(jvbInstanceData, instancesConferences.get(jvbInstanceData.getId())).stream()
+                    .filter(conf -> conf.getGid() != null && !conf.getGid().isBlank())
+                    .map(conf -> JvbConferenceData.builder()
+                            .id(JvbConferenceData.buildId(conf.getGid(), conf.getId()))
+                            .gid(conf.getGid())
+                            .confId(conf.getId())
+                            .instance(jvbInstanceData)
+                            .build())
+                    .forEach(x -> remoteConferences.computeIfAbsent(x.getGid(), gid -> new HashMap<>()).put(x.getId(), x));
+        }
+        Map<String, Set<String>> localConferences = new HashMap<>();
+        jvbConferenceDataRepository.findAll()
+                .forEach(x -> localConferences.computeIfAbsent(x.getGid(), gid -> new HashSet<>()).add(x.getId()));
+
+        Set<String> gids = new HashSet<>(remoteConferences.keySet());
+        gids.addAll(localConferences.keySet());
+        Set<String> retainedIds = new HashSet<>();
+        for (String gid : gids) {
+            Map<String, JvbConferenceData> remote = remoteConferences.getOrDefault(gid, Map.of());
+            Set<String> local = localConferences.getOrDefault(gid, Set.of());
+            retainedIds.addAll(remote.keySet());
+            retainedIds.addAll(local);
+            // only the conferences which differ are locked, signaling in the others goes on
+            if (remote.keySet().equals(local)) {
+                continue;
+            }
+            try {
+                retainedIds.removeAll(reconcileConferences(gid, remote));
+            } catch (Exception e) {
+                log.error("Reconcile of conferences(gid={}) failed", gid, e);
+            }
+        }
+        conferenceSnapshotService.retain(retainedIds);
+    }
+
+    /**
+     * @return ids of the deleted conferences
+     */
+    private List<String> reconcileConferences(String gid, Map<String, JvbConferenceData> remote) {
+        RLock lock = conferenceWriteLock(gid);
+        lock.lock();
+        try {
+            List<JvbConferenceData> local = jvbConferenceDataRepository.findAllByGid(gid);
+            // a conference may have been created after the videobridges were asked, so it is checked once more
+            List<JvbConferenceData> missing = local.stream()
+                    .filter(x -> !remote.containsKey(x.getId()))
+                    .collect(Collectors.toList());
+            List<CompletableFuture<Conference>> checks = missing.stream()
+                    .map(x -> jvbInstanceRegistryService.get(x.getInstance()).getConferenceAsync(x.getConfId()))
+                    .collect(Collectors.toList());
+            List<String> goneIds = new ArrayList<>();
+            for (int i = 0; i < missing.size(); i++) {
+                try {
+                    JvbInstance.await(checks.get(i));
+                } catch (Exception e) {
+                    goneIds.add(missing.get(i).getId());
+                }
+            }
+            Set<String> localIds = local.stream().map(JvbConferenceData::getId).collect(Collectors.toSet());
+            List<JvbConferenceData> added = remote.values().stream()
+                    .filter(x -> !localIds.contains(x.getId()))
+                    .collect(Collectors.toList());
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!goneIds.isEmpty()) {
+                    jvbConferenceDataRepository.deleteAll(jvbConferenceDataRepository.findAllById(goneIds));
+                }
+                jvbConferenceDataRepository.saveAll(added);
+            });
+            if (!goneIds.isEmpty() || !added.isEmpty()) {
+                conferenceVersionService.bump(gid);
+            }
+            return goneIds;
+        } finally {
+            lock.unlock();
         }
-        jvbConferenceDataRepository.saveAll(jvbConferenceDataList);
     }
 
     @Override
-    @Transactional
     public void scaleConferences(boolean forSpeakers) {
+        // instances with an open circuit breaker are skipped without waiting for the next `cacheInstances`
         JvbInstanceData newInstanceCandidate = jvbInstanceDataRepository
-                .findFirstByRespondingIsTrueAndScheduledForRemovalIsFalseAndShutdownInProgressIsFalseAndForSpeakersOrderByUtilization(forSpeakers)
+                .findAllByRespondingIsTrueAndScheduledForRemovalIsFalseAndShutdownInProgressIsFalseAndForSpeakersOrderByUtilization(forSpeakers).stream()
+                .filter(x -> jvbInstanceRegistryService.isAvailable(x.getId()))
+                .findFirst()
                 .orElse(null);
         jvbConferenceDataRepository.findAllByInstanceForSpeakers(forSpeakers).stream()
                 .collect(Collectors.groupingBy(JvbConferenceData::getGid))
@@ -109,14 +189,28 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
                                 .collect(Collectors.toList());
                         int jvbInstanceMaxUtilization = forSpeakers ? jvbInstanceSpeakerMaxUtilization : jvbInstanceListenerMaxUtilization;
                         boolean needNewInstance = jvbInstanceDataList.stream()
-                                .mapToInt(JvbInstanceData::getUtilization)
-                                .allMatch(x -> x >= jvbInstanceMaxUtilization);
+                                .allMatch(x -> x.getUtilization() >= jvbInstanceMaxUtilization || !jvbInstanceRegistryService.isAvailable(x.getId()));
                         if (needNewInstance) {
-                            if (newInstanceCandidate == null || jvbConferenceDataList.stream().anyMatch(x -> Objects.equals(x.getInstance(), newInstanceCandidate))) {
+                            // the entities are detached here, so instances are compared by id
+                            if (newInstanceCandidate == null || jvbConferenceDataList.stream().anyMatch(x -> Objects.equals(x.getInstance().getId(), newInstanceCandidate.getId()))) {
                                 log.warn("Conference(gid={}) need new JVB instance but there is no suitable candidate for expansion", gid);
                             } else {
                                 log.info("Conference(gid={}) will be expand on JVB instance(id={})", gid, newInstanceCandidate.getId());
-                                Conference newConference = JvbInstance.from(newInstanceCandidate, okHttpClient).createConference(gid);
+                                Conference newConference = jvbInstanceRegistryService.get(newInstanceCandidate).createConference(gid);
+                                Outbox outbox = new Outbox();
+                                if (forSpeakers) {
+                                    for (JvbConferenceData jvbConferenceData : jvbConferenceDataList) {
+                                        JvbInstance instance = jvbInstanceRegistryService.get(jvbConferenceData.getInstance());
+                                        String confId = jvbConferenceData.getConfId();
+                                        outbox.record(
+                                                String.format("broadcast `NewVideobridgeAddedToConference` message. instanceId=%s,confId=%s", instance.getId(), confId),
+                                                () -> {
+                                                    instance.broadcastMessage(confId, "NewVideobridgeAddedToConference", Map.of("videobridgeId", newInstanceCandidate.getId()));
+                                                    log.info("`NewVideobridgeAddedToConference` message for conference(confId={}) has been broadcasted on JVB instance(id={})", confId, instance.getId());
+                                                }
+                                        );
+                                    }
+                                }
                                 jvbConferenceDataRepository.save(
                                         JvbConferenceData.builder()
                                                 .id(JvbConferenceData.buildId(gid, newConference.getId()))
@@ -125,28 +219,11 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
                                                 .instance(newInstanceCandidate)
                                                 .build()
                                 );
-                                if (forSpeakers) {
-                                    jvbInstanceDataList.stream()
-                                            .map(x -> JvbInstance.from(x, okHttpClient))
-                                            .forEach(instance -> {
-                                                String confId = jvbConferenceDataList.stream()
-                                                        .filter(conf -> Objects.equals(conf.getInstance().getId(), instance.getId()))
-                                                        .map(JvbConferenceData::getConfId)
-                                                        .findFirst()
-                                                        .orElseThrow(() -> new NoSuchElementException(String.format("Can not find conference(instanceId=%s) in cache=%s", instance.getId(), jvbConferenceDataList)));
-                                                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                                                    @Override
-                                                    public void afterCommit() {
-                                                        try {
-                                                            instance.broadcastMessage(confId, "NewVideobridgeAddedToConference", Map.of("videobridgeId", newInstanceCandidate.getId()));
-                                                            log.info("`NewVideobridgeAddedToConference` message for conference(confId={}) has been broadcasted on JVB instance(id={})", confId, instance.getId());
-                                                        } catch (Exception e) {
-                                                            log.error("Broadcast `NewVideobridgeAddedToConference` message error. instanceId={},confId={}", instance.getId(), confId, e);
-                                                        }
-                                                    }
-                                                });
-                                            });
-                                }
+                                outbox.record(
+                                        String.format("bump version of conference(gid=%s)", gid),
+                                        () -> conferenceVersionService.bump(gid)
+                                );
+                                outbox.run();
                             }
                         }
                     } catch (Exception e) {
@@ -156,38 +233,72 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
     }
 
     @Override
-    @MethodSync(lockName = "conference-global", mode = MethodSync.Mode.WRITE)
-    @Transactional
     public void expireConferences() {
         List<JvbInstanceData> liveInstances = jvbInstanceDataRepository.findAllByRespondingIsTrue();
 
-        Set<String> expiredConfGid = new HashSet<>();
+        List<CompletableFuture<List<Conference>>> instancesExpiredConferences = liveInstances.stream()
+                .map(x -> jvbInstanceRegistryService.get(x).expireConferencesAsync())
+                .collect(Collectors.toList());
 
-        liveInstances.forEach(instanceData -> {
+        Map<String, List<String>> expiredIdsByGid = new HashMap<>();
+        for (int i = 0; i < liveInstances.size(); i++) {
+            JvbInstanceData instanceData = liveInstances.get(i);
             try {
-                List<Conference> expiredConferences = JvbInstance.from(instanceData, okHttpClient).expireConferences();
-                expiredConferences.forEach(conf -> jvbConferenceDataRepository.deleteById(JvbConferenceData.buildId(conf.getGid(), conf.getId())));
-                expiredConfGid.addAll(expiredConferences.stream().map(Conference::getGid).collect(Collectors.toList()));
+                JvbInstance.await(instancesExpiredConferences.get(i)).stream()
+                        .filter(conf -> conf.getGid() != null && !conf.getGid().isBlank())
+                        .forEach(conf -> expiredIdsByGid.computeIfAbsent(conf.getGid(), gid -> new ArrayList<>())
+                                .add(JvbConferenceData.buildId(conf.getGid(), conf.getId())));
             } catch (Exception e) {
                 log.error("Error when expire conferences on instance(id={}, host={}))", instanceData.getId(), instanceData.getHost(), e);
             }
+        }
+        expiredIdsByGid.forEach((gid, expiredIds) -> {
+            RLock lock = conferenceWriteLock(gid);
+            lock.lock();
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jvbConferenceDataRepository.deleteAll(jvbConferenceDataRepository.findAllById(expiredIds))
+                );
+                expiredIds.forEach(conferenceSnapshotService::invalidate);
+                conferenceVersionService.bump(gid);
+            } catch (Exception e) {
+                log.error("Error when delete expired conferences(gid={})", gid, e);
+            } finally {
+                lock.unlock();
+            }
+            syncConferences(gid);
         });
-        expiredConfGid.forEach(this::syncConferences);
     }
 
-    private Conference getConference(JvbConferenceData jvbConferenceData) {
-        JvbInstanceData jvbInstanceData = jvbConferenceData.getInstance();
+    private static Conference awaitConference(CompletableFuture<Conference> conference) {
         try {
-            return JvbInstance.from(jvbInstanceData, okHttpClient).getConference(jvbConferenceData.getConfId());
+            return JvbInstance.await(conference);
         } catch (Exception e) {
             log.error("Error when get conference", e);
             return null;
         }
     }
 
+    // the offers of the listeners depend on the endpoints and the relayed sources of their videobridge
+    private static Set<Object> getOctoState(Conference conference) {
+        Set<Object> state = new HashSet<>();
+        Stream.ofNullable(conference.getEndpoints()).forEach(state::addAll);
+        Stream.ofNullable(conference.getContents())
+                .flatMap(Collection::stream)
+                .flatMap(x -> Stream.ofNullable(x.getChannels()).flatMap(Collection::stream))
+                .filter(x -> x instanceof OctoChannel)
+                .map(OctoChannel.class::cast)
+                .forEach(channel -> {
+                    Stream.ofNullable(channel.getSources()).flatMap(Collection::stream)
+                            .forEach(x -> state.add(Map.entry(channel.getId(), x)));
+                    Stream.ofNullable(channel.getSsrcGroups()).flatMap(Collection::stream)
+                            .forEach(x -> state.add(Map.entry(channel.getId(), x)));
+                });
+        return state;
+    }
+
     @Override
     @MethodSync(lockName = "sync-conference")
-    @Transactional
     public void syncConferences(@MethodSyncArg String gid) {
         try {
             Long.parseLong(gid, 16);
@@ -198,7 +309,9 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
         List<JvbConferenceData> conferencesDataForListeners = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(gid, false);
         if (conferencesDataForSpeakers.size() == 0 && conferencesDataForListeners.size() == 0) return;
         List<Conference> conferencesForSpeakers = conferencesDataForSpeakers.stream()
-                .map(this::getConference)
+                .map(x -> conferenceSnapshotService.get(x, syncMaxStalenessInMillis))
+                .collect(Collectors.toList()).stream()
+                .map(DefaultJvbConferencesTasksService::awaitConference)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         List<Content> speakersContents = conferencesForSpeakers.stream()
@@ -211,6 +324,13 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
                 .collect(Collectors.toMap(Endpoint::getId, Endpoint::getUuid));
         endpoints.put(AUDIO_MIXER_EP_ID, new UUID(0L, 0L));
 
+        // null if the listener conference is not known, it is taken as changed then
+        List<Set<Object>> listenersOctoStates = conferencesDataForListeners.stream()
+                .map(x -> conferenceSnapshotService.getSnapshot(x.getId())
+                        .map(snapshot -> getOctoState(snapshot.getConference()))
+                        .orElse(null))
+                .collect(Collectors.toList());
+        List<CompletableFuture<Conference>> listenersPatches = new ArrayList<>();
         conferencesDataForListeners.forEach(conf -> {
             Conference patchWithOcto = JvbConferenceUtils.buildPatchWithOcto(
                     gid,
@@ -249,12 +369,9 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
                             .map(x -> Map.entry(x.getSemantics(), x.getSources()))
                             .collect(Collectors.toList())
             );
-            try {
-                JvbInstance.from(conf.getInstance(), okHttpClient).patchConference(patchWithOcto);
-            } catch (Exception e) {
-                log.error("Error when patch octo endpoints for listeners", e);
-            }
+            listenersPatches.add(conferenceSnapshotService.patch(conf.getInstance(), gid, patchWithOcto));
         });
+        List<CompletableFuture<Conference>> speakersPatches = new ArrayList<>();
         conferencesDataForSpeakers.forEach(conf -> {
             Conference patchWithOcto = JvbConferenceUtils.buildPatchWithOcto(
                     gid,
@@ -268,11 +385,27 @@ public class DefaultJvbConferencesTasksService implements JvbConferencesTasksSer
                     List.of(),
                     List.of()
             );
+            speakersPatches.add(conferenceSnapshotService.patch(conf.getInstance(), gid, patchWithOcto));
+        });
+        boolean listenersChanged = false;
+        for (int i = 0; i < listenersPatches.size(); i++) {
+            try {
+                Conference conference = JvbInstance.await(listenersPatches.get(i));
+                listenersChanged |= conference == null || !getOctoState(conference).equals(listenersOctoStates.get(i));
+            } catch (Exception e) {
+                log.error("Error when patch octo endpoints for listeners", e);
+            }
+        }
+        // the offers the listeners have got since the answers of the speakers may lack the new speakers
+        if (listenersChanged) {
+            conferenceVersionService.bump(gid);
+        }
+        for (CompletableFuture<Conference> patch : speakersPatches) {
             try {
-                JvbInstance.from(conf.getInstance(), okHttpClient).patchConference(patchWithOcto);
+                JvbInstance.await(patch);
             } catch (Exception e) {
                 log.error("Error when patch octo endpoints for speakers", e);
             }
-        });
+        }
     }
 }
@@ -10,18 +10,20 @@ import com.connectclub.jvbuster.repository.i.JvbInstanceDataRepository;
 import com.connectclub.jvbuster.utils.MDCCopyHelper;
 import com.connectclub.jvbuster.videobridge.JvbInstance;
 import com.connectclub.jvbuster.videobridge.data.jvb.Stats;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
 import com.connectclub.jvbuster.videobridge.i.JvbInstanceManagementService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -29,6 +31,8 @@ import java.util.stream.Stream;
 @Service
 public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService {
 
+    private static final List<String> NODE_EXPORTER_METRICS = List.of("node_time_seconds", "node_cpu_seconds_total\\{cpu=\"[a-zA-Z0-9]+\",mode=\"idle\"\\}");
+
     private final int jvbMinPoolSize;
     private final int jvbInstanceEndpointsCapacity;
 
@@ -40,7 +44,10 @@ public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService
     private final int jvbInstanceMinUtilization;
     private final int jvbInstanceLifetimeInMinutes;
 
-    private final OkHttpClient okHttpClient;
+    private final JvbInstanceRegistryService jvbInstanceRegistryService;
+    private final ConferenceSnapshotService conferenceSnapshotService;
+
+    private final TransactionTemplate transactionTemplate;
 
     public DefaultJvbInstancesTasksService(
             @Value("${jvb.min.pool.size}") int jvbMinPoolSize,
@@ -52,7 +59,9 @@ public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService
             JvbInstanceDataRepository jvbInstanceDataRepository,
             JvbConferenceDataRepository jvbConferenceDataRepository,
             NodeExporterService nodeExporterService,
-            OkHttpClient okHttpClient
+            JvbInstanceRegistryService jvbInstanceRegistryService,
+            ConferenceSnapshotService conferenceSnapshotService,
+            TransactionTemplate transactionTemplate
     ) {
         this.jvbMinPoolSize = jvbMinPoolSize;
         this.jvbInstanceEndpointsCapacity = jvbInstanceEndpointsCapacity;
@@ -67,7 +76,10 @@ public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService
 
         this.nodeExporterService = nodeExporterService;
 
-        this.okHttpClient = okHttpClient;
+        this.jvbInstanceRegistryService = jvbInstanceRegistryService;
+        this.conferenceSnapshotService = conferenceSnapshotService;
+
+        this.transactionTemplate = transactionTemplate;
     }
 
     private boolean needShutdown(JvbInstance jvbInstance) {
@@ -82,11 +94,12 @@ public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService
     }
 
     @Override
-    @Transactional
     public void cacheInstances() {
         List<JvbInstance> activeInstances;
         try {
-            activeInstances = jvbInstanceManagementService.getActive();
+            activeInstances = jvbInstanceManagementService.getActive().stream()
+                    .map(jvbInstanceRegistryService::register)
+                    .collect(Collectors.toList());
         } catch (Exception e) {
             log.error("Can not get active JVB instances", e);
             return;
@@ -95,149 +108,159 @@ public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService
         List<String> activeInstancesIds = activeInstances.stream()
                 .map(JvbInstance::getId)
                 .collect(Collectors.toList());
+        jvbInstanceRegistryService.retain(activeInstancesIds);
+        conferenceSnapshotService.retainInstances(activeInstancesIds);
 
         Map<String, JvbInstanceData> prevJvbInstanceDatas = jvbInstanceDataRepository.findAllById(activeInstancesIds).stream()
                 .collect(Collectors.toMap(JvbInstanceData::getId, x -> x));
-        List<String> instancesIdsForClearConferences = new CopyOnWriteArrayList<>();
+        List<String> instancesIdsForClearConferences = new ArrayList<>();
 
-        List<JvbInstanceData> jvbInstanceDataList = new CopyOnWriteArrayList<>();
-        MDCCopyHelper mdcCopyHelper = new MDCCopyHelper();
-        activeInstances.parallelStream()
-                .peek(mdcCopyHelper::set)
-                .forEach(jvbInstance -> {
-                    try {
-                        Optional<JvbInstanceData> prevJvbInstanceDataOptional = Optional.ofNullable(prevJvbInstanceDatas.get(jvbInstance.getId()));
-                        Stats stats = null;
-                        try {
-                            //sometimes getConferences() fails but getStats() not
-                            jvbInstance.getConferences();
-                            stats = jvbInstance.getStats();
-                        } catch (Exception e) {
-                            if (prevJvbInstanceDataOptional.isPresent() && prevJvbInstanceDataOptional.get().isRespondedOnce()) {
-                                log.warn(
-                                        "Can not get statistics from JVB instance(id={}). Previous JVB instance data = {}",
-                                        jvbInstance.getId(),
-                                        prevJvbInstanceDataOptional.orElse(null),
-                                        e
-                                );
-                            }
-                        }
-                        if (stats == null) {
-                            if (prevJvbInstanceDataOptional.map(JvbInstanceData::isResponding).orElse(false)) {
-                                instancesIdsForClearConferences.add(jvbInstance.getId());
-                            }
-                            JvbInstanceData jvbInstanceData = JvbInstanceData.builder()
-                                    .id(jvbInstance.getId())
-                                    .version(jvbInstance.getVersion())
-                                    .scheme(jvbInstance.getScheme())
-                                    .host(jvbInstance.getHost())
-                                    .port(jvbInstance.getPort())
-                                    .forSpeakers(jvbInstance.isForSpeakers())
-                                    .octoBindPort(jvbInstance.getOctoBindPort())
-                                    .needShutdown(needShutdown(jvbInstance))
-                                    .responding(false)
-                                    .respondedOnce(prevJvbInstanceDataOptional
-                                            .map(JvbInstanceData::isRespondedOnce)
-                                            .orElse(false)
-                                    )
-                                    .scheduledForRemoval(prevJvbInstanceDataOptional
-                                            .map(JvbInstanceData::isScheduledForRemoval)
-                                            .orElse(false)
-                                    )
-                                    .shutdownInProgress(prevJvbInstanceDataOptional
-                                            .map(JvbInstanceData::isShutdownInProgress)
-                                            .orElse(false))
-                                    .utilization(prevJvbInstanceDataOptional
-                                            .map(JvbInstanceData::getUtilization)
-                                            .orElse(null))
-                                    .notRespondingSince(prevJvbInstanceDataOptional
-                                            .map(JvbInstanceData::getNotRespondingSince)
-                                            .orElse(LocalDateTime.now()))
-                                    .build();
-                            jvbInstanceDataList.add(jvbInstanceData);
-                        } else {
-                            if (!prevJvbInstanceDataOptional.map(JvbInstanceData::isResponding).orElse(false)) {
-                                jvbInstance.deleteConferences();
-                            }
+        Map<String, CompletableFuture<Stats>> statsFutures = new HashMap<>();
+        Map<String, CompletableFuture<Map<String, String>>> metricsFutures = new HashMap<>();
+        for (JvbInstance jvbInstance : activeInstances) {
+            //sometimes getConferences() fails but getStats() not
+            statsFutures.put(jvbInstance.getId(), jvbInstance.getConferencesAsync().thenCompose(x -> jvbInstance.getStatsAsync()));
+            if (jvbInstance.isNodeExporterAvailable()) {
+                metricsFutures.put(jvbInstance.getId(), nodeExporterService.getMetricsAsync(jvbInstance.getHost(), NODE_EXPORTER_METRICS));
+            }
+        }
+
+        List<JvbInstanceData> jvbInstanceDataList = new ArrayList<>();
+        for (JvbInstance jvbInstance : activeInstances) {
+            try {
+                Optional<JvbInstanceData> prevJvbInstanceDataOptional = Optional.ofNullable(prevJvbInstanceDatas.get(jvbInstance.getId()));
+                Stats stats = null;
+                try {
+                    stats = JvbInstance.await(statsFutures.get(jvbInstance.getId()));
+                } catch (Exception e) {
+                    if (prevJvbInstanceDataOptional.isPresent() && prevJvbInstanceDataOptional.get().isRespondedOnce()) {
+                        log.warn(
+                                "Can not get statistics from JVB instance(id={}). Previous JVB instance data = {}",
+                                jvbInstance.getId(),
+                                prevJvbInstanceDataOptional.orElse(null),
+                                e
+                        );
+                    }
+                }
+                if (stats == null) {
+                    conferenceSnapshotService.invalidateInstance(jvbInstance.getId());
+                    if (prevJvbInstanceDataOptional.map(JvbInstanceData::isResponding).orElse(false)) {
+                        instancesIdsForClearConferences.add(jvbInstance.getId());
+                    }
+                    JvbInstanceData jvbInstanceData = JvbInstanceData.builder()
+                            .id(jvbInstance.getId())
+                            .version(jvbInstance.getVersion())
+                            .scheme(jvbInstance.getScheme())
+                            .host(jvbInstance.getHost())
+                            .port(jvbInstance.getPort())
+                            .forSpeakers(jvbInstance.isForSpeakers())
+                            .octoBindPort(jvbInstance.getOctoBindPort())
+                            .needShutdown(needShutdown(jvbInstance))
+                            .responding(false)
+                            .respondedOnce(prevJvbInstanceDataOptional
+                                    .map(JvbInstanceData::isRespondedOnce)
+                                    .orElse(false)
+                            )
+                            .scheduledForRemoval(prevJvbInstanceDataOptional
+                                    .map(JvbInstanceData::isScheduledForRemoval)
+                                    .orElse(false)
+                            )
+                            .shutdownInProgress(prevJvbInstanceDataOptional
+                                    .map(JvbInstanceData::isShutdownInProgress)
+                                    .orElse(false))
+                            .utilization(prevJvbInstanceDataOptional
+                                    .map(JvbInstanceData::getUtilization)
+                                    .orElse(null))
+                            .notRespondingSince(prevJvbInstanceDataOptional
+                                    .map(JvbInstanceData::getNotRespondingSince)
+                                    .orElse(LocalDateTime.now()))
+                            .build();
+                    jvbInstanceDataList.add(jvbInstanceData);
+                } else {
+                    if (!prevJvbInstanceDataOptional.map(JvbInstanceData::isResponding).orElse(false)) {
+                        jvbInstance.deleteConferences();
+                        conferenceSnapshotService.invalidateInstance(jvbInstance.getId());
+                    }
 
-                            JvbInstanceData.JvbInstanceDataBuilder jvbInstanceDataBuilder = JvbInstanceData.builder()
-                                    .id(jvbInstance.getId())
-                                    .version(jvbInstance.getVersion())
-                                    .scheme(jvbInstance.getScheme())
-                                    .host(jvbInstance.getHost())
-                                    .port(jvbInstance.getPort())
-                                    .forSpeakers(jvbInstance.isForSpeakers())
-                                    .octoBindPort(jvbInstance.getOctoBindPort())
-                                    .needShutdown(needShutdown(jvbInstance))
-                                    .responding(true)
-                                    .respondedOnce(true)
-                                    .scheduledForRemoval(stats.isShutdownInProgress() || prevJvbInstanceDataOptional
-                                            .map(JvbInstanceData::isScheduledForRemoval)
-                                            .orElse(false)
-                                    )
-                                    .shutdownInProgress(stats.isShutdownInProgress())
-                                    .utilization(100 * (Math.max(stats.getEndpointsSendingVideo(), stats.getEndpointsSendingAudio()) + stats.getReceiveOnlyEndpoints()/2) / jvbInstanceEndpointsCapacity);
-                            if (jvbInstance.isNodeExporterAvailable()) {
-                                try {
-                                    Map<String, String> metrics = nodeExporterService.getMetrics(jvbInstance.getHost(), List.of("node_time_seconds", "node_cpu_seconds_total\\{cpu=\"[a-zA-Z0-9]+\",mode=\"idle\"\\}"));
-                                    Double nodeTime = Double.parseDouble(metrics.get("node_time_seconds"));
-                                    List<Double> nodeCpuIdle = metrics.entrySet().stream()
-                                            .filter(x -> x.getKey().startsWith("node_cpu_seconds_total"))
-                                            .map(Map.Entry::getValue)
-                                            .map(Double::parseDouble)
-                                            .collect(Collectors.toList());
-                                    jvbInstanceDataBuilder
-                                            .nodeTime(nodeTime)
-                                            .nodeCpuIdleTotal(nodeCpuIdle.stream().mapToDouble(x -> x).sum())
-                                            .nodeCpuCount(nodeCpuIdle.size());
-                                    prevJvbInstanceDataOptional.ifPresent(prevJvbInstanceData -> {
-                                        if (prevJvbInstanceData.getNodeTime() != null
-                                                && prevJvbInstanceData.getNodeTime() < nodeTime
-                                                && prevJvbInstanceData.getNodeCpuCount() == nodeCpuIdle.size()
-                                        ) {
-                                            double cpuIdleTotal = nodeCpuIdle.stream().mapToDouble(x -> x).sum();
-                                            double timeInterval = (nodeTime - prevJvbInstanceData.getNodeTime()) * nodeCpuIdle.size();
-                                            jvbInstanceDataBuilder.cpuLoad(
-                                                    1 - (cpuIdleTotal - prevJvbInstanceData.getNodeCpuIdleTotal()) / timeInterval
-                                            );
-                                        }
-                                    });
-                                } catch (Exception e) {
-                                    log.warn("Node exporter metrics error", e);
+                    JvbInstanceData.JvbInstanceDataBuilder jvbInstanceDataBuilder = JvbInstanceData.builder()
+                            .id(jvbInstance.getId())
+                            .version(jvbInstance.getVersion())
+                            .scheme(jvbInstance.getScheme())
+                            .host(jvbInstance.getHost())
+                            .port(jvbInstance.getPort())
+                            .forSpeakers(jvbInstance.isForSpeakers())
+                            .octoBindPort(jvbInstance.getOctoBindPort())
+                            .needShutdown(needShutdown(jvbInstance))
+                            .responding(true)
+                            .respondedOnce(true)
+                            .scheduledForRemoval(stats.isShutdownInProgress() || prevJvbInstanceDataOptional
+                                    .map(JvbInstanceData::isScheduledForRemoval)
+                                    .orElse(false)
+                            )
+                            .shutdownInProgress(stats.isShutdownInProgress())
+                            .utilization(100 * (Math.max(stats.getEndpointsSendingVideo(), stats.getEndpointsSendingAudio()) + stats.getReceiveOnlyEndpoints()/2) / jvbInstanceEndpointsCapacity);
+                    if (jvbInstance.isNodeExporterAvailable()) {
+                        try {
+                            Map<String, String> metrics = metricsFutures.get(jvbInstance.getId()).join();
+                            Double nodeTime = Double.parseDouble(metrics.get("node_time_seconds"));
+                            List<Double> nodeCpuIdle = metrics.entrySet().stream()
+                                    .filter(x -> x.getKey().startsWith("node_cpu_seconds_total"))
+                                    .map(Map.Entry::getValue)
+                                    .map(Double::parseDouble)
+                                    .collect(Collectors.toList());
+                            jvbInstanceDataBuilder
+                                    .nodeTime(nodeTime)
+                                    .nodeCpuIdleTotal(nodeCpuIdle.stream().mapToDouble(x -> x).sum())
+                                    .nodeCpuCount(nodeCpuIdle.size());
+                            prevJvbInstanceDataOptional.ifPresent(prevJvbInstanceData -> {
+                                if (prevJvbInstanceData.getNodeTime() != null
+                                        && prevJvbInstanceData.getNodeTime() < nodeTime
+                                        && prevJvbInstanceData.getNodeCpuCount() == nodeCpuIdle.size()
+                                ) {
+                                    double cpuIdleTotal = nodeCpuIdle.stream().mapToDouble(x -> x).sum();
+                                    double timeInterval = (nodeTime - prevJvbInstanceData.getNodeTime()) * nodeCpuIdle.size();
+                                    jvbInstanceDataBuilder.cpuLoad(
+                                            1 - (cpuIdleTotal - prevJvbInstanceData.getNodeCpuIdleTotal()) / timeInterval
+                                    );
                                 }
-                            }
-                            jvbInstanceDataList.add(jvbInstanceDataBuilder.build());
+                            });
+                        } catch (Exception e) {
+                            log.warn("Node exporter metrics error", e);
                         }
-                    } catch (Exception e) {
-                        log.error("Processing jvbInstance(id={}) failed", jvbInstance.getId(), e);
-                    } finally {
-                        mdcCopyHelper.clear();
                     }
-                });
-
-        if(!instancesIdsForClearConferences.isEmpty()) {
-            jvbConferenceDataRepository.deleteAllByInstanceIdIn(instancesIdsForClearConferences);
+                    jvbInstanceDataList.add(jvbInstanceDataBuilder.build());
+                }
+            } catch (Exception e) {
+                log.error("Processing jvbInstance(id={}) failed", jvbInstance.getId(), e);
+            }
         }
 
-        List<String> ids = jvbInstanceDataList.stream()
-                .map(JvbInstanceData::getId)
-                .collect(Collectors.toList());
-        List<JvbInstanceData> instancesToDelete;
-        if(ids.isEmpty()) {
-            instancesToDelete = jvbInstanceDataRepository.findAll();
-        } else {
-            instancesToDelete = jvbInstanceDataRepository.findAllByIdIsNotIn(ids);
-        }
-        for(JvbInstanceData instanceData : instancesToDelete) {
-            log.info("Deleting not detected instance(id={})", instanceData.getId());
-            logInstanceConferences(instanceData);
-        }
-        jvbInstanceDataRepository.deleteAll(instancesToDelete);
-        for(JvbInstanceData instanceData : jvbInstanceDataList) {
-            if(jvbInstanceDataRepository.existsById(instanceData.getId())) continue;
-            log.info("Saving detected new instance(id={}, isForSpeakers={})", instanceData.getId(), instanceData.isForSpeakers());
-        }
-        jvbInstanceDataRepository.saveAll(jvbInstanceDataList);
+        // all the videobridges have been asked, only the database writes are left for the transaction
+        transactionTemplate.executeWithoutResult(status -> {
+            if(!instancesIdsForClearConferences.isEmpty()) {
+                jvbConferenceDataRepository.deleteAllByInstanceIdIn(instancesIdsForClearConferences);
+            }
+
+            List<String> ids = jvbInstanceDataList.stream()
+                    .map(JvbInstanceData::getId)
+                    .collect(Collectors.toList());
+            List<JvbInstanceData> instancesToDelete;
+            if(ids.isEmpty()) {
+                instancesToDelete = jvbInstanceDataRepository.findAll();
+            } else {
+                instancesToDelete = jvbInstanceDataRepository.findAllByIdIsNotIn(ids);
+            }
+            for(JvbInstanceData instanceData : instancesToDelete) {
+                log.info("Deleting not detected instance(id={})", instanceData.getId());
+                logInstanceConferences(instanceData);
+            }
+            jvbInstanceDataRepository.deleteAll(instancesToDelete);
+            for(JvbInstanceData instanceData : jvbInstanceDataList) {
+                if(jvbInstanceDataRepository.existsById(instanceData.getId())) continue;
+                log.info("Saving detected new instance(id={}, isForSpeakers={})", instanceData.getId(), instanceData.isForSpeakers());
+            }
+            jvbInstanceDataRepository.saveAll(jvbInstanceDataList);
+        });
     }
 
     @Override
@@ -342,7 +365,7 @@ public class DefaultJvbInstancesTasksService implements JvbInstancesTasksService
                 .forEach(jvbInstance -> {
                     if (jvbConferenceDataRepository.countByInstanceId(jvbInstance.getId()) == 0) {
                         try {
-                            JvbInstance.from(jvbInstance, okHttpClient).shutdown(true);
+                            jvbInstanceRegistryService.get(jvbInstance).shutdown(true);
                             jvbInstance.setShutdownInProgress(true);
                             jvbInstanceDataRepository.save(jvbInstance);
                             log.info("JVB instance(id={}, forSpeakers={}) has been shutdown because it has no conferences and was scheduled for removal", jvbInstance.getId(), forSpeakers);
@@ -0,0 +1,12 @@
+package com.connectclub.jvbuster.monitoring.i;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface ConferenceSyncService {
+
+    /**
+     * Schedules {@link JvbConferencesTasksService#syncConferences(String)} in the background. Requests for a gid
+     * whose sync has not started yet share that sync.
+     */
+    CompletableFuture<Void> requestSync(String gid);
+}
@@ -2,9 +2,7 @@ package com.connectclub.jvbuster.nodeexporter;
 
 import com.connectclub.jvbuster.nodeexporter.i.NodeExporterService;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import okhttp3.*;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
@@ -13,6 +11,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -26,34 +25,68 @@ public class DefaultNodeExporterService implements NodeExporterService {
         this.okHttpClient = okHttpClient;
     }
 
-    @Override
-    public Map<String, String> getMetrics(String host, Collection<String> metricsPattern) throws IOException {
-        Map<String, String> result = new HashMap<>();
-        Request request = new Request.Builder()
+    private static Request buildRequest(String host) {
+        return new Request.Builder()
                 .url("http://" + host + ":9100/metrics")
                 .get()
                 .build();
-        try (Response response = okHttpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                log.warn("code = {}, body = {}", response.code(), response.body().string());
-                throw new RuntimeException("Unsuccessful http response");
-            }
-            List<Pattern> metricsCompiledPattern = metricsPattern.stream()
-                    .map(Pattern::compile)
-                    .collect(Collectors.toList());
-            try (BufferedReader reader = new BufferedReader(response.body().charStream())) {
-                String line = reader.readLine();
-                if (line == null) throw new RuntimeException("Node exporter response is empty");
-                do {
-                    if (line.startsWith("#")) continue;
-                    String[] keyValue = line.split(" (?=\\S+$)");
-                    if (keyValue.length != 2) throw new RuntimeException("Unsupported format");
-                    if (metricsCompiledPattern.stream().anyMatch(x -> x.matcher(keyValue[0]).matches())) {
-                        result.put(keyValue[0], keyValue[1]);
-                    }
-                } while ((line = reader.readLine()) != null);
-            }
+    }
+
+    private static Map<String, String> readMetrics(Response response, Collection<String> metricsPattern) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        if (!response.isSuccessful()) {
+            log.warn("code = {}, body = {}", response.code(), response.body().string());
+            throw new RuntimeException("Unsuccessful http response");
+        }
+        List<Pattern> metricsCompiledPattern = metricsPattern.stream()
+                .map(Pattern::compile)
+                .collect(Collectors.toList());
+        try (BufferedReader reader = new BufferedReader(response.body().charStream())) {
+            String line = reader.readLine();
+            if (line == null) throw new RuntimeException("Node exporter response is empty");
+            do {
+                if (line.startsWith("#")) continue;
+                String[] keyValue = line.split(" (?=\\S+$)");
+                if (keyValue.length != 2) throw new RuntimeException("Unsupported format");
+                if (metricsCompiledPattern.stream().anyMatch(x -> x.matcher(keyValue[0]).matches())) {
+                    result.put(keyValue[0], keyValue[1]);
+                }
+            } while ((line = reader.readLine()) != null);
         }
         return result;
     }
+
+    @Override
+    public Map<String, String> getMetrics(String host, Collection<String> metricsPattern) throws IOException {
+        try (Response response = okHttpClient.newCall(buildRequest(host)).execute()) {
+            return readMetrics(response, metricsPattern);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getMetricsAsync(String host, Collection<String> metricsPattern) {
+        CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+        Call call = okHttpClient.newCall(buildRequest(host));
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(readMetrics(response, metricsPattern));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
 }
@@ -3,7 +3,10 @@ package com.connectclub.jvbuster.nodeexporter.i;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface NodeExporterService {
     Map<String, String> getMetrics(String host, Collection<String> metricsPattern) throws IOException;
+
+    CompletableFuture<Map<String, String>> getMetricsAsync(String host, Collection<String> metricsPattern);
 }
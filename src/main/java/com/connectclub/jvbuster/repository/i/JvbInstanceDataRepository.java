@@ -23,5 +23,7 @@ public interface JvbInstanceDataRepository extends JpaRepository<JvbInstanceData
 
     Optional<JvbInstanceData> findFirstByRespondingIsTrueAndScheduledForRemovalIsFalseAndShutdownInProgressIsFalseAndForSpeakersOrderByUtilization(boolean forSpeakers);
 
+    List<JvbInstanceData> findAllByRespondingIsTrueAndScheduledForRemovalIsFalseAndShutdownInProgressIsFalseAndForSpeakersOrderByUtilization(boolean forSpeakers);
+
     List<JvbInstanceData> findAllByIdIsNotIn(Iterable<String> ids);
 }
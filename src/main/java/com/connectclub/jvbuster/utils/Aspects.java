@@ -16,6 +16,7 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Aspect
@@ -69,6 +70,16 @@ public class Aspects {
         }
         try {
             Object result = pjp.proceed();
+            if (result instanceof CompletableFuture) {
+                String completedMethodName = methodName;
+                return ((CompletableFuture<?>) result).whenComplete((x, e) -> {
+                    if (e == null) {
+                        log.info("Calling method {} complete", completedMethodName);
+                    } else {
+                        log.info("Calling method {} failed", completedMethodName, e);
+                    }
+                });
+            }
             log.info("Calling method {} complete", methodName);
             return result;
         } catch(Exception e) {
@@ -80,6 +91,7 @@ public class Aspects {
     }
 
     @Around(value = "@annotation(methodSync)", argNames = "pjp, methodSync")
+    @SuppressWarnings("unchecked")
     public Object methodSync(ProceedingJoinPoint pjp, MethodSync methodSync) throws Throwable {
         StringBuilder lockNameBuilder = new StringBuilder(methodSync.lockName());
         Annotation[][] parameterAnnotations = ((MethodSignature) pjp.getSignature()).getMethod().getParameterAnnotations();
@@ -109,6 +121,16 @@ public class Aspects {
             default:
                 throw new RuntimeException("not implemented");
         }
+        if (CompletableFuture.class.isAssignableFrom(((MethodSignature) pjp.getSignature()).getReturnType())) {
+            // the lock is held until the returned future completes
+            return AsyncLocks.withLock(lock, () -> {
+                try {
+                    return (CompletableFuture<Object>) pjp.proceed();
+                } catch (Throwable e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            });
+        }
         lock.lock();
         try {
             return pjp.proceed();
@@ -0,0 +1,78 @@
+package com.connectclub.jvbuster.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Locks held by an asynchronous action instead of a thread, nothing waits for the lock or for the action.
+ * Every action gets its own owner id, a negative one, so it never matches a thread locking the same lock.
+ * The action is called on the thread which has acquired the lock, with the MDC of the caller, it must not block.
+ */
+@Slf4j
+public final class AsyncLocks {
+
+    private final static AtomicLong lastOwnerId = new AtomicLong();
+
+    private AsyncLocks() {
+    }
+
+    public static <T> CompletableFuture<T> withLock(RLock lock, Supplier<CompletableFuture<T>> action) {
+        long ownerId = -lastOwnerId.incrementAndGet();
+        return run(lock, ownerId, lock.lockAsync(ownerId).toCompletableFuture().thenApply(x -> true), action, null);
+    }
+
+    /**
+     * Fails with the exception of onBusy if the lock is held by someone else.
+     */
+    public static <T> CompletableFuture<T> withTryLock(RLock lock, Supplier<CompletableFuture<T>> action, Supplier<? extends RuntimeException> onBusy) {
+        long ownerId = -lastOwnerId.incrementAndGet();
+        return run(lock, ownerId, lock.tryLockAsync(ownerId).toCompletableFuture(), action, onBusy);
+    }
+
+    private static <T> CompletableFuture<T> run(
+            RLock lock,
+            long ownerId,
+            CompletableFuture<Boolean> acquisition,
+            Supplier<CompletableFuture<T>> action,
+            Supplier<? extends RuntimeException> onBusy
+    ) {
+        MDCCopyHelper mdcCopyHelper = new MDCCopyHelper();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        acquisition.whenComplete((locked, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (!locked) {
+                result.completeExceptionally(onBusy.get());
+                return;
+            }
+            CompletableFuture<T> actionResult;
+            mdcCopyHelper.set();
+            try {
+                actionResult = action.get();
+            } catch (Throwable x) {
+                actionResult = CompletableFuture.failedFuture(x);
+            } finally {
+                mdcCopyHelper.clear();
+            }
+            actionResult.whenComplete((r, x) -> {
+                lock.unlockAsync(ownerId).onComplete((v, unlockError) -> {
+                    if (unlockError != null) {
+                        log.warn("Lock(name={}) has not been released", lock.getName(), unlockError);
+                    }
+                });
+                if (x != null) {
+                    result.completeExceptionally(x);
+                } else {
+                    result.complete(r);
+                }
+            });
+        });
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.connectclub.jvbuster.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remote effects recorded inside a transaction and run by the caller once the transaction is over, so no
+ * database connection is held while they are waited for. Nothing is run if the transaction fails.
+ */
+@Slf4j
+public class Outbox {
+
+    public interface Effect {
+        void run() throws Exception;
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public void record(String description, Effect effect) {
+        entries.add(new Entry(description, effect));
+    }
+
+    public void run() {
+        for (Entry entry : entries) {
+            try {
+                entry.effect.run();
+            } catch (Exception e) {
+                log.error("Outbox effect failed: {}", entry.description, e);
+            }
+        }
+        entries.clear();
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final String description;
+        private final Effect effect;
+    }
+}
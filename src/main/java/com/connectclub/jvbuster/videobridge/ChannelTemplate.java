@@ -0,0 +1,179 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Invariant part of the channels which jvbuster allocates. Payload types and header extensions of a template are
+ * encoded to JSON once, so a patch serialization only writes the per-endpoint fields.
+ */
+@Getter
+public class ChannelTemplate {
+
+    private final static List<RtpHdrext> audioRtpHdrexts = List.of(
+            RtpHdrext.builder()
+                    .id(1)
+                    .uri("urn:ietf:params:rtp-hdrext:ssrc-audio-level")
+                    .build(),
+            RtpHdrext.builder()
+                    .id(5)
+                    .uri("http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
+                    .build()
+    );
+
+    public final static ChannelTemplate AUDIO = new ChannelTemplate(
+            "audio",
+            List.of(
+                    PayloadType.builder()
+                            .id(111)
+                            .name("opus")
+                            .clockrate(48000)
+                            .channels(2)
+                            .parameters(Map.of(
+                                    "minptime", 10,
+                                    "useinbandfec", 1
+                            ))
+                            .rtcpFbs(List.of(
+                                    RtcpFb.builder().type("transport-cc").build()
+                            ))
+                            .build()
+            ),
+            audioRtpHdrexts
+    );
+
+    public final static ChannelTemplate VIDEO = new ChannelTemplate(
+            "video",
+            List.of(
+                    PayloadType.builder()
+                            .id(100)
+                            .name("VP8")
+                            .clockrate(90000)
+                            .parameters(Map.of(
+                                    "max-fr", 30,
+                                    "max-recv-width", 480,
+                                    "max-recv-height", 320
+                            ))
+                            .rtcpFbs(List.of(
+                                    RtcpFb.builder().type("ccm").subtype("fir").build(),
+                                    RtcpFb.builder().type("nack").build(),
+                                    RtcpFb.builder().type("nack").subtype("pli").build(),
+                                    RtcpFb.builder().type("transport-cc").build()
+                            ))
+                            .build()
+            ),
+            List.of(
+                    RtpHdrext.builder()
+                            .id(1)
+                            .uri("urn:ietf:params:rtp-hdrext:ssrc-audio-level")
+                            .build(),
+                    RtpHdrext.builder()
+                            .id(5)
+                            .uri("http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
+                            .build()
+            )
+    );
+
+    // used by the SDP based signaling
+    public final static ChannelTemplate LEGACY_AUDIO = new ChannelTemplate(
+            "audio",
+            List.of(
+                    PayloadType.builder()
+                            .id(111)
+                            .name("opus")
+                            .clockrate(48000)
+                            .channels(2)
+                            .parameters(Map.of(
+                                    "minptime", 10,
+                                    "useinbandfec", 1,
+                                    "stereo", 0
+                            ))
+                            .rtcpFbs(List.of(
+                                    RtcpFb.builder().type("transport-cc").build()
+                            ))
+                            .build()
+            ),
+            audioRtpHdrexts
+    );
+
+    public final static ChannelTemplate LEGACY_VIDEO = new ChannelTemplate(
+            "video",
+            List.of(
+                    PayloadType.builder()
+                            .id(100)
+                            .name("VP8")
+                            .clockrate(90000)
+                            .parameters(Map.of(
+                                    "max-fr", 30,
+                                    "max-recv-width", 480,
+                                    "max-recv-height", 320
+                            ))
+                            .rtcpFbs(List.of(
+                                    RtcpFb.builder().type("ccm").subtype("fir").build(),
+                                    RtcpFb.builder().type("nack").build(),
+                                    RtcpFb.builder().type("nack").subtype("pli").build(),
+                                    RtcpFb.builder().type("transport-cc").build()
+                            ))
+                            .build(),
+                    PayloadType.builder()
+                            .id(96)
+                            .name("rtx")
+                            .clockrate(90000)
+                            .parameters(Map.of("apt", 100))
+                            .rtcpFbs(List.of(
+                                    RtcpFb.builder().type("ccm").subtype("fir").build(),
+                                    RtcpFb.builder().type("nack").build(),
+                                    RtcpFb.builder().type("nack").subtype("pli").build()
+                            ))
+                            .build()
+            ),
+            List.of(
+                    RtpHdrext.builder()
+                            .id(3)
+                            .uri("http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time")
+                            .build(),
+                    RtpHdrext.builder()
+                            .id(5)
+                            .uri("http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
+                            .build()
+            )
+    );
+
+    private final String contentName;
+    private final List<PayloadType> payloadTypes;
+    private final List<RtpHdrext> rtpHdrexts;
+
+    private ChannelTemplate(String contentName, List<PayloadType> payloadTypes, List<RtpHdrext> rtpHdrexts) {
+        this.contentName = contentName;
+        this.payloadTypes = payloadTypes;
+        this.rtpHdrexts = rtpHdrexts;
+        ColibriCodec.preEncode(payloadTypes);
+        ColibriCodec.preEncode(rtpHdrexts);
+    }
+
+    public Channel buildChannel(String channelId, String endpoint, Channel.Direction direction, List<Long> sources, List<SsrcGroup> ssrcGroups) {
+        return Channel.builder()
+                .id(channelId)
+                .expire(10)
+                .initiator(true)
+                .endpoint(endpoint)
+                .direction(direction)
+                .channelBundleId(endpoint)
+                .rtpLevelRelayType(Channel.RtpLevelRelayType.TRANSLATOR)
+                .lastN(0)
+                .payloadTypes(payloadTypes)
+                .sources(sources)
+                .ssrcGroups(ssrcGroups)
+                .rtpHdrexts(rtpHdrexts)
+                .build();
+    }
+
+    public Content buildContent(String channelId, String endpoint, Channel.Direction direction, List<Long> sources, List<SsrcGroup> ssrcGroups) {
+        return Content.builder()
+                .name(contentName)
+                .channel(buildChannel(channelId, endpoint, direction, sources, ssrcGroups))
+                .build();
+    }
+}
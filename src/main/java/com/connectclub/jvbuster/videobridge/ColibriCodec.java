@@ -0,0 +1,480 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.experimental.UtilityClass;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact colibri JSON (de)serialization. Conferences, contents and channels are streamed by hand-written adapters,
+ * everything else is left to the reflective Gson adapters.
+ */
+@UtilityClass
+public class ColibriCodec {
+
+    public final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new ColibriTypeAdapterFactory())
+            .create();
+
+    // identity keyed, replaced on every registration so the lookups do not need a lock
+    private volatile Map<Object, String> preEncoded = new IdentityHashMap<>();
+
+    /**
+     * Registers an immutable value whose JSON is written as is every time the same instance is serialized.
+     */
+    public synchronized void preEncode(Object value) {
+        Map<Object, String> newPreEncoded = new IdentityHashMap<>(preEncoded);
+        newPreEncoded.put(value, gson.toJson(value));
+        preEncoded = newPreEncoded;
+    }
+
+    private static <V> void writePreEncoded(JsonWriter out, String name, V value, TypeAdapter<V> adapter) throws IOException {
+        if (value == null) return;
+        out.name(name);
+        String json = preEncoded.get(value);
+        if (json != null) {
+            out.jsonValue(json);
+        } else {
+            adapter.write(out, value);
+        }
+    }
+
+    public <T> T fromJson(Reader reader, Type typeOfT) {
+        return gson.fromJson(reader, typeOfT);
+    }
+
+    public String toJson(Object src) {
+        return gson.toJson(src);
+    }
+
+    public RequestBody toRequestBody(Object src) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                // the sink is owned by OkHttp, so the writer is only flushed
+                Writer writer = new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8);
+                JsonWriter jsonWriter = gson.newJsonWriter(writer);
+                gson.toJson(src, src.getClass(), jsonWriter);
+                jsonWriter.flush();
+            }
+        };
+    }
+
+    private static class ColibriTypeAdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> rawType = type.getRawType();
+            if (rawType == Conference.class) {
+                return (TypeAdapter<T>) new ConferenceAdapter(gson);
+            }
+            if (rawType == Content.class) {
+                return (TypeAdapter<T>) new ContentAdapter(gson);
+            }
+            if (rawType == ChannelCommon.class || rawType == Channel.class || rawType == OctoChannel.class) {
+                return (TypeAdapter<T>) new ChannelAdapter(gson, rawType);
+            }
+            return null;
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+
+    private static boolean readBoolean(JsonReader in, boolean defaultValue) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return defaultValue;
+            case STRING:
+                return Boolean.parseBoolean(in.nextString());
+            default:
+                return in.nextBoolean();
+        }
+    }
+
+    private static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static List<Long> readLongs(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<Long> result = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                result.add(null);
+            } else {
+                result.add(in.nextLong());
+            }
+        }
+        in.endArray();
+        return result;
+    }
+
+    private static <E> List<E> readList(JsonReader in, TypeAdapter<E> elementAdapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<E> result = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            result.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return result;
+    }
+
+    private static <E> void writeList(JsonWriter out, String name, List<E> list, TypeAdapter<E> elementAdapter) throws IOException {
+        if (list == null) return;
+        out.name(name);
+        out.beginArray();
+        for (E element : list) {
+            elementAdapter.write(out, element);
+        }
+        out.endArray();
+    }
+
+    private static void writeLongs(JsonWriter out, String name, List<Long> list) throws IOException {
+        if (list == null) return;
+        out.name(name);
+        out.beginArray();
+        for (Long element : list) {
+            out.value(element);
+        }
+        out.endArray();
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value);
+    }
+
+    private static class ConferenceAdapter extends TypeAdapter<Conference> {
+        private final TypeAdapter<Content> contentAdapter;
+        private final TypeAdapter<ChannelBundle> channelBundleAdapter;
+        private final TypeAdapter<Endpoint> endpointAdapter;
+
+        ConferenceAdapter(Gson gson) {
+            contentAdapter = gson.getAdapter(Content.class);
+            channelBundleAdapter = gson.getAdapter(ChannelBundle.class);
+            endpointAdapter = gson.getAdapter(Endpoint.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, Conference value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "id", value.getId());
+            writeString(out, "gid", value.getGid());
+            writeList(out, "contents", value.getContents(), contentAdapter);
+            writeList(out, "channel-bundles", value.getChannelBundles(), channelBundleAdapter);
+            writeList(out, "endpoints", value.getEndpoints(), endpointAdapter);
+            out.endObject();
+        }
+
+        @Override
+        public Conference read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Conference conference = new Conference();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        conference.setId(readString(in));
+                        break;
+                    case "gid":
+                        conference.setGid(readString(in));
+                        break;
+                    case "contents":
+                        conference.setContents(readList(in, contentAdapter));
+                        break;
+                    case "channel-bundles":
+                        conference.setChannelBundles(readList(in, channelBundleAdapter));
+                        break;
+                    case "endpoints":
+                        conference.setEndpoints(readList(in, endpointAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return conference;
+        }
+    }
+
+    private static class ContentAdapter extends TypeAdapter<Content> {
+        private final TypeAdapter<ChannelCommon> channelAdapter;
+        private final TypeAdapter<SctpConnection> sctpConnectionAdapter;
+
+        ContentAdapter(Gson gson) {
+            channelAdapter = gson.getAdapter(ChannelCommon.class);
+            sctpConnectionAdapter = gson.getAdapter(SctpConnection.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, Content value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "name", value.getName());
+            writeList(out, "channels", value.getChannels(), channelAdapter);
+            writeList(out, "sctpconnections", value.getSctpConnections(), sctpConnectionAdapter);
+            out.endObject();
+        }
+
+        @Override
+        public Content read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Content content = new Content();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        content.setName(readString(in));
+                        break;
+                    case "channels":
+                        content.setChannels(readList(in, channelAdapter));
+                        break;
+                    case "sctpconnections":
+                        content.setSctpConnections(readList(in, sctpConnectionAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return content;
+        }
+    }
+
+    private static class ChannelAdapter extends TypeAdapter<ChannelCommon> {
+        private final Class<?> rawType;
+        private final TypeAdapter<List<PayloadType>> payloadTypesAdapter;
+        private final TypeAdapter<List<RtpHdrext>> rtpHdrextsAdapter;
+        private final TypeAdapter<List<SsrcGroup>> ssrcGroupsAdapter;
+        private final TypeAdapter<Channel.Direction> directionAdapter;
+        private final TypeAdapter<Channel.RtpLevelRelayType> rtpLevelRelayTypeAdapter;
+        private final TypeAdapter<Source> sourceAdapter;
+        private final TypeAdapter<Set<String>> relaysAdapter;
+
+        ChannelAdapter(Gson gson, Class<?> rawType) {
+            this.rawType = rawType;
+            payloadTypesAdapter = gson.getAdapter(new TypeToken<List<PayloadType>>() {});
+            rtpHdrextsAdapter = gson.getAdapter(new TypeToken<List<RtpHdrext>>() {});
+            ssrcGroupsAdapter = gson.getAdapter(new TypeToken<List<SsrcGroup>>() {});
+            directionAdapter = gson.getAdapter(Channel.Direction.class);
+            rtpLevelRelayTypeAdapter = gson.getAdapter(Channel.RtpLevelRelayType.class);
+            sourceAdapter = gson.getAdapter(Source.class);
+            relaysAdapter = gson.getAdapter(new TypeToken<Set<String>>() {});
+        }
+
+        @Override
+        public void write(JsonWriter out, ChannelCommon value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (value instanceof OctoChannel) {
+                OctoChannel octoChannel = (OctoChannel) value;
+                out.name("type").value(octoChannel.getType());
+                writeString(out, "id", value.getId());
+                out.name("expire").value(value.getExpire());
+                writeList(out, "sources", octoChannel.getSources(), sourceAdapter);
+                if (octoChannel.getRelays() != null) {
+                    out.name("relays");
+                    relaysAdapter.write(out, octoChannel.getRelays());
+                }
+            } else {
+                Channel channel = (Channel) value;
+                writeString(out, "id", value.getId());
+                out.name("expire").value(value.getExpire());
+                out.name("initiator").value(channel.isInitiator());
+                writeString(out, "endpoint", channel.getEndpoint());
+                if (channel.getDirection() != null) {
+                    out.name("direction");
+                    directionAdapter.write(out, channel.getDirection());
+                }
+                writeString(out, "channel-bundle-id", channel.getChannelBundleId());
+                if (channel.getRtpLevelRelayType() != null) {
+                    out.name("rtp-level-relay-type");
+                    rtpLevelRelayTypeAdapter.write(out, channel.getRtpLevelRelayType());
+                }
+                if (channel.getLastN() != null) {
+                    out.name("last-n").value(channel.getLastN());
+                }
+                writeLongs(out, "sources", channel.getSources());
+                writeLongs(out, "ssrcs", channel.getSsrcs());
+            }
+            writePreEncoded(out, "payload-types", value.getPayloadTypes(), payloadTypesAdapter);
+            writePreEncoded(out, "rtp-hdrexts", value.getRtpHdrexts(), rtpHdrextsAdapter);
+            if (value.getSsrcGroups() != null) {
+                out.name("ssrc-groups");
+                ssrcGroupsAdapter.write(out, value.getSsrcGroups());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChannelCommon read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            // The type of the channel is known only when the "type" field has been met, so both variants are collected
+            Channel channel = new Channel();
+            boolean octo = rawType == OctoChannel.class;
+            List<Source> octoSources = null;
+            boolean octoSourcesPresent = false;
+            Set<String> relays = null;
+            boolean relaysPresent = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type":
+                        octo = "octo".equals(readString(in)) && rawType != Channel.class;
+                        break;
+                    case "id":
+                        channel.setId(readString(in));
+                        break;
+                    case "expire":
+                        Integer expire = readInteger(in);
+                        if (expire != null) channel.setExpire(expire);
+                        break;
+                    case "payload-types":
+                        channel.setPayloadTypes(payloadTypesAdapter.read(in));
+                        break;
+                    case "rtp-hdrexts":
+                        channel.setRtpHdrexts(rtpHdrextsAdapter.read(in));
+                        break;
+                    case "ssrc-groups":
+                        channel.setSsrcGroups(ssrcGroupsAdapter.read(in));
+                        break;
+                    case "initiator":
+                        channel.setInitiator(readBoolean(in, channel.isInitiator()));
+                        break;
+                    case "endpoint":
+                        channel.setEndpoint(readString(in));
+                        break;
+                    case "direction":
+                        channel.setDirection(directionAdapter.read(in));
+                        break;
+                    case "channel-bundle-id":
+                        channel.setChannelBundleId(readString(in));
+                        break;
+                    case "rtp-level-relay-type":
+                        channel.setRtpLevelRelayType(rtpLevelRelayTypeAdapter.read(in));
+                        break;
+                    case "last-n":
+                        channel.setLastN(readInteger(in));
+                        break;
+                    case "sources":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            channel.setSources(null);
+                            octoSources = null;
+                            octoSourcesPresent = true;
+                            break;
+                        }
+                        List<Long> sources = new ArrayList<>();
+                        octoSources = new ArrayList<>();
+                        octoSourcesPresent = true;
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                                octoSources.add(sourceAdapter.read(in));
+                            } else if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                            } else {
+                                sources.add(in.nextLong());
+                            }
+                        }
+                        in.endArray();
+                        channel.setSources(sources);
+                        break;
+                    case "ssrcs":
+                        channel.setSsrcs(readLongs(in));
+                        break;
+                    case "relays":
+                        relays = relaysAdapter.read(in);
+                        relaysPresent = true;
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            if (!octo) {
+                return channel;
+            }
+            OctoChannel octoChannel = new OctoChannel();
+            octoChannel.setId(channel.getId());
+            octoChannel.setExpire(channel.getExpire());
+            octoChannel.setPayloadTypes(channel.getPayloadTypes());
+            octoChannel.setRtpHdrexts(channel.getRtpHdrexts());
+            octoChannel.setSsrcGroups(channel.getSsrcGroups());
+            if (octoSourcesPresent) octoChannel.setSources(octoSources);
+            if (relaysPresent) octoChannel.setRelays(relays);
+            return octoChannel;
+        }
+    }
+}
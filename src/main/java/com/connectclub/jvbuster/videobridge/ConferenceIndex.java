@@ -0,0 +1,122 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.*;
+
+/**
+ * Lookup tables of a colibri conference. An index is built once per conference instance (instances are compared
+ * by identity), so a conference must not be modified after it has been indexed.
+ */
+public class ConferenceIndex {
+
+    private static final Cache<Conference, ConferenceIndex> indexes = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final Map<String, Endpoint> endpoints;
+    private final Map<String, Map<String, List<Channel>>> channelsByEndpoint;
+    private final Map<String, List<SctpConnection>> sctpConnectionsByEndpoint;
+    private final Map<String, ChannelBundle> channelBundles;
+    private final Map<String, List<Channel>> channels;
+    private final Map<String, List<Channel>> sendingChannels;
+
+    public static ConferenceIndex of(Conference conference) {
+        return indexes.asMap().computeIfAbsent(conference, ConferenceIndex::new);
+    }
+
+    private ConferenceIndex(Conference conference) {
+        Map<String, Endpoint> endpoints = new HashMap<>();
+        for (Endpoint endpoint : nullToEmpty(conference.getEndpoints())) {
+            endpoints.putIfAbsent(endpoint.getId(), endpoint);
+        }
+
+        Map<String, Map<String, List<Channel>>> channelsByEndpoint = new HashMap<>();
+        Map<String, List<SctpConnection>> sctpConnectionsByEndpoint = new HashMap<>();
+        Map<String, List<Channel>> channels = new HashMap<>();
+        Map<String, List<Channel>> sendingChannels = new HashMap<>();
+        for (Content content : nullToEmpty(conference.getContents())) {
+            for (ChannelCommon channelCommon : nullToEmpty(content.getChannels())) {
+                if (!(channelCommon instanceof Channel)) {
+                    continue;
+                }
+                Channel channel = (Channel) channelCommon;
+                channels.computeIfAbsent(content.getName(), x -> new ArrayList<>()).add(channel);
+                if (channel.getSsrcs() != null && channel.getSsrcs().size() > 0) {
+                    sendingChannels.computeIfAbsent(content.getName(), x -> new ArrayList<>()).add(channel);
+                }
+                if (channel.getEndpoint() != null) {
+                    channelsByEndpoint.computeIfAbsent(channel.getEndpoint(), x -> new HashMap<>())
+                            .computeIfAbsent(content.getName(), x -> new ArrayList<>())
+                            .add(channel);
+                }
+            }
+            if ("data".equals(content.getName())) {
+                for (SctpConnection sctpConnection : nullToEmpty(content.getSctpConnections())) {
+                    if (sctpConnection.getEndpoint() != null) {
+                        sctpConnectionsByEndpoint.computeIfAbsent(sctpConnection.getEndpoint(), x -> new ArrayList<>()).add(sctpConnection);
+                    }
+                }
+            }
+        }
+
+        Map<String, ChannelBundle> channelBundles = new HashMap<>();
+        for (ChannelBundle channelBundle : nullToEmpty(conference.getChannelBundles())) {
+            channelBundles.putIfAbsent(channelBundle.getId(), channelBundle);
+        }
+
+        channelsByEndpoint.replaceAll((endpoint, x) -> freeze(x));
+
+        this.endpoints = Collections.unmodifiableMap(endpoints);
+        this.channelsByEndpoint = Collections.unmodifiableMap(channelsByEndpoint);
+        this.sctpConnectionsByEndpoint = freeze(sctpConnectionsByEndpoint);
+        this.channelBundles = Collections.unmodifiableMap(channelBundles);
+        this.channels = freeze(channels);
+        this.sendingChannels = freeze(sendingChannels);
+    }
+
+    private static <T> List<T> nullToEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private static <T> Map<String, List<T>> freeze(Map<String, List<T>> map) {
+        map.replaceAll((key, x) -> Collections.unmodifiableList(x));
+        return Collections.unmodifiableMap(map);
+    }
+
+    public boolean hasEndpoint(String endpoint) {
+        return endpoints.containsKey(endpoint);
+    }
+
+    public Endpoint getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * @return channels of the endpoint in the content, in the order of the conference
+     */
+    public List<Channel> getChannels(String endpoint, String contentName) {
+        return channelsByEndpoint.getOrDefault(endpoint, Map.of()).getOrDefault(contentName, List.of());
+    }
+
+    public List<Channel> getChannels(String contentName) {
+        return channels.getOrDefault(contentName, List.of());
+    }
+
+    /**
+     * @return channels of the content which have ssrcs, in the order of the conference
+     */
+    public List<Channel> getSendingChannels(String contentName) {
+        return sendingChannels.getOrDefault(contentName, List.of());
+    }
+
+    public List<SctpConnection> getSctpConnections(String endpoint) {
+        return sctpConnectionsByEndpoint.getOrDefault(endpoint, List.of());
+    }
+
+    public ChannelBundle getChannelBundle(String endpoint) {
+        return channelBundles.get(endpoint);
+    }
+}
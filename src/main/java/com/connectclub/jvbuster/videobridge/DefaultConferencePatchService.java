@@ -0,0 +1,252 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.exception.EndpointNotFound;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
+import com.connectclub.jvbuster.videobridge.i.ConferencePatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Merges the patches of the same colibri conference which arrive within a short window into one PATCH request.
+ * Videobridge answers a PATCH with the whole conference, so the merged response is handed to every caller.
+ * A batch is sent only after the previous batch of the conference is applied, so patches touching the same channel,
+ * sctp connection, channel bundle or endpoint are never merged and are sent in the order they have been received.
+ */
+@Slf4j
+@Service
+public class DefaultConferencePatchService implements ConferencePatchService {
+
+    private final int windowInMillis;
+    private final int maxBatchSize;
+
+    // the last batch of every conference until it is applied
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    public DefaultConferencePatchService(
+            @Value("${jvb.conference.patch-coalescing.window-in-millis}") int windowInMillis,
+            @Value("${jvb.conference.patch-coalescing.max-size}") int maxBatchSize
+    ) {
+        this.windowInMillis = windowInMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public CompletableFuture<Conference> patch(JvbInstance jvbInstance, Conference patch) {
+        if (windowInMillis <= 0 || maxBatchSize <= 1) {
+            return jvbInstance.patchConferenceAsync(patch);
+        }
+        String key = jvbInstance.getId() + "/" + patch.getId();
+        Set<String> patchKeys = getPatchKeys(patch);
+        CompletableFuture<Conference> result = new CompletableFuture<>();
+        List<Batch> toFlush = new ArrayList<>(2);
+        List<Batch> toSchedule = new ArrayList<>(1);
+        batches.compute(key, (k, batch) -> {
+            if (batch != null && batch.tryAdd(patch, patchKeys, result)) {
+                if (batch.size() >= maxBatchSize) {
+                    batch.closed = true;
+                    toFlush.add(batch);
+                }
+                return batch;
+            }
+            CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+            if (batch != null) {
+                // the patch has to wait until the last batch is applied
+                if (!batch.closed) {
+                    batch.closed = true;
+                    toFlush.add(batch);
+                }
+                previous = batch.done;
+            }
+            Batch newBatch = new Batch(key, jvbInstance, previous);
+            newBatch.tryAdd(patch, patchKeys, result);
+            toSchedule.add(newBatch);
+            return newBatch;
+        });
+        toFlush.forEach(Batch::flush);
+        toSchedule.forEach(batch -> scheduleFlush(batch::flush));
+        return result;
+    }
+
+    void scheduleFlush(Runnable flush) {
+        CompletableFuture.delayedExecutor(windowInMillis, TimeUnit.MILLISECONDS, Runnable::run).execute(flush);
+    }
+
+    // the channels of the patch are allocated by videobridge, so the patch must not be sent twice
+    private static boolean allocates(Set<String> patchKeys) {
+        return patchKeys.stream().anyMatch(x -> x.startsWith("new-"));
+    }
+
+    private static Set<String> getPatchKeys(Conference patch) {
+        Set<String> keys = new HashSet<>();
+        for (Content content : Optional.ofNullable(patch.getContents()).orElse(List.of())) {
+            for (ChannelCommon channel : Optional.ofNullable(content.getChannels()).orElse(List.of())) {
+                if (channel.getId() != null) {
+                    keys.add("channel:" + content.getName() + ":" + channel.getId());
+                } else if (channel instanceof Channel) {
+                    keys.add("new-channel:" + content.getName() + ":" + ((Channel) channel).getEndpoint());
+                }
+            }
+            for (SctpConnection sctpConnection : Optional.ofNullable(content.getSctpConnections()).orElse(List.of())) {
+                if (sctpConnection.getId() != null) {
+                    keys.add("sctp:" + sctpConnection.getId());
+                } else {
+                    keys.add("new-sctp:" + sctpConnection.getEndpoint());
+                }
+            }
+        }
+        for (ChannelBundle channelBundle : Optional.ofNullable(patch.getChannelBundles()).orElse(List.of())) {
+            keys.add("bundle:" + channelBundle.getId());
+        }
+        for (Endpoint endpoint : Optional.ofNullable(patch.getEndpoints()).orElse(List.of())) {
+            keys.add("endpoint:" + endpoint.getId());
+        }
+        return keys;
+    }
+
+    private static Conference merge(List<Conference> patches) {
+        Map<String, Content> contents = new LinkedHashMap<>();
+        List<ChannelBundle> channelBundles = null;
+        List<Endpoint> endpoints = null;
+        String gid = null;
+        for (Conference patch : patches) {
+            if (gid == null) gid = patch.getGid();
+            if (patch.getContents() != null) {
+                for (Content content : patch.getContents()) {
+                    Content mergedContent = contents.computeIfAbsent(content.getName(), name -> Content.builder().name(name).build());
+                    if (content.getChannels() != null) {
+                        List<ChannelCommon> channels = new ArrayList<>(mergedContent.getChannels());
+                        channels.addAll(content.getChannels());
+                        mergedContent.setChannels(channels);
+                    }
+                    if (content.getSctpConnections() != null) {
+                        List<SctpConnection> sctpConnections = new ArrayList<>(mergedContent.getSctpConnections());
+                        sctpConnections.addAll(content.getSctpConnections());
+                        mergedContent.setSctpConnections(sctpConnections);
+                    }
+                }
+            }
+            if (patch.getChannelBundles() != null) {
+                if (channelBundles == null) channelBundles = new ArrayList<>();
+                channelBundles.addAll(patch.getChannelBundles());
+            }
+            if (patch.getEndpoints() != null) {
+                if (endpoints == null) endpoints = new ArrayList<>();
+                endpoints.addAll(patch.getEndpoints());
+            }
+        }
+        return Conference.builder()
+                .id(patches.get(0).getId())
+                .gid(gid)
+                .contents(contents.isEmpty() ? null : new ArrayList<>(contents.values()))
+                .channelBundles(channelBundles)
+                .endpoints(endpoints)
+                .build();
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private class Batch {
+        private final String key;
+        private final JvbInstance jvbInstance;
+        private final CompletableFuture<Void> previous;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final AtomicBoolean flushed = new AtomicBoolean();
+        // set only inside batches.compute, no patch is added then
+        private volatile boolean closed;
+
+        private final List<Conference> patches = new ArrayList<>();
+        private final List<Set<String>> patchesKeys = new ArrayList<>();
+        private final List<CompletableFuture<Conference>> results = new ArrayList<>();
+        private final Set<String> keys = new HashSet<>();
+
+        Batch(String key, JvbInstance jvbInstance, CompletableFuture<Void> previous) {
+            this.key = key;
+            this.jvbInstance = jvbInstance;
+            this.previous = previous;
+            done.whenComplete((r, e) -> batches.remove(key, this));
+        }
+
+        // called only inside batches.compute, so it never races with flush
+        boolean tryAdd(Conference patch, Set<String> patchKeys, CompletableFuture<Conference> result) {
+            if (closed || !Collections.disjoint(keys, patchKeys)) {
+                return false;
+            }
+            keys.addAll(patchKeys);
+            patches.add(patch);
+            patchesKeys.add(patchKeys);
+            results.add(result);
+            return true;
+        }
+
+        int size() {
+            return patches.size();
+        }
+
+        void flush() {
+            // under the lock of the key, so no patch is being added meanwhile
+            batches.compute(key, (k, batch) -> {
+                closed = true;
+                return batch;
+            });
+            if (!flushed.compareAndSet(false, true)) {
+                return;
+            }
+            previous.whenComplete((r, e) -> send());
+        }
+
+        private void send() {
+            if (patches.size() == 1) {
+                sendSeparately(0);
+                CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((r, e) -> done.complete(null));
+                return;
+            }
+            jvbInstance.patchConferenceAsync(merge(patches)).whenComplete((conference, e) -> {
+                if (e == null) {
+                    results.forEach(x -> x.complete(conference));
+                    done.complete(null);
+                    return;
+                }
+                Throwable cause = unwrap(e);
+                if (!(cause instanceof JvbInstanceRestException) && !(cause instanceof EndpointNotFound)) {
+                    results.forEach(x -> x.completeExceptionally(cause));
+                    done.complete(null);
+                    return;
+                }
+                // one of the patches may be the culprit, so every one is retried on its own,
+                // except the ones allocating channels, which may have been allocated already
+                log.warn("Merged patch of {} patches failed for conference(instanceId={}, id={}), sending them separately", patches.size(), jvbInstance.getId(), patches.get(0).getId(), e);
+                for (int i = 0; i < patches.size(); i++) {
+                    if (allocates(patchesKeys.get(i))) {
+                        results.get(i).completeExceptionally(cause);
+                    } else {
+                        sendSeparately(i);
+                    }
+                }
+                CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((r, e2) -> done.complete(null));
+            });
+        }
+
+        private void sendSeparately(int i) {
+            CompletableFuture<Conference> result = results.get(i);
+            jvbInstance.patchConferenceAsync(patches.get(i)).whenComplete((conference, e) -> {
+                if (e == null) {
+                    result.complete(conference);
+                } else {
+                    result.completeExceptionally(unwrap(e));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.videobridge.data.ConferenceSnapshot;
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+import com.connectclub.jvbuster.videobridge.i.ConferencePatchService;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Every full conference which videobridge returns (GET or PATCH response) replaces the snapshot, unless a request
+ * started later has already done it. Invalidation leaves an empty snapshot, so responses to requests started
+ * before it are dropped too. The snapshots are local to the jvbuster, so a snapshot is used for the offers of a
+ * conference version only if it has been requested after that version was read.
+ */
+@Slf4j
+@Service
+public class DefaultConferenceSnapshotService implements ConferenceSnapshotService {
+
+    private final AtomicLong versions = new AtomicLong();
+    private final ConcurrentMap<String, ConferenceSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final JvbInstanceRegistryService jvbInstanceRegistryService;
+    private final ConferencePatchService conferencePatchService;
+
+    public DefaultConferenceSnapshotService(
+            JvbInstanceRegistryService jvbInstanceRegistryService,
+            ConferencePatchService conferencePatchService
+    ) {
+        this.jvbInstanceRegistryService = jvbInstanceRegistryService;
+        this.conferencePatchService = conferencePatchService;
+    }
+
+    @Override
+    public CompletableFuture<Conference> get(JvbConferenceData jvbConference, long maxStalenessInMillis) {
+        return get(jvbConference, maxStalenessInMillis, -1);
+    }
+
+    @Override
+    public CompletableFuture<Conference> get(JvbConferenceData jvbConference, long maxStalenessInMillis, long minConferenceVersion) {
+        ConferenceSnapshot snapshot = snapshots.get(jvbConference.getId());
+        if (snapshot != null && snapshot.getConference() != null && snapshot.getAgeInMillis() <= maxStalenessInMillis
+                && snapshot.getConferenceVersion() >= minConferenceVersion) {
+            return CompletableFuture.completedFuture(snapshot.getConference());
+        }
+        JvbInstanceData jvbInstance = jvbConference.getInstance();
+        long version = versions.incrementAndGet();
+        return track(
+                jvbConference.getId(),
+                version,
+                jvbInstance.getId(),
+                minConferenceVersion,
+                jvbInstanceRegistryService.get(jvbInstance).getConferenceAsync(jvbConference.getConfId())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Conference> patch(JvbInstanceData jvbInstance, String gid, Conference patch) {
+        long version = versions.incrementAndGet();
+        return track(
+                JvbConferenceData.buildId(gid, patch.getId()),
+                version,
+                jvbInstance.getId(),
+                -1,
+                conferencePatchService.patch(jvbInstanceRegistryService.get(jvbInstance), patch)
+        );
+    }
+
+    // the versions are taken before the request is sent
+    private CompletableFuture<Conference> track(String jvbConferenceId, long version, String instanceId, long conferenceVersion, CompletableFuture<Conference> request) {
+        // the request future itself is returned, so a caller can still cancel it
+        request.whenComplete((conference, e) -> {
+            if (e == null && conference != null) {
+                update(jvbConferenceId, new ConferenceSnapshot(version, instanceId, System.nanoTime(), conference, conferenceVersion));
+            }
+        });
+        return request;
+    }
+
+    private void update(String jvbConferenceId, ConferenceSnapshot snapshot) {
+        snapshots.merge(jvbConferenceId, snapshot, (current, x) -> {
+            if (current.getVersion() > x.getVersion()) {
+                return current;
+            }
+            // the later request sees the changes the current snapshot is known to have
+            if (x.getConference() != null && current.getConferenceVersion() > x.getConferenceVersion()) {
+                return new ConferenceSnapshot(x.getVersion(), x.getInstanceId(), x.getTimestampInNanos(), x.getConference(), current.getConferenceVersion());
+            }
+            return x;
+        });
+    }
+
+    @Override
+    public Optional<ConferenceSnapshot> getSnapshot(String jvbConferenceId) {
+        return Optional.ofNullable(snapshots.get(jvbConferenceId))
+                .filter(x -> x.getConference() != null);
+    }
+
+    @Override
+    public void invalidate(String jvbConferenceId) {
+        update(jvbConferenceId, new ConferenceSnapshot(versions.incrementAndGet(), null, System.nanoTime(), null, -1));
+    }
+
+    @Override
+    public void invalidateInstance(String instanceId) {
+        snapshots.forEach((jvbConferenceId, snapshot) -> {
+            if (Objects.equals(snapshot.getInstanceId(), instanceId)) {
+                invalidate(jvbConferenceId);
+            }
+        });
+    }
+
+    @Override
+    public void retain(Collection<String> jvbConferencesIds) {
+        Set<String> retainedIds = Set.copyOf(jvbConferencesIds);
+        snapshots.keySet().retainAll(retainedIds);
+    }
+
+    @Override
+    public void retainInstances(Collection<String> instancesIds) {
+        Set<String> retainedIds = Set.copyOf(instancesIds);
+        snapshots.forEach((jvbConferenceId, snapshot) -> {
+            if (snapshot.getInstanceId() != null && !retainedIds.contains(snapshot.getInstanceId())) {
+                log.info("Snapshot of conference(id={}) has been invalidated, JVB instance(id={}) is gone", jvbConferenceId, snapshot.getInstanceId());
+                invalidate(jvbConferenceId);
+            }
+        });
+    }
+}
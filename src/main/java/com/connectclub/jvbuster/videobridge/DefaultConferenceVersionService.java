@@ -0,0 +1,83 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The version of a gid is kept in redis until the gid has not been bumped for the ttl. A new version starts from
+ * the current time in microseconds, so it is greater than any version of the gid before, an ETag never repeats.
+ */
+@Service
+public class DefaultConferenceVersionService implements ConferenceVersionService {
+
+    // KEYS: version; ARGV: initial version, ttl
+    private final static String BUMP_SCRIPT = ""
+            + "if redis.call('exists', KEYS[1]) == 0 then "
+            + "  redis.call('set', KEYS[1], ARGV[1]) "
+            + "else "
+            + "  redis.call('incr', KEYS[1]) "
+            + "end "
+            + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+            + "return 1";
+
+    private final RedissonClient redissonClient;
+    private final RTopic topic;
+    private final long ttlInMillis;
+
+    public DefaultConferenceVersionService(
+            @Value("${jvb.conference.version.ttl-in-millis}") long ttlInMillis,
+            RedissonClient redissonClient
+    ) {
+        this.ttlInMillis = ttlInMillis;
+        this.redissonClient = redissonClient;
+        this.topic = redissonClient.getTopic("conference-version", StringCodec.INSTANCE);
+    }
+
+    private static String getVersionName(String gid) {
+        return "conference-version-" + gid;
+    }
+
+    private RAtomicLong getVersion(String gid) {
+        return redissonClient.getAtomicLong(getVersionName(gid));
+    }
+
+    @Override
+    public long get(String gid) {
+        return getVersion(gid).get();
+    }
+
+    @Override
+    public CompletableFuture<Long> getAsync(String gid) {
+        return getVersion(gid).getAsync().toCompletableFuture();
+    }
+
+    @Override
+    public void bump(String gid) {
+        // the version of a finished conference is not kept forever
+        redissonClient.getScript(StringCodec.INSTANCE).eval(
+                RScript.Mode.READ_WRITE,
+                BUMP_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                List.of(getVersionName(gid)),
+                String.valueOf(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis())),
+                String.valueOf(ttlInMillis)
+        );
+        topic.publish(gid);
+    }
+
+    @Override
+    public void addListener(Consumer<String> listener) {
+        topic.addListener(String.class, (channel, gid) -> listener.accept(gid));
+    }
+}
@@ -0,0 +1,426 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.repository.i.JvbInstanceDataRepository;
+import com.connectclub.jvbuster.videobridge.data.EndpointTeardown;
+import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.EndpointTeardownService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Endpoint removals are kept in redis, one entry per endpoint, and a sorted set orders the entries by the time
+ * they are due. An entry is claimed by a script which moves it to the end of a lease and records the owner, so it
+ * is retried if the jvbuster which claimed it dies, and only the owner puts it back. Failed removals are retried
+ * with an exponential backoff.
+ */
+@Slf4j
+@Service
+public class DefaultEndpointTeardownService implements EndpointTeardownService {
+
+    private enum ClaimResult {
+        NONE,
+        CLAIMED,
+        // another claim holds the lease
+        LEASED
+    }
+
+    private static class Claim {
+        private final String token;
+        private final EndpointTeardown teardown;
+
+        private Claim(String token, EndpointTeardown teardown) {
+            this.token = token;
+            this.teardown = teardown;
+        }
+    }
+
+    // KEYS: queue, owners; ARGV: endpoint, now, lease end, owner token. An entry waiting for a retry is claimed too
+    private final static String CLAIM_SCRIPT = ""
+            + "local score = redis.call('zscore', KEYS[1], ARGV[1]) "
+            + "if not score then return 0 end "
+            + "if tonumber(score) > tonumber(ARGV[2]) and redis.call('hexists', KEYS[2], ARGV[1]) == 1 then return 2 end "
+            + "redis.call('zadd', KEYS[1], ARGV[3], ARGV[1]) "
+            + "redis.call('hset', KEYS[2], ARGV[1], ARGV[4]) "
+            + "return 1";
+
+    // KEYS: queue, owners; ARGV: now, lease end, owner token, max number of the entries. Returns the claimed entries
+    private final static String CLAIM_DUE_SCRIPT = ""
+            + "local due = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[4])) "
+            + "for _, endpoint in ipairs(due) do "
+            + "  redis.call('zadd', KEYS[1], ARGV[2], endpoint) "
+            + "  redis.call('hset', KEYS[2], endpoint, ARGV[3]) "
+            + "end "
+            + "return due";
+
+    // KEYS: queue, owners, teardowns; ARGV: endpoint, owner token, due time of the entry left
+    private final static String RELEASE_SCRIPT = ""
+            + "if redis.call('hget', KEYS[2], ARGV[1]) ~= ARGV[2] then return 0 end "
+            + "redis.call('hdel', KEYS[2], ARGV[1]) "
+            + "if redis.call('hexists', KEYS[3], ARGV[1]) == 1 then "
+            + "  redis.call('zadd', KEYS[1], ARGV[3], ARGV[1]) "
+            + "else "
+            + "  redis.call('zrem', KEYS[1], ARGV[1]) "
+            + "end "
+            + "return 1";
+
+    // KEYS: queue, owners; ARGV: endpoint, now. A leased entry is put back by its owner
+    private final static String ENQUEUE_SCRIPT = ""
+            + "if redis.call('hexists', KEYS[2], ARGV[1]) == 0 then redis.call('zadd', KEYS[1], ARGV[2], ARGV[1]) end "
+            + "return 1";
+
+    private final static String QUEUE_NAME = "endpoint-teardown-queue";
+    private final static String OWNERS_NAME = "endpoint-teardown-owner";
+    private final static String TEARDOWNS_NAME = "endpoint-teardown";
+
+    private final Gson gson = new Gson();
+
+    private final RMap<String, String> teardowns;
+    private final RScript script;
+
+    private final JvbInstanceDataRepository jvbInstanceDataRepository;
+    private final JvbInstanceRegistryService jvbInstanceRegistryService;
+    private final ConferenceSnapshotService conferenceSnapshotService;
+    private final ConferenceVersionService conferenceVersionService;
+    private final Executor signalingExecutor;
+
+    private final int batchSize;
+    private final long leaseInMillis;
+    private final long backoffInMillis;
+    private final long maxBackoffInMillis;
+    private final int maxAttempts;
+    private final long leaseWaitIntervalInMillis;
+
+    public DefaultEndpointTeardownService(
+            @Value("${jvb.endpoint-teardown.batch-size}") int batchSize,
+            @Value("${jvb.endpoint-teardown.lease-in-millis}") long leaseInMillis,
+            @Value("${jvb.endpoint-teardown.backoff-in-millis}") long backoffInMillis,
+            @Value("${jvb.endpoint-teardown.max-backoff-in-millis}") long maxBackoffInMillis,
+            @Value("${jvb.endpoint-teardown.max-attempts}") int maxAttempts,
+            @Value("${jvb.endpoint-teardown.lease-wait-interval-in-millis}") long leaseWaitIntervalInMillis,
+            RedissonClient redissonClient,
+            JvbInstanceDataRepository jvbInstanceDataRepository,
+            JvbInstanceRegistryService jvbInstanceRegistryService,
+            ConferenceSnapshotService conferenceSnapshotService,
+            ConferenceVersionService conferenceVersionService,
+            @Qualifier("signalingExecutor") Executor signalingExecutor
+    ) {
+        this.batchSize = batchSize;
+        this.leaseInMillis = leaseInMillis;
+        this.backoffInMillis = backoffInMillis;
+        this.maxBackoffInMillis = maxBackoffInMillis;
+        this.maxAttempts = maxAttempts;
+        this.leaseWaitIntervalInMillis = leaseWaitIntervalInMillis;
+        this.teardowns = redissonClient.getMap(TEARDOWNS_NAME, StringCodec.INSTANCE);
+        this.script = redissonClient.getScript(StringCodec.INSTANCE);
+        this.jvbInstanceDataRepository = jvbInstanceDataRepository;
+        this.jvbInstanceRegistryService = jvbInstanceRegistryService;
+        this.conferenceSnapshotService = conferenceSnapshotService;
+        this.conferenceVersionService = conferenceVersionService;
+        this.signalingExecutor = signalingExecutor;
+    }
+
+    @Override
+    public void enqueue(String endpoint, List<JvbConferenceData> conferences) {
+        if (conferences.isEmpty()) {
+            return;
+        }
+        List<EndpointTeardown.Target> targets = conferences.stream()
+                .map(x -> EndpointTeardown.Target.builder()
+                        .instanceId(x.getInstance().getId())
+                        .jvbConferenceId(x.getId())
+                        .confId(x.getConfId())
+                        .gid(x.getGid())
+                        .build())
+                .collect(Collectors.toList());
+        update(endpoint, teardown -> {
+            if (teardown == null) {
+                return EndpointTeardown.builder().endpoint(endpoint).targets(targets).build();
+            }
+            Set<String> queued = teardown.getTargets().stream()
+                    .map(EndpointTeardown.Target::getJvbConferenceId)
+                    .collect(Collectors.toSet());
+            List<EndpointTeardown.Target> merged = new ArrayList<>(teardown.getTargets());
+            targets.stream().filter(x -> !queued.contains(x.getJvbConferenceId())).forEach(merged::add);
+            return teardown.toBuilder().targets(merged).attempts(0).build();
+        });
+        script.eval(
+                RScript.Mode.READ_WRITE,
+                ENQUEUE_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                List.of(QUEUE_NAME, OWNERS_NAME),
+                endpoint,
+                String.valueOf(System.currentTimeMillis())
+        );
+    }
+
+    @Override
+    public Map<String, CompletableFuture<Void>> runNow(String endpoint, String gid) {
+        String json = teardowns.get(endpoint);
+        if (json == null) {
+            return Map.of();
+        }
+        // a removal running elsewhere may still delete the endpoint, so it is waited for
+        CompletableFuture<Map<String, CompletableFuture<Boolean>>> run = claimNow(endpoint).thenApplyAsync(claim -> {
+            if (claim == null) {
+                return Map.of();
+            }
+            Map<String, CompletableFuture<Boolean>> removals = removeAll(claim.teardown, findInstances(List.of(claim.teardown)), new HashMap<>());
+            // the endpoint is added again to the conferences of the gid right after, a retry there would remove the new one
+            Set<String> droppedIfFailed = claim.teardown.getTargets().stream()
+                    .filter(x -> Objects.equals(x.getGid(), gid))
+                    .map(EndpointTeardown.Target::getJvbConferenceId)
+                    .collect(Collectors.toSet());
+            finishWhenDone(claim, removals, droppedIfFailed);
+            return removals;
+        }, signalingExecutor);
+        Map<String, CompletableFuture<Void>> result = new LinkedHashMap<>();
+        for (EndpointTeardown.Target target : gson.fromJson(json, EndpointTeardown.class).getTargets()) {
+            result.put(target.getJvbConferenceId(), run
+                    .thenCompose(removals -> removals.getOrDefault(target.getJvbConferenceId(), CompletableFuture.completedFuture(true)))
+                    .handle((x, e) -> {
+                        if (e != null) {
+                            log.error("Removal of endpoint(id={}) has not been run", endpoint, e);
+                        }
+                        return null;
+                    }));
+        }
+        return result;
+    }
+
+    // retried until the lease of another claim is released or expired,
+    // continued on the signaling executor as redis is called synchronously then
+    private CompletableFuture<Claim> claimNow(String endpoint) {
+        String token = UUID.randomUUID().toString();
+        return claimAsync(endpoint, token).thenComposeAsync(claimResult -> {
+            if (claimResult == ClaimResult.LEASED) {
+                CompletableFuture<Claim> retry = new CompletableFuture<>();
+                CompletableFuture.delayedExecutor(leaseWaitIntervalInMillis, TimeUnit.MILLISECONDS, signalingExecutor)
+                        .execute(() -> claimNow(endpoint).whenComplete((x, e) -> {
+                            if (e != null) {
+                                retry.completeExceptionally(e);
+                            } else {
+                                retry.complete(x);
+                            }
+                        }));
+                return retry;
+            }
+            return CompletableFuture.completedFuture(claimResult == ClaimResult.CLAIMED ? toClaim(endpoint, token) : null);
+        }, signalingExecutor);
+    }
+
+    // colibri removes an endpoint only by its own DELETE, the DELETEs of the batch are sent concurrently
+    @Override
+    public void processDue() {
+        long now = System.currentTimeMillis();
+        String token = UUID.randomUUID().toString();
+        List<Object> due = script.eval(
+                RScript.Mode.READ_WRITE,
+                CLAIM_DUE_SCRIPT,
+                RScript.ReturnType.MULTI,
+                List.of(QUEUE_NAME, OWNERS_NAME),
+                String.valueOf(now),
+                String.valueOf(now + leaseInMillis),
+                token,
+                String.valueOf(batchSize)
+        );
+        if (due.isEmpty()) {
+            return;
+        }
+        Set<String> endpoints = due.stream().map(String::valueOf).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, String> jsons = teardowns.getAll(endpoints);
+        List<Claim> claimed = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            String json = jsons.get(endpoint);
+            if (json == null) {
+                release(endpoint, token, now);
+            } else {
+                claimed.add(new Claim(token, gson.fromJson(json, EndpointTeardown.class)));
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        Map<String, JvbInstanceData> instances = findInstances(claimed.stream().map(x -> x.teardown).collect(Collectors.toList()));
+        Map<String, Boolean> available = new HashMap<>();
+        List<CompletableFuture<Void>> finished = new ArrayList<>(claimed.size());
+        for (Claim claim : claimed) {
+            finished.add(finishWhenDone(claim, removeAll(claim.teardown, instances, available), Set.of()));
+        }
+        CompletableFuture.allOf(finished.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private CompletableFuture<ClaimResult> claimAsync(String endpoint, String token) {
+        long now = System.currentTimeMillis();
+        return script.<Long>evalAsync(
+                RScript.Mode.READ_WRITE,
+                CLAIM_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                List.of(QUEUE_NAME, OWNERS_NAME),
+                endpoint,
+                String.valueOf(now),
+                String.valueOf(now + leaseInMillis),
+                token
+        ).toCompletableFuture().thenApply(x -> ClaimResult.values()[x.intValue()]);
+    }
+
+    // null if the entry is gone, the claim is released then
+    private Claim toClaim(String endpoint, String token) {
+        String json = teardowns.get(endpoint);
+        if (json == null) {
+            release(endpoint, token, System.currentTimeMillis());
+            return null;
+        }
+        return new Claim(token, gson.fromJson(json, EndpointTeardown.class));
+    }
+
+    // the entry is put back only by the owner of the claim, it is due at the time unless it is gone
+    private void release(String endpoint, String token, long dueTime) {
+        script.eval(
+                RScript.Mode.READ_WRITE,
+                RELEASE_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                List.of(QUEUE_NAME, OWNERS_NAME, TEARDOWNS_NAME),
+                endpoint,
+                token,
+                String.valueOf(dueTime)
+        );
+    }
+
+    // one query for all the videobridges of the batch
+    private Map<String, JvbInstanceData> findInstances(List<EndpointTeardown> teardowns) {
+        Set<String> ids = teardowns.stream()
+                .flatMap(x -> x.getTargets().stream())
+                .map(EndpointTeardown.Target::getInstanceId)
+                .collect(Collectors.toSet());
+        Map<String, JvbInstanceData> result = new HashMap<>();
+        jvbInstanceDataRepository.findAllById(ids).forEach(x -> result.put(x.getId(), x));
+        return result;
+    }
+
+    /**
+     * @param available availability by videobridge id, shared by the removals of a batch
+     * @return removals by jvb conference id, completed with true if the endpoint is gone from the conference
+     */
+    private Map<String, CompletableFuture<Boolean>> removeAll(EndpointTeardown teardown, Map<String, JvbInstanceData> instances, Map<String, Boolean> available) {
+        Map<String, CompletableFuture<Boolean>> result = new LinkedHashMap<>();
+        for (EndpointTeardown.Target target : teardown.getTargets()) {
+            JvbInstanceData instance = instances.get(target.getInstanceId());
+            if (instance == null) {
+                // the videobridge is gone together with its conferences
+                result.put(target.getJvbConferenceId(), CompletableFuture.completedFuture(true));
+                continue;
+            }
+            if (!available.computeIfAbsent(instance.getId(), jvbInstanceRegistryService::isAvailable)) {
+                result.put(target.getJvbConferenceId(), CompletableFuture.completedFuture(false));
+                continue;
+            }
+            CompletableFuture<Boolean> removal = jvbInstanceRegistryService.get(instance)
+                    .deleteEndpointAsync(target.getConfId(), teardown.getEndpoint())
+                    .handle((r, e) -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause == null) {
+                            return true;
+                        }
+                        if (cause instanceof JvbInstanceRestException && ((JvbInstanceRestException) cause).getResponseCode() < 500) {
+                            log.warn("Endpoint(id={}) is already gone from conference(id={}): {}", teardown.getEndpoint(), target.getJvbConferenceId(), cause.getMessage());
+                            return true;
+                        }
+                        log.error("Remove endpoint failed(jvbInstanceId={}, conferenceId={}, endpoint={})", target.getInstanceId(), target.getConfId(), teardown.getEndpoint(), cause);
+                        return false;
+                    });
+            // the bump calls redis synchronously, it must not run on the okhttp dispatcher
+            removal.thenAcceptAsync(removed -> {
+                if (removed) {
+                    conferenceSnapshotService.invalidate(target.getJvbConferenceId());
+                    conferenceVersionService.bump(target.getGid());
+                }
+            }, signalingExecutor);
+            result.put(target.getJvbConferenceId(), removal);
+        }
+        return result;
+    }
+
+    private CompletableFuture<Void> finishWhenDone(Claim claim, Map<String, CompletableFuture<Boolean>> removals, Set<String> droppedIfFailed) {
+        return CompletableFuture.allOf(removals.values().toArray(CompletableFuture[]::new)).thenRunAsync(() -> {
+            Set<String> done = new HashSet<>();
+            boolean failed = false;
+            for (Map.Entry<String, CompletableFuture<Boolean>> removal : removals.entrySet()) {
+                if (removal.getValue().join()) {
+                    done.add(removal.getKey());
+                } else if (droppedIfFailed.contains(removal.getKey())) {
+                    log.warn("Failed removal of endpoint(id={}) from conference(id={}) is dropped, the endpoint is added again", claim.teardown.getEndpoint(), removal.getKey());
+                    done.add(removal.getKey());
+                } else {
+                    failed = true;
+                }
+            }
+            finish(claim, done, failed);
+        }, signalingExecutor);
+    }
+
+    private void finish(Claim claim, Set<String> done, boolean failed) {
+        String endpoint = claim.teardown.getEndpoint();
+        AtomicBoolean givenUp = new AtomicBoolean();
+        EndpointTeardown remaining = update(endpoint, current -> {
+            givenUp.set(false);
+            if (current == null) {
+                return null;
+            }
+            List<EndpointTeardown.Target> targets = current.getTargets().stream()
+                    .filter(x -> !done.contains(x.getJvbConferenceId()))
+                    .collect(Collectors.toList());
+            int attempts = failed ? current.getAttempts() + 1 : current.getAttempts();
+            if (attempts >= maxAttempts) {
+                givenUp.set(true);
+                return null;
+            }
+            return current.toBuilder().targets(targets).attempts(attempts).build();
+        });
+        if (givenUp.get()) {
+            log.error("Removal of endpoint(id={}) has been given up after {} attempts", endpoint, maxAttempts);
+        }
+        // an entry queued again meanwhile is due right away
+        long delay = remaining != null && failed ? Math.min(maxBackoffInMillis, backoffInMillis << Math.min(remaining.getAttempts() - 1, 20)) : 0;
+        release(endpoint, claim.token, System.currentTimeMillis() + delay);
+    }
+
+    // compare-and-set loop, an entry without targets is removed
+    private EndpointTeardown update(String endpoint, UnaryOperator<EndpointTeardown> fn) {
+        while (true) {
+            String json = teardowns.get(endpoint);
+            EndpointTeardown current = json == null ? null : gson.fromJson(json, EndpointTeardown.class);
+            EndpointTeardown updated = fn.apply(current);
+            if (updated == null || updated.getTargets().isEmpty()) {
+                if (json == null || teardowns.remove(endpoint, json)) {
+                    return null;
+                }
+            } else {
+                String updatedJson = gson.toJson(updated);
+                if (json == null ? teardowns.putIfAbsent(endpoint, updatedJson) == null : teardowns.replace(endpoint, json, updatedJson)) {
+                    return updated;
+                }
+            }
+        }
+    }
+}
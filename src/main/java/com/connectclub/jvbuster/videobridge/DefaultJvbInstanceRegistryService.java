@@ -0,0 +1,195 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class DefaultJvbInstanceRegistryService implements JvbInstanceRegistryService, DisposableBean {
+
+    private final ConcurrentMap<String, JvbInstance> instances = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, JvbInstanceCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private final int connectTimeoutInMillis;
+    private final int readTimeoutInMillis;
+    private final int writeTimeoutInMillis;
+    private final int maxIdleConnections;
+    private final int keepAliveInSeconds;
+    private final int maxRequestsPerHost;
+    private final JvbInstanceCircuitBreaker.Settings circuitBreakerSettings;
+    private final boolean hedgingEnabled;
+    private final JvbInstanceHedging.Settings hedgingSettings;
+    private final int hedgingMaxRequests;
+
+    private final OkHttpClient okHttpClient;
+
+    public DefaultJvbInstanceRegistryService(
+            @Value("${jvb.client.connect-timeout-in-millis}") int connectTimeoutInMillis,
+            @Value("${jvb.client.read-timeout-in-millis}") int readTimeoutInMillis,
+            @Value("${jvb.client.write-timeout-in-millis}") int writeTimeoutInMillis,
+            @Value("${jvb.client.max-idle-connections}") int maxIdleConnections,
+            @Value("${jvb.client.keep-alive-in-seconds}") int keepAliveInSeconds,
+            @Value("${jvb.client.max-requests-per-host}") int maxRequestsPerHost,
+            @Value("${jvb.client.circuit-breaker.window-size}") int circuitBreakerWindowSize,
+            @Value("${jvb.client.circuit-breaker.min-samples}") int circuitBreakerMinSamples,
+            @Value("${jvb.client.circuit-breaker.failure-rate-threshold}") int circuitBreakerFailureRateThreshold,
+            @Value("${jvb.client.circuit-breaker.consecutive-failures-threshold}") int circuitBreakerConsecutiveFailuresThreshold,
+            @Value("${jvb.client.circuit-breaker.open-duration-in-millis}") long circuitBreakerOpenDurationInMillis,
+            @Value("${jvb.client.circuit-breaker.timeout-multiplier}") double circuitBreakerTimeoutMultiplier,
+            @Value("${jvb.client.circuit-breaker.min-timeout-in-millis}") long circuitBreakerMinTimeoutInMillis,
+            @Value("${jvb.client.circuit-breaker.max-timeout-in-millis}") long circuitBreakerMaxTimeoutInMillis,
+            @Value("${jvb.client.hedging.enabled}") boolean hedgingEnabled,
+            @Value("${jvb.client.hedging.budget-percent}") int hedgingBudgetPercent,
+            @Value("${jvb.client.hedging.max-burst}") int hedgingMaxBurst,
+            @Value("${jvb.client.hedging.min-delay-in-millis}") long hedgingMinDelayInMillis,
+            @Value("${jvb.client.hedging.max-requests}") int hedgingMaxRequests,
+            OkHttpClient okHttpClient
+    ) {
+        this.connectTimeoutInMillis = connectTimeoutInMillis;
+        this.readTimeoutInMillis = readTimeoutInMillis;
+        this.writeTimeoutInMillis = writeTimeoutInMillis;
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveInSeconds = keepAliveInSeconds;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.circuitBreakerSettings = JvbInstanceCircuitBreaker.Settings.builder()
+                .windowSize(circuitBreakerWindowSize)
+                .minSamples(circuitBreakerMinSamples)
+                .failureRateThreshold(circuitBreakerFailureRateThreshold)
+                .consecutiveFailuresThreshold(circuitBreakerConsecutiveFailuresThreshold)
+                .openDurationInMillis(circuitBreakerOpenDurationInMillis)
+                .timeoutMultiplier(circuitBreakerTimeoutMultiplier)
+                .minTimeoutInMillis(circuitBreakerMinTimeoutInMillis)
+                .maxTimeoutInMillis(circuitBreakerMaxTimeoutInMillis)
+                .build();
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgingSettings = JvbInstanceHedging.Settings.builder()
+                .budgetPercent(hedgingBudgetPercent)
+                .maxBurst(hedgingMaxBurst)
+                .minDelayInMillis(hedgingMinDelayInMillis)
+                .build();
+        this.hedgingMaxRequests = hedgingMaxRequests;
+
+        this.okHttpClient = okHttpClient;
+    }
+
+    private OkHttpClient newInstanceClient() {
+        // Every videobridge gets its own pool and request limits, only the dispatcher threads are shared
+        Dispatcher dispatcher = new Dispatcher(okHttpClient.dispatcher().executorService());
+        dispatcher.setMaxRequests(maxRequestsPerHost);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return okHttpClient.newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveInSeconds, TimeUnit.SECONDS))
+                .connectTimeout(connectTimeoutInMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutInMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutInMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private JvbInstanceHedging newInstanceHedging(OkHttpClient instanceClient) {
+        if (!hedgingEnabled) {
+            return null;
+        }
+        // hedges have their own request limits and connections, so they never wait behind the stuck requests
+        Dispatcher dispatcher = new Dispatcher(okHttpClient.dispatcher().executorService());
+        dispatcher.setMaxRequests(hedgingMaxRequests);
+        dispatcher.setMaxRequestsPerHost(hedgingMaxRequests);
+        OkHttpClient hedgingClient = instanceClient.newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveInSeconds, TimeUnit.SECONDS))
+                .build();
+        return new JvbInstanceHedging(hedgingClient, hedgingSettings);
+    }
+
+    private JvbInstance withNewClient(JvbInstance jvbInstance) {
+        OkHttpClient instanceClient = newInstanceClient();
+        return jvbInstance.withClient(instanceClient, circuitBreaker(jvbInstance.getId()), newInstanceHedging(instanceClient));
+    }
+
+    private JvbInstanceCircuitBreaker circuitBreaker(String instanceId) {
+        // statistics survive re-registration, a new address is still the same videobridge
+        return circuitBreakers.computeIfAbsent(instanceId, id -> new JvbInstanceCircuitBreaker(id, circuitBreakerSettings));
+    }
+
+    private static boolean sameAddress(JvbInstance jvbInstance, String scheme, String host, int port) {
+        return Objects.equals(jvbInstance.getScheme(), scheme)
+                && Objects.equals(jvbInstance.getHost(), host)
+                && jvbInstance.getPort() == port;
+    }
+
+    private static void close(JvbInstance jvbInstance) {
+        jvbInstance.getOkHttpClient().connectionPool().evictAll();
+        if (jvbInstance.getHedging() != null) {
+            jvbInstance.getHedging().getOkHttpClient().connectionPool().evictAll();
+        }
+    }
+
+    @Override
+    public JvbInstance get(JvbInstanceData jvbInstanceData) {
+        return instances.compute(jvbInstanceData.getId(), (id, current) -> {
+            if (current != null && sameAddress(current, jvbInstanceData.getScheme(), jvbInstanceData.getHost(), jvbInstanceData.getPort())) {
+                return current;
+            }
+            if (current != null) {
+                log.info("JVB instance(id={}) address has been changed", id);
+                close(current);
+            }
+            return withNewClient(new JvbInstance(jvbInstanceData, null));
+        });
+    }
+
+    @Override
+    public JvbInstance register(JvbInstance jvbInstance) {
+        return instances.compute(jvbInstance.getId(), (id, current) -> {
+            if (current != null && sameAddress(current, jvbInstance.getScheme(), jvbInstance.getHost(), jvbInstance.getPort())) {
+                return jvbInstance.withClient(current.getOkHttpClient(), current.getCircuitBreaker(), current.getHedging());
+            }
+            if (current != null) {
+                log.info("JVB instance(id={}) address has been changed", id);
+                close(current);
+            }
+            return withNewClient(jvbInstance);
+        });
+    }
+
+    @Override
+    public boolean isAvailable(String instanceId) {
+        JvbInstanceCircuitBreaker circuitBreaker = circuitBreakers.get(instanceId);
+        return circuitBreaker == null || !circuitBreaker.isOpen();
+    }
+
+    @Override
+    public void retain(Collection<String> instancesIds) {
+        Set<String> retainedIds = Set.copyOf(instancesIds);
+        circuitBreakers.keySet().retainAll(retainedIds);
+        instances.values().removeIf(jvbInstance -> {
+            if (retainedIds.contains(jvbInstance.getId())) {
+                return false;
+            }
+            log.info("JVB instance(id={}) client has been removed from registry", jvbInstance.getId());
+            close(jvbInstance);
+            return true;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        instances.values().forEach(DefaultJvbInstanceRegistryService::close);
+        instances.clear();
+        circuitBreakers.clear();
+    }
+}
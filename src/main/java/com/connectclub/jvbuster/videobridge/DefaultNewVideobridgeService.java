@@ -2,6 +2,7 @@ package com.connectclub.jvbuster.videobridge;
 
 import com.connectclub.jvbuster.exception.ConflictException;
 import com.connectclub.jvbuster.exception.EndpointNotFound;
+import com.connectclub.jvbuster.monitoring.i.ConferenceSyncService;
 import com.connectclub.jvbuster.monitoring.i.JvbConferencesTasksService;
 import com.connectclub.jvbuster.repository.data.JvbConferenceData;
 import com.connectclub.jvbuster.repository.data.JvbEndpointData;
@@ -9,27 +10,41 @@ import com.connectclub.jvbuster.repository.data.JvbInstanceData;
 import com.connectclub.jvbuster.repository.i.JvbConferenceDataRepository;
 import com.connectclub.jvbuster.repository.i.JvbEndpointDataRepository;
 import com.connectclub.jvbuster.repository.i.JvbInstanceDataRepository;
-import com.connectclub.jvbuster.utils.MDCCopyHelper;
+import com.connectclub.jvbuster.utils.AsyncLocks;
 import com.connectclub.jvbuster.utils.MethodSync;
+import com.connectclub.jvbuster.utils.MethodSyncArg;
+import com.connectclub.jvbuster.utils.Outbox;
+import com.connectclub.jvbuster.videobridge.data.SpeakersChannels;
 import com.connectclub.jvbuster.videobridge.data.VideobridgeConferenceOffer;
 import com.connectclub.jvbuster.videobridge.data.jvb.Channel;
 import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
 import com.connectclub.jvbuster.videobridge.data.jvb.Endpoint;
-import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.EndpointTeardownService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
 import com.connectclub.jvbuster.videobridge.i.NewVideobridgeService;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
-import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
@@ -42,16 +57,35 @@ public class DefaultNewVideobridgeService implements NewVideobridgeService {
     private final JvbEndpointDataRepository jvbEndpointDataRepository;
 
     private final TransactionTemplate transactionTemplate;
-    private final OkHttpClient okHttpClient;
+    private final JvbInstanceRegistryService jvbInstanceRegistryService;
+    private final ConferenceSnapshotService conferenceSnapshotService;
+    private final ConferenceSyncService conferenceSyncService;
+    private final EndpointTeardownService endpointTeardownService;
+    private final ConferenceVersionService conferenceVersionService;
+    private final long offersMaxStalenessInMillis;
+    private final long offersDeadlineInMillis;
+    private final Executor fanOutExecutor;
+    private final Executor signalingExecutor;
+    // by gid and conference version, kept no longer than a snapshot is used for the offers
+    private final Cache<String, CompletableFuture<SpeakersChannels>> speakersChannelsCache;
 
     public DefaultNewVideobridgeService(
+            @Value("${jvb.conference.snapshot.offers-max-staleness-in-millis}") long offersMaxStalenessInMillis,
+            @Value("${jvb.conference.speakers-channels.cache-size}") int speakersChannelsCacheSize,
+            @Value("${jvb.conference.offers-deadline-in-millis}") long offersDeadlineInMillis,
+            @Qualifier("fanOutExecutor") Executor fanOutExecutor,
+            @Qualifier("signalingExecutor") Executor signalingExecutor,
             RedissonClient redissonClient,
             JvbConferenceDataRepository jvbConferenceDataRepository,
             JvbInstanceDataRepository jvbInstanceDataRepository,
             JvbConferencesTasksService jvbConferencesTasksService,
             JvbEndpointDataRepository jvbEndpointDataRepository,
             TransactionTemplate transactionTemplate,
-            OkHttpClient okHttpClient
+            JvbInstanceRegistryService jvbInstanceRegistryService,
+            ConferenceSnapshotService conferenceSnapshotService,
+            ConferenceSyncService conferenceSyncService,
+            EndpointTeardownService endpointTeardownService,
+            ConferenceVersionService conferenceVersionService
     ) {
         this.redissonClient = redissonClient;
         this.jvbConferenceDataRepository = jvbConferenceDataRepository;
@@ -60,101 +94,131 @@ public class DefaultNewVideobridgeService implements NewVideobridgeService {
         this.jvbEndpointDataRepository = jvbEndpointDataRepository;
 
         this.transactionTemplate = transactionTemplate;
-        this.okHttpClient = okHttpClient;
+        this.jvbInstanceRegistryService = jvbInstanceRegistryService;
+        this.conferenceSnapshotService = conferenceSnapshotService;
+        this.conferenceSyncService = conferenceSyncService;
+        this.endpointTeardownService = endpointTeardownService;
+        this.conferenceVersionService = conferenceVersionService;
+        this.offersMaxStalenessInMillis = offersMaxStalenessInMillis;
+        this.offersDeadlineInMillis = offersDeadlineInMillis;
+        this.fanOutExecutor = fanOutExecutor;
+        this.signalingExecutor = signalingExecutor;
+        this.speakersChannelsCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(offersMaxStalenessInMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(speakersChannelsCacheSize)
+                .build();
     }
 
     @Override
-    @MethodSync(lockName = "conference-global", mode = MethodSync.Mode.READ)
-    @Transactional(isolation = Isolation.READ_COMMITTED)
-    public List<VideobridgeConferenceOffer> getNewOffers(String conferenceGid, String endpoint, boolean speaker) throws IOException, JvbInstanceRestException {
+    @MethodSync(lockName = "conference", mode = MethodSync.Mode.READ)
+    public CompletableFuture<List<VideobridgeConferenceOffer>> getNewOffers(@MethodSyncArg String conferenceGid, String endpoint, boolean speaker) {
         if (!speaker) {
             try {
                 Long.parseLong(conferenceGid, 16);
             } catch (NumberFormatException e) {
-                throw new RuntimeException("listeners supported only for conference with gid parseable to long type");
+                return CompletableFuture.failedFuture(new RuntimeException("listeners supported only for conference with gid parseable to long type"));
             }
         }
 
-        delete(null, endpoint, true);
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    delete(null, endpoint, true);
+                    // the endpoint is added to a conference only after it has been removed from it
+                    return endpointTeardownService.runNow(endpoint, conferenceGid);
+                }, signalingExecutor)
+                .thenCompose(teardowns -> AsyncLocks.withLock(
+                        redissonClient.getFairLock("create-conference-" + conferenceGid),
+                        () -> CompletableFuture.runAsync(() -> createConferenceIfAbsent(conferenceGid, endpoint, speaker), signalingExecutor)
+                ).thenComposeAsync(x -> addEndpoint(conferenceGid, endpoint, speaker, teardowns), signalingExecutor));
+    }
 
-        RLock createConferenceLock = redissonClient.getFairLock("create-conference-" + conferenceGid);
-        createConferenceLock.lock();
-        try {
-            transactionTemplate.executeWithoutResult(status -> {
-                try {
-                    List<JvbConferenceData> jvbConferences = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, speaker);
-                    if (jvbConferences.size() == 0) {
-                        if (endpoint.startsWith("screen-")) {
-                            throw new ConflictException("Screen`s endpoint can not create conference");
-                        }
-                        JvbInstanceData primaryJvbInstance = jvbInstanceDataRepository
-                                .findFirstByRespondingIsTrueAndScheduledForRemovalIsFalseAndShutdownInProgressIsFalseAndForSpeakersOrderByUtilization(speaker)
-                                .orElseThrow(() -> new RuntimeException("Can not choose primary jvb instance"));
-                        Conference conf = JvbInstance.from(primaryJvbInstance, okHttpClient).createConference(conferenceGid);
-                        JvbConferenceData jvbConference = JvbConferenceData.builder()
-                                .id(JvbConferenceData.buildId(conferenceGid, conf.getId()))
-                                .gid(conferenceGid)
-                                .confId(conf.getId())
-                                .instance(primaryJvbInstance)
-                                .build();
-                        jvbConferenceDataRepository.save(jvbConference);
-                        log.info("JVB instance(id={}) has been chosen to place the new conference(id={}, forSpeakers={})", primaryJvbInstance.getId(), jvbConference.getId(), speaker);
-                        if (speaker) {
-                            Conference patchWithAudioMixer = JvbConferenceUtils.buildPatchWithAudioMixer(conferenceGid, conf.getId());
-                            JvbInstance.from(primaryJvbInstance, okHttpClient).patchConference(patchWithAudioMixer);
-                        }
-                        jvbConferencesTasksService.syncConferences(conferenceGid);
-                    }
-                } catch (IOException | JvbInstanceRestException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-        } finally {
-            createConferenceLock.unlock();
+    // the lock keeps the check and the save together, no transaction is held across the colibri calls
+    @SneakyThrows
+    private void createConferenceIfAbsent(String conferenceGid, String endpoint, boolean speaker) {
+        if (jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, speaker).size() != 0) {
+            return;
+        }
+        if (endpoint.startsWith("screen-")) {
+            throw new ConflictException("Screen`s endpoint can not create conference");
         }
+        JvbInstanceData primaryJvbInstance = jvbInstanceDataRepository
+                .findAllByRespondingIsTrueAndScheduledForRemovalIsFalseAndShutdownInProgressIsFalseAndForSpeakersOrderByUtilization(speaker).stream()
+                .filter(x -> jvbInstanceRegistryService.isAvailable(x.getId()))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Can not choose primary jvb instance"));
+        Conference conf = jvbInstanceRegistryService.get(primaryJvbInstance).createConference(conferenceGid);
+        JvbConferenceData jvbConference = JvbConferenceData.builder()
+                .id(JvbConferenceData.buildId(conferenceGid, conf.getId()))
+                .gid(conferenceGid)
+                .confId(conf.getId())
+                .instance(primaryJvbInstance)
+                .build();
+        jvbConferenceDataRepository.save(jvbConference);
+        log.info("JVB instance(id={}) has been chosen to place the new conference(id={}, forSpeakers={})", primaryJvbInstance.getId(), jvbConference.getId(), speaker);
+        if (speaker) {
+            Conference patchWithAudioMixer = JvbConferenceUtils.buildPatchWithAudioMixer(conferenceGid, conf.getId());
+            JvbInstance.await(conferenceSnapshotService.patch(primaryJvbInstance, conferenceGid, patchWithAudioMixer));
+        }
+        jvbConferencesTasksService.syncConferences(conferenceGid);
+    }
 
+    private CompletableFuture<List<VideobridgeConferenceOffer>> addEndpoint(
+            String conferenceGid,
+            String endpoint,
+            boolean speaker,
+            Map<String, CompletableFuture<Void>> teardowns
+    ) {
         List<JvbConferenceData> jvbConferences = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, speaker);
 
         if (jvbConferences.size() == 0) {
             throw new RuntimeException("No conferences to choose from");
         }
 
+        // an instance with an open circuit breaker is chosen only if there is no other one
         JvbConferenceData primaryJvbConference = jvbConferences.stream()
-                .min(Comparator.comparingInt(x -> x.getInstance().getUtilization()))
+                .min(Comparator.<JvbConferenceData, Boolean>comparing(x -> !jvbInstanceRegistryService.isAvailable(x.getInstance().getId()))
+                        .thenComparingInt(x -> x.getInstance().getUtilization()))
                 .orElseThrow();
         log.info("JVB instance(id={}) has been chosen as primary for endpoint", primaryJvbConference.getInstance().getId());
         if (primaryJvbConference.getInstance().getCpuLoad() != null && primaryJvbConference.getInstance().getCpuLoad() > 0.9) {
             throw new RuntimeException("JVB instance CPU load is above 90%");
         }
 
-        List<VideobridgeConferenceOffer> result;
+        CompletableFuture<List<VideobridgeConferenceOffer>> result;
 
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offersDeadlineInMillis);
         if (speaker) {
-            MDCCopyHelper mdcCopyHelper = new MDCCopyHelper();
-            result = jvbConferences.parallelStream()
-                    .peek(mdcCopyHelper::set)
-                    .map(jvbConference -> {
-                        try {
-                            boolean primary = jvbConference == primaryJvbConference;
-                            JvbInstanceData jvbInstance = jvbConference.getInstance();
-                            Conference conferenceWithNewChannels = JvbConferenceUtils.buildPatchWithNewEndpoint(
-                                    jvbConference,
-                                    endpoint,
-                                    primary ? "primary" : "shadow",
-                                    primary ? Channel.Direction.SENDRECV : Channel.Direction.SENDONLY
-                            );
-                            return Map.entry(
-                                    jvbInstance.getId(),
-                                    JvbInstance.from(jvbInstance, okHttpClient).patchConference(conferenceWithNewChannels)
-                            );
-                        } catch (Exception e) {
+            List<CompletableFuture<VideobridgeConferenceOffer>> offers = new ArrayList<>(jvbConferences.size());
+            int primaryIndex = -1;
+            for (JvbConferenceData jvbConference : jvbConferences) {
+                boolean primary = jvbConference == primaryJvbConference;
+                if (primary) {
+                    primaryIndex = offers.size();
+                }
+                JvbInstanceData jvbInstance = jvbConference.getInstance();
+                Conference conferenceWithNewChannels = JvbConferenceUtils.buildPatchWithNewEndpoint(
+                        jvbConference,
+                        endpoint,
+                        primary ? "primary" : "shadow",
+                        primary ? Channel.Direction.SENDRECV : Channel.Direction.SENDONLY
+                );
+                offers.add(thenApplyAsync(
+                        teardowns.getOrDefault(jvbConference.getId(), CompletableFuture.completedFuture(null))
+                                .thenCompose(x -> conferenceSnapshotService.patch(jvbInstance, conferenceGid, conferenceWithNewChannels)),
+                        x -> VideobridgeConferenceUtils.toVideobridgeConference(jvbInstance.getId(), x, endpoint)
+                ));
+            }
+            result = whenRequired(offers, primaryIndex, deadlineNanos)
+                    .whenComplete((x, e) -> {
+                        if (e != null) {
                             log.error("Create endpoint exception", e);
-                            throw new RuntimeException(e);
                         }
                     })
-                    .map(x -> VideobridgeConferenceUtils.toVideobridgeConference(x.getKey(), x.getValue(), endpoint))
-                    .peek(mdcCopyHelper::clear)
-                    .collect(Collectors.toList());
+                    // a missing shadow endpoint is created by the next getCurrentOffers
+                    .thenCompose(x -> whenAvailable(jvbConferences, offers, deadlineNanos))
+                    .thenApply(x -> x.stream()
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList()));
         } else {
             Conference conferenceWithNewChannels = JvbConferenceUtils.buildPatchWithNewEndpoint(
                     primaryJvbConference,
@@ -162,136 +226,291 @@ public class DefaultNewVideobridgeService implements NewVideobridgeService {
                     "primary",
                     Channel.Direction.SENDONLY
             );
-            conferenceWithNewChannels = JvbInstance.from(primaryJvbConference.getInstance(), okHttpClient).patchConference(conferenceWithNewChannels, endpoint);
-            List<Conference> conferencesForSpeakers = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, true).stream()
-                    .map(this::getConference)
-                    .collect(Collectors.toList());
-            result = List.of(
-                    VideobridgeConferenceUtils.toVideobridgeConference(
-                            primaryJvbConference.getInstance().getId(),
-                            conferenceWithNewChannels,
-                            conferencesForSpeakers,
-                            endpoint
+            JvbInstance primaryJvbInstance = jvbInstanceRegistryService.get(primaryJvbConference.getInstance());
+            CompletableFuture<Conference> patchedConference = teardowns.getOrDefault(primaryJvbConference.getId(), CompletableFuture.completedFuture(null))
+                    .thenCompose(x -> primaryJvbInstance.patchConferenceAsync(conferenceWithNewChannels, endpoint));
+            result = getSpeakersChannels(conferenceGid, conferenceVersionService.get(conferenceGid), deadlineNanos)
+                    .thenCombineAsync(
+                            JvbInstance.withDeadline(patchedConference, deadlineNanos),
+                            (speakersChannels, listenerConference) -> List.of(
+                                    VideobridgeConferenceUtils.toVideobridgeConference(
+                                            primaryJvbConference.getInstance().getId(),
+                                            listenerConference,
+                                            speakersChannels,
+                                            endpoint
+                                    )
+                            ),
+                            fanOutExecutor
                     )
-            );
+                    // the response contains only the channels of the endpoint
+                    .whenComplete((x, e) -> conferenceSnapshotService.invalidate(primaryJvbConference.getId()));
         }
-        jvbEndpointDataRepository.save(
-                JvbEndpointData.builder()
-                        .id(endpoint)
-                        .conference(primaryJvbConference)
-                        .speaker(speaker)
-                        .build()
-        );
-        return result;
+        return result.thenApplyAsync(offers -> {
+            jvbEndpointDataRepository.save(
+                    JvbEndpointData.builder()
+                            .id(endpoint)
+                            .conference(primaryJvbConference)
+                            .speaker(speaker)
+                            .build()
+            );
+            conferenceVersionService.bump(conferenceGid);
+            return offers;
+        }, signalingExecutor);
     }
 
-    @SneakyThrows
-    private Conference getConference(JvbConferenceData jvbConferenceData) {
-        JvbInstanceData jvbInstanceData = jvbConferenceData.getInstance();
-        return JvbInstance.from(jvbInstanceData, okHttpClient).getConference(jvbConferenceData.getConfId());
+    // the conferences are indexed on the fan-out executor as soon as they arrive
+    private List<CompletableFuture<Conference>> getConferencesAsync(List<JvbConferenceData> jvbConferences, long maxStalenessInMillis, long conferenceVersion) {
+        return jvbConferences.stream()
+                .map(x -> thenApplyAsync(conferenceSnapshotService.get(x, maxStalenessInMillis, conferenceVersion), conference -> {
+                    ConferenceIndex.of(conference);
+                    return conference;
+                }))
+                .collect(Collectors.toList());
     }
 
-    @SneakyThrows
-    private Conference getConferenceWithOnlyOneEndpoint(JvbConferenceData jvbConferenceData, String endpoint) {
-        JvbInstanceData jvbInstanceData = jvbConferenceData.getInstance();
-        return JvbInstance.from(jvbInstanceData, okHttpClient).getConference(jvbConferenceData.getConfId(), endpoint);
+    private CompletableFuture<List<Conference>> getAvailableConferences(List<JvbConferenceData> jvbConferences, int requiredIndex, long maxStalenessInMillis, long conferenceVersion, long deadlineNanos) {
+        List<CompletableFuture<Conference>> conferenceFutures = getConferencesAsync(jvbConferences, maxStalenessInMillis, conferenceVersion);
+        return whenRequired(conferenceFutures, requiredIndex, deadlineNanos)
+                .thenCompose(x -> whenAvailable(jvbConferences, conferenceFutures, deadlineNanos));
     }
 
-    private static Endpoint findEndpoint(Conference conference, String endpoint) {
-        return conference.getEndpoints().stream()
-                .filter(x -> Objects.equals(x.getId(), endpoint))
-                .findFirst().orElse(null);
+    /**
+     * Channels of the speakers, built once for all the listeners while the conference version stays the same.
+     * A result missing a left out conference is not shared, neither is a failure.
+     */
+    private CompletableFuture<SpeakersChannels> getSpeakersChannels(String conferenceGid, long conferenceVersion, long deadlineNanos) {
+        String key = conferenceGid + "-" + conferenceVersion;
+        AtomicBoolean partial = new AtomicBoolean();
+        CompletableFuture<SpeakersChannels> result;
+        try {
+            result = speakersChannelsCache.get(key, () -> {
+                List<JvbConferenceData> jvbConferencesForSpeakers = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, true);
+                return whenAvailable(
+                        jvbConferencesForSpeakers,
+                        getConferencesAsync(jvbConferencesForSpeakers, offersMaxStalenessInMillis, conferenceVersion),
+                        deadlineNanos
+                ).thenApply(conferencesForSpeakers -> {
+                    partial.set(conferencesForSpeakers.contains(null));
+                    return VideobridgeConferenceUtils.toSpeakersChannels(conferencesForSpeakers.stream()
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList()));
+                });
+            });
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            return CompletableFuture.failedFuture(e.getCause());
+        }
+        result.whenComplete((x, e) -> {
+            if (e != null || partial.get()) {
+                speakersChannelsCache.asMap().remove(key, result);
+            }
+        });
+        return result;
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public List<VideobridgeConferenceOffer> getCurrentOffers(String conferenceGid, String endpoint) throws JvbInstanceRestException, IOException {
-        JvbEndpointData jvbEndpoint = jvbEndpointDataRepository.findById(endpoint).orElseThrow(EndpointNotFound::new);
-        List<VideobridgeConferenceOffer> result = new ArrayList<>();
-
-        if (jvbEndpoint.isSpeaker()) {
-            Map<JvbConferenceData, Conference> jvbConferenceDataMap = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, true).stream()
-                    .collect(Collectors.toMap(x -> x, this::getConference));
-
-            Set<Conference> conferencesWithEndpoint = jvbConferenceDataMap.values().stream()
-                    .filter(x->findEndpoint(x, endpoint) != null)
-                    .collect(Collectors.toSet());
-            if (conferencesWithEndpoint.size() == 0) {
-                throw new EndpointNotFound();
+    // cancelling the returned future cancels the request
+    private <T, R> CompletableFuture<R> thenApplyAsync(CompletableFuture<T> future, Function<T, R> fn) {
+        CompletableFuture<R> result = future.thenApplyAsync(fn, fanOutExecutor);
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
             }
+        });
+        return result;
+    }
 
-            for (JvbConferenceData jvbConferenceData : jvbConferenceDataMap.keySet()) {
-                Conference conference = jvbConferenceDataMap.get(jvbConferenceData);
-                if (!conferencesWithEndpoint.contains(conference)) {
-                    Conference conferencePatch = JvbConferenceUtils.buildPatchWithNewEndpoint(jvbConferenceData, endpoint, "shadow", Channel.Direction.SENDONLY);
-                    conference = JvbInstance.from(jvbConferenceData.getInstance(), okHttpClient).patchConference(conferencePatch);
-                }
-                result.add(VideobridgeConferenceUtils.toVideobridgeConference(jvbConferenceData.getInstance().getId(), conference, endpoint));
-            }
-        } else {
-            List<Conference> conferencesForSpeakers = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, true).stream()
-                    .map(this::getConference)
-                    .collect(Collectors.toList());
-
-            result.add(VideobridgeConferenceUtils.toVideobridgeConference(
-                    jvbEndpoint.getConference().getInstance().getId(),
-                    getConferenceWithOnlyOneEndpoint(jvbEndpoint.getConference(), endpoint),
-                    conferencesForSpeakers,
-                    endpoint
-            ));
+    /**
+     * Completes when every future is over or the deadline has come. A failed or late result is logged and
+     * replaced by null, so the result keeps the positions of jvbConferences.
+     */
+    private static <T> CompletableFuture<List<T>> whenAvailable(List<JvbConferenceData> jvbConferences, List<CompletableFuture<T>> futures, long deadlineNanos) {
+        List<CompletableFuture<T>> available = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            JvbConferenceData jvbConference = jvbConferences.get(i);
+            available.add(JvbInstance.withDeadline(futures.get(i), deadlineNanos).exceptionally(e -> {
+                log.warn("Conference(id={}) of JVB instance(id={}) is left out: {}", jvbConference.getId(), jvbConference.getInstance().getId(), e.toString());
+                return null;
+            }));
         }
-        return result;
+        return CompletableFuture.allOf(available.toArray(CompletableFuture[]::new))
+                .thenApply(x -> available.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
     }
 
-    @Override
-    @Transactional(readOnly = true)
-    public void processAnswers(String conferenceGid, String endpoint, List<VideobridgeConferenceAnswer> conferences) throws IOException, JvbInstanceRestException {
-        for (VideobridgeConferenceAnswer conference : conferences) {
-            Conference conferencePatch = JvbConferenceUtils.buildPatchBasedOnAnswer(conferenceGid, endpoint, conference);
-            JvbInstanceData jvbInstanceData = jvbInstanceDataRepository.findById(conference.getVideobridgeId())
-                    .orElseThrow(() -> new NoSuchElementException(String.format("Can not find instance(id=%s)", conference.getVideobridgeId())));
-            JvbInstance.from(jvbInstanceData, okHttpClient).patchConference(conferencePatch);
+    // a failure of the required future fails the whole fan-out
+    private static CompletableFuture<Void> whenRequired(List<? extends CompletableFuture<?>> futures, int index, long deadlineNanos) {
+        if (index < 0) {
+            return CompletableFuture.completedFuture(null);
         }
-        jvbConferencesTasksService.syncConferences(conferenceGid);
+        return JvbInstance.withDeadline(futures.get(index), deadlineNanos)
+                .whenComplete((x, e) -> {
+                    if (e != null) {
+                        futures.forEach(future -> future.cancel(true));
+                    }
+                })
+                .thenAccept(x -> {});
+    }
+
+    private static Endpoint findEndpoint(Conference conference, String endpoint) {
+        return ConferenceIndex.of(conference).getEndpoint(endpoint);
     }
 
     @Override
-    @Transactional
-    public void delete(String conferenceGid, String endpoint, boolean quiet) {
-        JvbEndpointData jvbEndpoint = jvbEndpointDataRepository.findById(endpoint).orElse(null);
+    public CompletableFuture<List<VideobridgeConferenceOffer>> getCurrentOffers(String conferenceGid, String endpoint) {
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    // the offers are built from the snapshots taken after the version has been read
+                    long conferenceVersion = conferenceVersionService.get(conferenceGid);
+                    JvbEndpointData jvbEndpoint = jvbEndpointDataRepository.findById(endpoint).orElseThrow(EndpointNotFound::new);
+                    long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offersDeadlineInMillis);
+                    return jvbEndpoint.isSpeaker()
+                            ? getSpeakerOffers(conferenceGid, jvbEndpoint, conferenceVersion, deadlineNanos)
+                            : getListenerOffers(conferenceGid, jvbEndpoint, conferenceVersion, deadlineNanos);
+                }, signalingExecutor)
+                .thenCompose(Function.identity());
+    }
 
-        if (jvbEndpoint == null) {
-            if (quiet) return;
-            throw new EndpointNotFound();
-        }
+    private CompletableFuture<List<VideobridgeConferenceOffer>> getSpeakerOffers(String conferenceGid, JvbEndpointData jvbEndpoint, long conferenceVersion, long deadlineNanos) {
+        String endpoint = jvbEndpoint.getId();
+        List<JvbConferenceData> jvbConferences = jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers(conferenceGid, true);
+        // the conference where the endpoint sends media is required, the shadow ones are optional
+        int primaryIndex = IntStream.range(0, jvbConferences.size())
+                .filter(i -> jvbConferences.get(i).getId().equals(jvbEndpoint.getConference().getId()))
+                .findFirst().orElse(-1);
+        return getAvailableConferences(jvbConferences, primaryIndex, offersMaxStalenessInMillis, conferenceVersion, deadlineNanos)
+                .thenCompose(conferences -> {
+                    if (conferences.stream().anyMatch(x -> x != null && findEndpoint(x, endpoint) == null)) {
+                        // the endpoint may have been changed by another jvbuster, shadow channels are created only on actual data
+                        return getAvailableConferences(jvbConferences, primaryIndex, 0, conferenceVersion, deadlineNanos);
+                    }
+                    return CompletableFuture.completedFuture(conferences);
+                })
+                .thenCompose(conferences -> {
+                    if (conferences.stream().noneMatch(x -> x != null && findEndpoint(x, endpoint) != null)) {
+                        throw new EndpointNotFound();
+                    }
 
-        String endpointConfGid = jvbEndpoint.getConference().getGid();
+                    List<CompletableFuture<VideobridgeConferenceOffer>> offers = new ArrayList<>(conferences.size());
+                    boolean shadowEndpointsAdded = false;
+                    for (int i = 0; i < jvbConferences.size(); i++) {
+                        JvbConferenceData jvbConferenceData = jvbConferences.get(i);
+                        String instanceId = jvbConferenceData.getInstance().getId();
+                        Conference conference = conferences.get(i);
+                        if (conference == null) {
+                            // already logged as left out
+                            offers.add(CompletableFuture.completedFuture(null));
+                            continue;
+                        }
+                        CompletableFuture<Conference> actualConference;
+                        if (findEndpoint(conference, endpoint) == null) {
+                            Conference conferencePatch = JvbConferenceUtils.buildPatchWithNewEndpoint(jvbConferenceData, endpoint, "shadow", Channel.Direction.SENDONLY);
+                            actualConference = conferenceSnapshotService.patch(jvbConferenceData.getInstance(), conferenceGid, conferencePatch);
+                            shadowEndpointsAdded = true;
+                        } else {
+                            actualConference = CompletableFuture.completedFuture(conference);
+                        }
+                        offers.add(thenApplyAsync(actualConference, x -> VideobridgeConferenceUtils.toVideobridgeConference(instanceId, x, endpoint)));
+                    }
+                    CompletableFuture<List<VideobridgeConferenceOffer>> result = whenRequired(offers, primaryIndex, deadlineNanos)
+                            .thenCompose(x -> whenAvailable(jvbConferences, offers, deadlineNanos))
+                            .thenApply(x -> x.stream()
+                                    .filter(Objects::nonNull)
+                                    .collect(Collectors.toList()));
+                    if (shadowEndpointsAdded) {
+                        result = result.thenApplyAsync(x -> {
+                            conferenceVersionService.bump(conferenceGid);
+                            return x;
+                        }, signalingExecutor);
+                    }
+                    return result;
+                });
+    }
 
-        if (conferenceGid != null && !Objects.equals(conferenceGid, endpointConfGid)) {
-            if (quiet) return;
-            throw new EndpointNotFound(
-                    String.format("Endpoint with the same id exists but in different conference(%s)", endpointConfGid)
-            );
-        }
+    private CompletableFuture<List<VideobridgeConferenceOffer>> getListenerOffers(String conferenceGid, JvbEndpointData jvbEndpoint, long conferenceVersion, long deadlineNanos) {
+        String endpoint = jvbEndpoint.getId();
+        JvbConferenceData jvbConference = jvbEndpoint.getConference();
+        CompletableFuture<Conference> conferenceWithOnlyOneEndpoint = jvbInstanceRegistryService.get(jvbConference.getInstance())
+                .getConferenceAsync(jvbConference.getConfId(), endpoint);
 
-        // There may be shadow endpoints, so we can not just use only one conference from endpoint
-        List<JvbConferenceData> conferenceDataList = jvbConferenceDataRepository.findAllByGid(endpointConfGid);
-
-        MDCCopyHelper mdcCopyHelper = new MDCCopyHelper();
-        conferenceDataList.parallelStream()
-                .peek(mdcCopyHelper::set)
-                .forEach(jvbConferenceData -> {
-                    try {
-                        JvbInstance jvbInstance = JvbInstance.from(jvbConferenceData.getInstance(), okHttpClient);
-                        try {
-                            jvbInstance.deleteEndpoint(jvbConferenceData.getConfId(), endpoint);
-                        } catch (Exception e) {
-                            log.error("Remove endpoint failed(jvbInstance={}, conferenceId={})", jvbInstance, jvbConferenceData.getConfId(), e);
+        return getSpeakersChannels(conferenceGid, conferenceVersion, deadlineNanos)
+                .whenComplete((x, e) -> {
+                    if (e != null) {
+                        conferenceWithOnlyOneEndpoint.cancel(true);
+                    }
+                })
+                .thenCombineAsync(
+                        JvbInstance.withDeadline(conferenceWithOnlyOneEndpoint, deadlineNanos),
+                        (speakersChannels, conference) -> List.of(VideobridgeConferenceUtils.toVideobridgeConference(
+                                jvbConference.getInstance().getId(),
+                                conference,
+                                speakersChannels,
+                                endpoint
+                        )),
+                        fanOutExecutor
+                );
+    }
+
+    @Override
+    public CompletableFuture<Void> processAnswers(String conferenceGid, String endpoint, List<VideobridgeConferenceAnswer> conferences) {
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    Map<String, JvbInstanceData> jvbInstances = new HashMap<>();
+                    jvbInstanceDataRepository.findAllById(conferences.stream().map(VideobridgeConferenceAnswer::getVideobridgeId).collect(Collectors.toSet()))
+                            .forEach(x -> jvbInstances.put(x.getId(), x));
+                    List<CompletableFuture<Conference>> patches = new ArrayList<>(conferences.size());
+                    for (VideobridgeConferenceAnswer conference : conferences) {
+                        JvbInstanceData jvbInstanceData = jvbInstances.get(conference.getVideobridgeId());
+                        if (jvbInstanceData == null) {
+                            throw new NoSuchElementException(String.format("Can not find instance(id=%s)", conference.getVideobridgeId()));
                         }
-                    } finally {
-                        mdcCopyHelper.clear();
+                        Conference conferencePatch = JvbConferenceUtils.buildPatchBasedOnAnswer(conferenceGid, endpoint, conference);
+                        patches.add(conferenceSnapshotService.patch(jvbInstanceData, conferenceGid, conferencePatch));
                     }
+                    return patches;
+                }, signalingExecutor)
+                .thenCompose(patches -> {
+                    CompletableFuture<?>[] patchesArray = patches.toArray(CompletableFuture[]::new);
+                    // every answer is applied, even if another one fails
+                    return CompletableFuture.allOf(patchesArray).exceptionally(e -> null)
+                            // the applied answers change the offers of the others even if one of them has failed
+                            .thenRunAsync(() -> conferenceVersionService.bump(conferenceGid), signalingExecutor)
+                            .thenCompose(x -> CompletableFuture.allOf(patchesArray))
+                            .thenRunAsync(() -> conferenceSyncService.requestSync(conferenceGid), signalingExecutor);
                 });
-        jvbEndpointDataRepository.delete(jvbEndpoint);
+    }
+
+    @Override
+    public void delete(String conferenceGid, String endpoint, boolean quiet) {
+        Outbox outbox = new Outbox();
+        transactionTemplate.executeWithoutResult(status -> {
+            JvbEndpointData jvbEndpoint = jvbEndpointDataRepository.findById(endpoint).orElse(null);
+
+            if (jvbEndpoint == null) {
+                if (quiet) return;
+                throw new EndpointNotFound();
+            }
+
+            String endpointConfGid = jvbEndpoint.getConference().getGid();
+
+            if (conferenceGid != null && !Objects.equals(conferenceGid, endpointConfGid)) {
+                if (quiet) return;
+                throw new EndpointNotFound(
+                        String.format("Endpoint with the same id exists but in different conference(%s)", endpointConfGid)
+                );
+            }
+
+            // There may be shadow endpoints, so we can not just use only one conference from endpoint
+            List<JvbConferenceData> conferenceDataList = jvbConferenceDataRepository.findAllByGid(endpointConfGid);
+            jvbEndpointDataRepository.delete(jvbEndpoint);
+            outbox.record(
+                    String.format("enqueue teardown of endpoint(id=%s)", endpoint),
+                    () -> endpointTeardownService.enqueue(endpoint, conferenceDataList)
+            );
+            outbox.record(
+                    String.format("bump version of conference(gid=%s)", endpointConfGid),
+                    () -> conferenceVersionService.bump(endpointConfGid)
+            );
+        });
+        outbox.run();
     }
 }
@@ -0,0 +1,119 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.fake.FakeVideobridge;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceManagementService;
+import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Runs in-process fake videobridges, for local development and load runs without jitsi-videobridge.
+ */
+@Service
+@Slf4j
+@Profile("fake-jvb")
+public class FakeJvbInstanceManagementService implements JvbInstanceManagementService, DisposableBean {
+
+    private final long latencyInMillis;
+    private final long latencyJitterInMillis;
+    private final double errorRate;
+    private final double slowResponseRate;
+    private final long slowResponseDelayInMillis;
+    private final long conferenceExpireInMillis;
+
+    private final OkHttpClient okHttpClient;
+
+    private final Map<String, FakeJvbInstance> instances = new ConcurrentHashMap<>();
+
+    @AllArgsConstructor
+    private static class FakeJvbInstance {
+        private final FakeVideobridge videobridge;
+        private final Instant startInstant;
+        private final boolean forSpeakers;
+    }
+
+    public FakeJvbInstanceManagementService(
+            @Value("${fake.jvb.latency-in-millis}") long latencyInMillis,
+            @Value("${fake.jvb.latency-jitter-in-millis}") long latencyJitterInMillis,
+            @Value("${fake.jvb.error-rate}") double errorRate,
+            @Value("${fake.jvb.slow-response-rate}") double slowResponseRate,
+            @Value("${fake.jvb.slow-response-delay-in-millis}") long slowResponseDelayInMillis,
+            @Value("${fake.jvb.conference-expire-in-millis}") long conferenceExpireInMillis,
+            OkHttpClient okHttpClient
+    ) {
+        this.latencyInMillis = latencyInMillis;
+        this.latencyJitterInMillis = latencyJitterInMillis;
+        this.errorRate = errorRate;
+        this.slowResponseRate = slowResponseRate;
+        this.slowResponseDelayInMillis = slowResponseDelayInMillis;
+        this.conferenceExpireInMillis = conferenceExpireInMillis;
+        this.okHttpClient = okHttpClient;
+    }
+
+    @Override
+    @SneakyThrows
+    public String start(boolean forSpeakers) {
+        FakeVideobridge videobridge = new FakeVideobridge(0);
+        videobridge.setLatencyInMillis(latencyInMillis);
+        videobridge.setLatencyJitterInMillis(latencyJitterInMillis);
+        videobridge.setErrorRate(errorRate);
+        videobridge.setSlowResponseRate(slowResponseRate);
+        videobridge.setSlowResponseDelayInMillis(slowResponseDelayInMillis);
+        videobridge.setConferenceExpireInMillis(conferenceExpireInMillis);
+        videobridge.start();
+        String id = "fake-" + videobridge.getPort();
+        instances.put(id, new FakeJvbInstance(videobridge, Instant.now(), forSpeakers));
+        log.info("Fake JVB instance launched(id={}, forSpeakers={})", id, forSpeakers);
+        return id;
+    }
+
+    @Override
+    public boolean stop(String instanceId) {
+        FakeJvbInstance instance = instances.remove(instanceId);
+        if (instance == null) {
+            return false;
+        }
+        instance.videobridge.stop();
+        return true;
+    }
+
+    @Override
+    public List<JvbInstance> getActive() {
+        return instances.entrySet().stream()
+                .map(x -> new JvbInstance(
+                        x.getKey(),
+                        "fake",
+                        "http",
+                        "127.0.0.1",
+                        x.getValue().videobridge.getPort(),
+                        x.getValue().startInstant,
+                        false,
+                        x.getValue().forSpeakers,
+                        x.getValue().videobridge.getPort(),
+                        okHttpClient
+                ))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String getLastVersion() {
+        return "fake";
+    }
+
+    @Override
+    public void destroy() {
+        instances.values().forEach(x -> x.videobridge.stop());
+        instances.clear();
+    }
+}
@@ -11,114 +11,19 @@ import java.util.stream.Stream;
 
 @UtilityClass
 public class JvbConferenceUtils {
-    private final List<PayloadType> audioPayloadTypes = List.of(
-            PayloadType.builder()
-                    .id(111)
-                    .name("opus")
-                    .clockrate(48000)
-                    .channels(2)
-                    .parameters(Map.of(
-                            "minptime", 10,
-                            "useinbandfec", 1
-                    ))
-                    .rtcpFbs(List.of(
-                            RtcpFb.builder().type("transport-cc").build()
-                    ))
-                    .build()
-    );
-
-    private final List<RtpHdrext> audioRtpHdrexts = List.of(
-            RtpHdrext.builder()
-                    .id(1)
-                    .uri("urn:ietf:params:rtp-hdrext:ssrc-audio-level")
-                    .build(),
-            RtpHdrext.builder()
-                    .id(5)
-                    .uri("http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
-                    .build()
-    );
-
-    private final List<PayloadType> videoPayloadTypes = List.of(
-            PayloadType.builder()
-                    .id(100)
-                    .name("VP8")
-                    .clockrate(90000)
-                    .parameters(Map.of(
-                            "max-fr", 30,
-                            "max-recv-width", 480,
-                            "max-recv-height", 320
-                    ))
-                    .rtcpFbs(List.of(
-                            RtcpFb.builder().type("ccm").subtype("fir").build(),
-                            RtcpFb.builder().type("nack").build(),
-                            RtcpFb.builder().type("nack").subtype("pli").build(),
-                            RtcpFb.builder().type("transport-cc").build()
-                    ))
-                    .build()
-    );
-
-    private final List<RtpHdrext> videoRtpHdrexts = List.of(
-            RtpHdrext.builder()
-                    .id(1)
-                    .uri("urn:ietf:params:rtp-hdrext:ssrc-audio-level")
-                    .build(),
-            RtpHdrext.builder()
-                    .id(5)
-                    .uri("http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
-                    .build()
-    );
+    private List<SsrcGroup> toSsrcGroups(List<VideobridgeSsrcGroup> ssrcGroups) {
+        return Stream.ofNullable(ssrcGroups)
+                .flatMap(Collection::stream)
+                .map(x -> SsrcGroup.build(x.getSemantics(), x.getSsrcs()))
+                .collect(Collectors.toList());
+    }
 
     private Content constructAudioContent(String channelId, String endpoint, Channel.Direction direction, List<Long> sources, List<VideobridgeSsrcGroup> ssrcGroups) {
-        Channel channel = Channel.builder()
-                .id(channelId)
-                .expire(10)
-                .initiator(true)
-                .endpoint(endpoint)
-                .direction(direction)
-                .channelBundleId(endpoint)
-                .rtpLevelRelayType(Channel.RtpLevelRelayType.TRANSLATOR)
-                .lastN(0)
-                .payloadTypes(audioPayloadTypes)
-                .sources(sources)
-                .ssrcGroups(
-                        Stream.ofNullable(ssrcGroups)
-                                .flatMap(Collection::stream)
-                                .map(x -> SsrcGroup.build(x.getSemantics(), x.getSsrcs()))
-                                .collect(Collectors.toList())
-                )
-                .rtpHdrexts(audioRtpHdrexts)
-                .build();
-        return Content.builder()
-                .name("audio")
-                .channels(List.of(channel))
-                .build();
-
+        return ChannelTemplate.AUDIO.buildContent(channelId, endpoint, direction, sources, toSsrcGroups(ssrcGroups));
     }
 
     private Content constructVideoContent(String channelId, String endpoint, Channel.Direction direction, List<Long> sources, List<VideobridgeSsrcGroup> ssrcGroups) {
-        Channel channel = Channel.builder()
-                .id(channelId)
-                .expire(10)
-                .initiator(true)
-                .endpoint(endpoint)
-                .direction(direction)
-                .channelBundleId(endpoint)
-                .rtpLevelRelayType(Channel.RtpLevelRelayType.TRANSLATOR)
-                .lastN(0)
-                .payloadTypes(videoPayloadTypes)
-                .sources(sources)
-                .ssrcGroups(
-                        Stream.ofNullable(ssrcGroups)
-                                .flatMap(Collection::stream)
-                                .map(x -> SsrcGroup.build(x.getSemantics(), x.getSsrcs()))
-                                .collect(Collectors.toList())
-                )
-                .rtpHdrexts(videoRtpHdrexts)
-                .build();
-        return Content.builder()
-                .name("video")
-                .channels(List.of(channel))
-                .build();
+        return ChannelTemplate.VIDEO.buildContent(channelId, endpoint, direction, sources, toSsrcGroups(ssrcGroups));
     }
 
     private Content constructDataContent(String sctpConnectionId, String endpoint) {
@@ -216,25 +121,13 @@ public class JvbConferenceUtils {
     }
 
     private List<String> getChannelsIds(Conference conference, String contentName, String endpoint) {
-        if (conference.getContents() == null) return List.of();
-        return conference.getContents().stream()
-                .filter(x -> x.getName().equals(contentName))
-                .map(Content::getChannels)
-                .flatMap(Collection::stream)
-                .filter(x -> x instanceof Channel)
-                .map(x -> (Channel) x)
-                .filter(x -> x.getEndpoint().equals(endpoint))
+        return ConferenceIndex.of(conference).getChannels(endpoint, contentName).stream()
                 .map(Channel::getId)
                 .collect(Collectors.toList());
     }
 
     private List<String> getSctpConnectionsIds(Conference conference, String endpoint) {
-        if (conference.getContents() == null) return List.of();
-        return conference.getContents().stream()
-                .filter(x -> "data".equals(x.getName()))
-                .map(Content::getSctpConnections)
-                .flatMap(Collection::stream)
-                .filter(x -> x.getEndpoint().equals(endpoint))
+        return ConferenceIndex.of(conference).getSctpConnections(endpoint).stream()
                 .map(SctpConnection::getId)
                 .collect(Collectors.toList());
     }
@@ -310,8 +203,8 @@ public class JvbConferenceUtils {
                                         OctoChannel.builder()
                                                 .id("octo-audio")
                                                 .expire(1)
-                                                .payloadTypes(audioPayloadTypes)
-                                                .rtpHdrexts(audioRtpHdrexts)
+                                                .payloadTypes(ChannelTemplate.AUDIO.getPayloadTypes())
+                                                .rtpHdrexts(ChannelTemplate.AUDIO.getRtpHdrexts())
                                                 .sources(audioSources.stream()
                                                         .flatMap(x -> x.getValue().stream().map(y -> Map.entry(x.getKey(), y)))
                                                         .map(x -> Source.builder()
@@ -332,8 +225,8 @@ public class JvbConferenceUtils {
                                         OctoChannel.builder()
                                                 .id("octo-video")
                                                 .expire(1)
-                                                .payloadTypes(videoPayloadTypes)
-                                                .rtpHdrexts(videoRtpHdrexts)
+                                                .payloadTypes(ChannelTemplate.VIDEO.getPayloadTypes())
+                                                .rtpHdrexts(ChannelTemplate.VIDEO.getRtpHdrexts())
                                                 .sources(videoSources.stream()
                                                         .flatMap(x -> x.getValue().stream().map(y -> Map.entry(x.getKey(), y)))
                                                         .map(x -> Source.builder()
@@ -370,7 +263,7 @@ public class JvbConferenceUtils {
                                         Channel.builder()
                                                 .id("audio-mixer")
                                                 .expire(1)
-                                                .payloadTypes(audioPayloadTypes)
+                                                .payloadTypes(ChannelTemplate.AUDIO.getPayloadTypes())
                                                 .rtpLevelRelayType(Channel.RtpLevelRelayType.MIXER)
                                                 .build())
                                 .build()
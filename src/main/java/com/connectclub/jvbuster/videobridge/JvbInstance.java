@@ -3,8 +3,9 @@ package com.connectclub.jvbuster.videobridge;
 import com.connectclub.jvbuster.exception.EndpointNotFound;
 import com.connectclub.jvbuster.repository.data.JvbInstanceData;
 import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.connectclub.jvbuster.videobridge.exception.JvbInstanceCircuitOpenException;
 import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
-import com.google.gson.*;
+import com.google.common.base.Strings;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,17 +13,28 @@ import okhttp3.*;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.lang.reflect.Type;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @RequiredArgsConstructor
 public class JvbInstance {
 
-    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    public static final MediaType JSON = ColibriCodec.JSON;
 
     @Getter
     private final String id;
@@ -53,28 +65,9 @@ public class JvbInstance {
 
     private final OkHttpClient okHttpClient;
 
-    private final static Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .registerTypeAdapter(ChannelCommon.class, new JsonDeserializer<ChannelCommon>() {
-                @Override
-                public ChannelCommon deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-                    JsonElement typeElem = json.getAsJsonObject().get("type");
-                    if(typeElem != null && "octo".equals(typeElem.getAsString())) {
-                        return gson.fromJson(json, OctoChannel.class);
-                    }
-                    return gson.fromJson(json, Channel.class);
-                }
-            })
-            .registerTypeAdapter(ChannelCommon.class, new JsonSerializer<ChannelCommon>() {
-                @Override
-                public JsonElement serialize(ChannelCommon src, Type typeOfSrc, JsonSerializationContext context) {
-                    if(src instanceof OctoChannel) {
-                        return gson.toJsonTree(src, OctoChannel.class);
-                    }
-                    return gson.toJsonTree(src, Channel.class);
-                }
-            })
-            .create();
+    // set only for the instances kept in the registry
+    private JvbInstanceCircuitBreaker circuitBreaker;
+    private JvbInstanceHedging hedging;
 
     public JvbInstance(JvbInstanceData jvbInstanceData, OkHttpClient okHttpClient) {
         id = jvbInstanceData.getId();
@@ -94,23 +87,268 @@ public class JvbInstance {
         return new JvbInstance(jvbInstanceData, okHttpClient);
     }
 
-    private <T> T request(String path, String method, Object requestBody, Type responseTypeOfT) throws IOException, JvbInstanceRestException {
-        String bodyJson = gson.toJson(requestBody);
-        RequestBody body = requestBody != null ? RequestBody.create(bodyJson, JSON) : null;
-        Request request = new Request.Builder()
+    JvbInstance withClient(OkHttpClient okHttpClient, JvbInstanceCircuitBreaker circuitBreaker, JvbInstanceHedging hedging) {
+        JvbInstance jvbInstance = new JvbInstance(id, version, scheme, host, port, creationTimestamp, nodeExporterAvailable, forSpeakers, octoBindPort, okHttpClient);
+        jvbInstance.circuitBreaker = circuitBreaker;
+        jvbInstance.hedging = hedging;
+        return jvbInstance;
+    }
+
+    OkHttpClient getOkHttpClient() {
+        return okHttpClient;
+    }
+
+    JvbInstanceCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    JvbInstanceHedging getHedging() {
+        return hedging;
+    }
+
+    private Call newCall(OkHttpClient client, boolean hedge, String path, String method, Object requestBody) throws JvbInstanceCircuitOpenException {
+        Request request = buildRequest(path, method, requestBody);
+        if (circuitBreaker == null) {
+            return client.newCall(request);
+        }
+        // a hedge has been admitted together with the first attempt
+        if (!hedge && !circuitBreaker.tryAcquire()) {
+            throw new JvbInstanceCircuitOpenException(id);
+        }
+        Call call = client.newCall(request);
+        call.timeout().timeout(circuitBreaker.getTimeoutInMillis(getOperation(path, method)), TimeUnit.MILLISECONDS);
+        return call;
+    }
+
+    private static JvbInstanceCircuitBreaker.Operation getOperation(String path, String method) {
+        if (path.equals("/colibri/conferences") && !method.equals("POST") || path.equals("/colibri/conferences/expire")) {
+            return JvbInstanceCircuitBreaker.Operation.BULK;
+        }
+        return method.equals("GET") ? JvbInstanceCircuitBreaker.Operation.GET : JvbInstanceCircuitBreaker.Operation.UPDATE;
+    }
+
+    private void recordOutcome(Call call, long startNanos, Throwable e) {
+        if (circuitBreaker == null) {
+            return;
+        }
+        JvbInstanceCircuitBreaker.Operation operation = getOperation(call.request().url().encodedPath(), call.request().method());
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (e == null) {
+            circuitBreaker.onSuccess(operation, latency);
+        } else if (call.isCanceled() && !(e instanceof InterruptedIOException)) {
+            // cancelled by the caller, a timeout would be an InterruptedIOException
+            circuitBreaker.onCancel();
+        } else if (e instanceof IOException) {
+            circuitBreaker.onFailure();
+        } else if (e instanceof JvbInstanceRestException && ((JvbInstanceRestException) e).getResponseCode() >= 500) {
+            circuitBreaker.onFailure();
+        } else {
+            // the videobridge has answered, so it is alive even if it did not like the request
+            circuitBreaker.onSuccess(operation, latency);
+        }
+    }
+
+    private Request buildRequest(String path, String method, Object requestBody) {
+        RequestBody body = requestBody != null ? ColibriCodec.toRequestBody(requestBody) : null;
+        return new Request.Builder()
                 .url(scheme + "://" + host + ":" + port + path)
                 .method(method, body)
                 .build();
-        try (Response response = okHttpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new JvbInstanceRestException(getId(), path, method, bodyJson, response.code(), response.message(), response.body().string());
+    }
+
+    private <T> T readResponse(Response response, String path, String method, Object requestBody, Type responseTypeOfT) throws IOException, JvbInstanceRestException {
+        if (!response.isSuccessful()) {
+            String bodyJson = requestBody != null ? ColibriCodec.toJson(requestBody) : null;
+            throw new JvbInstanceRestException(getId(), path, method, bodyJson, response.code(), response.message(), response.body().string());
+        }
+        T r = null;
+        if (responseTypeOfT != null) {
+            r = ColibriCodec.fromJson(response.body().charStream(), responseTypeOfT);
+        }
+        return r;
+    }
+
+    private <T> T request(String path, String method, Object requestBody, Type responseTypeOfT) throws IOException, JvbInstanceRestException {
+        Call call = newCall(okHttpClient, false, path, method, requestBody);
+        long startNanos = System.nanoTime();
+        try (Response response = call.execute()) {
+            T r = readResponse(response, path, method, requestBody, responseTypeOfT);
+            recordOutcome(call, startNanos, null);
+            return r;
+        } catch (IOException | JvbInstanceRestException | RuntimeException e) {
+            recordOutcome(call, startNanos, e);
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> requestAsync(String path, String method, Object requestBody, Type responseTypeOfT) {
+        return requestAsync(okHttpClient, false, path, method, requestBody, responseTypeOfT);
+    }
+
+    private <T> CompletableFuture<T> requestAsync(OkHttpClient client, boolean hedge, String path, String method, Object requestBody, Type responseTypeOfT) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call;
+        try {
+            call = newCall(client, hedge, path, method, requestBody);
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        long startNanos = System.nanoTime();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                recordOutcome(call, startNanos, e);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    T r = readResponse(response, path, method, requestBody, responseTypeOfT);
+                    recordOutcome(call, startNanos, null);
+                    future.complete(r);
+                } catch (Exception e) {
+                    recordOutcome(call, startNanos, e);
+                    future.completeExceptionally(e);
+                }
             }
-            T r = null;
-            if (responseTypeOfT != null) {
-                r = gson.fromJson(response.body().string(), responseTypeOfT);
+        });
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
             }
-            return r;
+        });
+        return future;
+    }
+
+    /**
+     * GET which is sent once more over a fresh connection if the first attempt is slower than usual,
+     * the first answer wins and the other attempt is cancelled.
+     */
+    private <T> CompletableFuture<T> hedgedGetAsync(String path, Type responseTypeOfT) {
+        long hedgeDelay = hedging != null && circuitBreaker != null ? hedging.getDelayInMillis(circuitBreaker) : -1;
+        CompletableFuture<T> first = requestAsync(okHttpClient, false, path, "GET", null, responseTypeOfT);
+        if (hedgeDelay < 0) {
+            return first;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<T>> second = new AtomicReference<>();
+        BiConsumer<T, Throwable> onAttemptComplete = (r, e) -> {
+            if (e == null) {
+                result.complete(r);
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        };
+        first.whenComplete(onAttemptComplete);
+        CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS, Runnable::run).execute(() -> {
+            if (result.isDone() || !hedging.tryAcquire()) {
+                return;
+            }
+            if (running.getAndUpdate(x -> x == 0 ? 0 : x + 1) == 0) {
+                return;
+            }
+            log.debug("Hedging request(path={}) to JVB instance(id={}) after {}ms", path, id, hedgeDelay);
+            CompletableFuture<T> attempt = requestAsync(hedging.getOkHttpClient(), true, path, "GET", null, responseTypeOfT);
+            second.set(attempt);
+            attempt.whenComplete(onAttemptComplete);
+            if (result.isDone()) {
+                attempt.cancel(true);
+            }
+        });
+        result.whenComplete((r, e) -> {
+            first.cancel(true);
+            CompletableFuture<T> attempt = second.get();
+            if (attempt != null) {
+                attempt.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Waits for a future returned by one of the *Async methods and rethrows its failure
+     * the same way the blocking methods would throw it.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, JvbInstanceRestException {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof JvbInstanceRestException) throw (JvbInstanceRestException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * Same as {@link #await(CompletableFuture)}, but gives up at the deadline (System.nanoTime() based),
+     * the future is cancelled then.
+     */
+    public static <T> T await(CompletableFuture<T> future, long deadlineNanos) throws IOException, JvbInstanceRestException {
+        try {
+            future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new SocketTimeoutException("Deadline exceeded");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException | CancellationException ignored) {
+            // rethrown by await below
+        }
+        return await(future);
+    }
+
+    /**
+     * Non-blocking {@link #await(CompletableFuture, long)}: the returned future fails with SocketTimeoutException
+     * at the deadline and the future is cancelled then.
+     */
+    public static <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, long deadlineNanos) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((x, e) -> {
+            if (e != null) {
+                result.completeExceptionally(unwrap(e));
+            } else {
+                result.complete(x);
+            }
+        });
+        if (!result.isDone()) {
+            CompletableFuture.delayedExecutor(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.completeExceptionally(new SocketTimeoutException("Deadline exceeded"))) {
+                    future.cancel(true);
+                }
+            });
         }
+        return result;
+    }
+
+    public static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static boolean isNoSctpConnection(JvbInstanceRestException e) {
+        String message = "Failed to create conference: No SCTP connection found for ID:";
+        // the reason phrase is not always passed through (http/2, proxies), the same text is in the body then
+        return e.getResponseCode() == HttpStatus.BAD_REQUEST.value()
+                && (Strings.nullToEmpty(e.getResponseMessage()).startsWith(message) || Strings.nullToEmpty(e.getResponseBody()).startsWith(message));
+    }
+
+    private static <T> CompletableFuture<T> translatePatchFailure(CompletableFuture<T> future) {
+        return future.handle((r, e) -> {
+            if (e == null) return r;
+            Throwable cause = unwrap(e);
+            if (cause instanceof JvbInstanceRestException && isNoSctpConnection((JvbInstanceRestException) cause)) {
+                throw new EndpointNotFound(cause);
+            }
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        });
     }
 
     private <T> T getRequest(String path, Object requestBody, Type responseTypeOfT) throws IOException, JvbInstanceRestException {
@@ -171,7 +409,7 @@ public class JvbInstance {
         try {
             return patchRequest("/colibri/conferences/" + conference.getId(), conference, Conference.class);
         } catch (JvbInstanceRestException e) {
-            if(e.getResponseCode() == HttpStatus.BAD_REQUEST.value() && e.getResponseMessage().startsWith("Failed to create conference: No SCTP connection found for ID:")) {
+            if (isNoSctpConnection(e)) {
                 throw new EndpointNotFound(e);
             }
             throw e;
@@ -182,7 +420,7 @@ public class JvbInstance {
         try {
             return patchRequest("/colibri/conferences/" + conference.getId() + "?endpoint=" + endpoint, conference, Conference.class);
         } catch (JvbInstanceRestException e) {
-            if(e.getResponseCode() == HttpStatus.BAD_REQUEST.value() && e.getResponseMessage().startsWith("Failed to create conference: No SCTP connection found for ID:")) {
+            if (isNoSctpConnection(e)) {
                 throw new EndpointNotFound(e);
             }
             throw e;
@@ -213,6 +451,54 @@ public class JvbInstance {
         postRequest("/colibri/shutdown", Map.of("graceful-shutdown", graceful), null);
     }
 
+    public CompletableFuture<Conference> getConferenceAsync(String conferenceId) {
+        return hedgedGetAsync("/colibri/conferences/" + conferenceId, Conference.class);
+    }
+
+    public CompletableFuture<Conference> getConferenceAsync(String conferenceId, String endpoint) {
+        return hedgedGetAsync("/colibri/conferences/" + conferenceId + "?endpoint=" + endpoint, Conference.class);
+    }
+
+    public CompletableFuture<List<Conference>> getConferencesAsync() {
+        return requestAsync("/colibri/conferences", "GET", null, Conference.LIST_TYPE);
+    }
+
+    public CompletableFuture<Conference> createConferenceAsync(String gid) {
+        return requestAsync("/colibri/conferences", "POST", Conference.builder().gid(gid).build(), Conference.class);
+    }
+
+    public CompletableFuture<Conference> patchConferenceAsync(Conference conference) {
+        return translatePatchFailure(requestAsync("/colibri/conferences/" + conference.getId(), "PATCH", conference, Conference.class));
+    }
+
+    public CompletableFuture<Conference> patchConferenceAsync(Conference conference, String endpoint) {
+        return translatePatchFailure(requestAsync("/colibri/conferences/" + conference.getId() + "?endpoint=" + endpoint, "PATCH", conference, Conference.class));
+    }
+
+    public CompletableFuture<Void> broadcastMessageAsync(String conferenceId, String colibriClass, Object message) {
+        return requestAsync("/colibri/conferences/" + conferenceId + "/broadcast-message/" + colibriClass, "POST", message, null);
+    }
+
+    public CompletableFuture<Void> deleteEndpointAsync(String conferenceId, String endpointId) {
+        return requestAsync("/colibri/conferences/" + conferenceId + "/endpoint/" + endpointId, "DELETE", null, null);
+    }
+
+    public CompletableFuture<Stats> getStatsAsync() {
+        return requestAsync("/colibri/stats", "GET", null, Stats.class);
+    }
+
+    public CompletableFuture<Void> deleteConferencesAsync() {
+        return requestAsync("/colibri/conferences", "DELETE", null, null);
+    }
+
+    public CompletableFuture<List<Conference>> expireConferencesAsync() {
+        return requestAsync("/colibri/conferences/expire", "POST", Map.of(), Conference.LIST_TYPE);
+    }
+
+    public CompletableFuture<Void> shutdownAsync(boolean graceful) {
+        return requestAsync("/colibri/shutdown", "POST", Map.of("graceful-shutdown", graceful), null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,212 @@
+package com.connectclub.jvbuster.videobridge;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Rolling latency/error statistics of one videobridge. The breaker opens when too many of the recent requests
+ * failed, rejects requests while open and lets a single probe through once the open period is over.
+ * Latencies are kept per operation, so the cheap requests do not set the timeout of the heavy ones.
+ */
+@Slf4j
+public class JvbInstanceCircuitBreaker {
+
+    @Getter
+    @Builder
+    public static class Settings {
+        private final int windowSize;
+        private final int minSamples;
+        private final int failureRateThreshold;
+        private final int consecutiveFailuresThreshold;
+        private final long openDurationInMillis;
+        private final double timeoutMultiplier;
+        private final long minTimeoutInMillis;
+        private final long maxTimeoutInMillis;
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum Operation {
+        // reads of one conference
+        GET,
+        // changes of one conference or endpoint
+        UPDATE,
+        // requests on all the conferences of the videobridge
+        BULK
+    }
+
+    private static class LatencyWindow {
+        private final long[] latencies;
+        private int position;
+        private int samples;
+        // sorted latencies, null when a latency has been recorded since
+        private long[] sorted;
+
+        private LatencyWindow(int size) {
+            this.latencies = new long[size];
+        }
+
+        private void record(long latencyInMillis) {
+            latencies[position] = latencyInMillis;
+            position = (position + 1) % latencies.length;
+            samples = Math.min(samples + 1, latencies.length);
+            sorted = null;
+        }
+
+        private long[] sorted() {
+            if (sorted == null) {
+                sorted = Arrays.copyOf(latencies, samples);
+                Arrays.sort(sorted);
+            }
+            return sorted;
+        }
+    }
+
+    private final String instanceId;
+    private final Settings settings;
+
+    private final Map<Operation, LatencyWindow> latencyWindows = new EnumMap<>(Operation.class);
+    private final boolean[] failures;
+    private int position;
+    private int samples;
+    private int failuresInWindow;
+    private int consecutiveFailures;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean probeInFlight;
+
+    public JvbInstanceCircuitBreaker(String instanceId, Settings settings) {
+        this.instanceId = instanceId;
+        this.settings = settings;
+        for (Operation operation : Operation.values()) {
+            latencyWindows.put(operation, new LatencyWindow(settings.getWindowSize()));
+        }
+        this.failures = new boolean[settings.getWindowSize()];
+    }
+
+    /**
+     * @return false if the request must not be sent
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                log.info("Circuit breaker of JVB instance(id={}) is half-open, probing", instanceId);
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess(Operation operation, long latencyInMillis) {
+        record(false);
+        latencyWindows.get(operation).record(latencyInMillis);
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probeInFlight = false;
+            log.info("Circuit breaker of JVB instance(id={}) is closed", instanceId);
+        }
+    }
+
+    public synchronized void onFailure() {
+        record(true);
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            boolean tooManyFailures = samples >= settings.getMinSamples()
+                    && failuresInWindow * 100 >= settings.getFailureRateThreshold() * samples;
+            if (tooManyFailures || consecutiveFailures >= settings.getConsecutiveFailuresThreshold()) {
+                open();
+            }
+        }
+    }
+
+    // the request has been cancelled by the caller, nothing is known about the videobridge
+    public synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        probeInFlight = false;
+        openUntil = System.currentTimeMillis() + settings.getOpenDurationInMillis();
+        log.warn("Circuit breaker of JVB instance(id={}) is open for {}ms (failures={}/{}, consecutiveFailures={})",
+                instanceId, settings.getOpenDurationInMillis(), failuresInWindow, samples, consecutiveFailures);
+    }
+
+    private void record(boolean failure) {
+        if (samples == failures.length) {
+            if (failures[position]) failuresInWindow--;
+        } else {
+            samples++;
+        }
+        failures[position] = failure;
+        if (failure) failuresInWindow++;
+        position = (position + 1) % failures.length;
+    }
+
+    /**
+     * @return true if a request would be rejected now
+     */
+    public synchronized boolean isOpen() {
+        switch (state) {
+            case OPEN:
+                return System.currentTimeMillis() < openUntil;
+            case HALF_OPEN:
+                return probeInFlight;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return latency percentile of the successful requests of the operation in the window or -1 if there are not
+     * enough samples
+     */
+    public synchronized long getLatencyPercentile(Operation operation, double percentile) {
+        LatencyWindow window = latencyWindows.get(operation);
+        if (window.samples < settings.getMinSamples()) {
+            return -1;
+        }
+        long[] sorted = window.sorted();
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    public long getTimeoutInMillis(Operation operation) {
+        long p99 = getLatencyPercentile(operation, 99);
+        if (p99 < 0) {
+            return settings.getMaxTimeoutInMillis();
+        }
+        long timeout = (long) (p99 * settings.getTimeoutMultiplier());
+        return Math.max(settings.getMinTimeoutInMillis(), Math.min(settings.getMaxTimeoutInMillis(), timeout));
+    }
+}
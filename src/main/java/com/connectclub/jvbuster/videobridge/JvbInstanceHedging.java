@@ -0,0 +1,60 @@
+package com.connectclub.jvbuster.videobridge;
+
+import lombok.Builder;
+import lombok.Getter;
+import okhttp3.OkHttpClient;
+
+/**
+ * Hedging of idempotent reads of one videobridge. A second attempt is sent over its own connections when the
+ * first one is slower than the observed p95 of the reads, the number of such attempts is limited by a token bucket refilled by
+ * every hedgeable request.
+ */
+public class JvbInstanceHedging {
+
+    @Getter
+    @Builder
+    public static class Settings {
+        private final int budgetPercent;
+        private final int maxBurst;
+        private final long minDelayInMillis;
+    }
+
+    @Getter
+    private final OkHttpClient okHttpClient;
+    private final Settings settings;
+
+    private double tokens;
+
+    public JvbInstanceHedging(OkHttpClient okHttpClient, Settings settings) {
+        this.okHttpClient = okHttpClient;
+        this.settings = settings;
+        this.tokens = settings.getMaxBurst();
+    }
+
+    /**
+     * Registers a hedgeable request.
+     *
+     * @return delay after which the request may be hedged or -1 if it must not be hedged
+     */
+    public long getDelayInMillis(JvbInstanceCircuitBreaker circuitBreaker) {
+        synchronized (this) {
+            tokens = Math.min(settings.getMaxBurst(), tokens + settings.getBudgetPercent() / 100.0);
+        }
+        if (circuitBreaker.getState() != JvbInstanceCircuitBreaker.State.CLOSED) {
+            return -1;
+        }
+        long p95 = circuitBreaker.getLatencyPercentile(JvbInstanceCircuitBreaker.Operation.GET, 95);
+        if (p95 < 0) {
+            return -1;
+        }
+        return Math.max(p95, settings.getMinDelayInMillis());
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
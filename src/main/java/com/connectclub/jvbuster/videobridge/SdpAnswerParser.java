@@ -0,0 +1,329 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.exception.BadSdpException;
+import com.connectclub.jvbuster.exception.ProgramLogicException;
+import com.connectclub.jvbuster.videobridge.data.Answer;
+import com.connectclub.jvbuster.videobridge.data.SdpAnswer;
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Parses SDP answers in one scan of the text, without regular expressions. Lines which do not match
+ * the grammar of their attribute are skipped.
+ */
+@UtilityClass
+public class SdpAnswerParser {
+
+    private final String LINE_DELIMITER = "\r\n";
+
+    private final String CANDIDATE = "candidate:";
+    private final String SSRC = "a=ssrc:";
+    private final String SSRC_GROUP = "a=ssrc-group:";
+    private final String MID = "a=mid:";
+    private final String SENDRECV = "a=sendrecv";
+    private final String ICE_UFRAG = "a=ice-ufrag:";
+    private final String ICE_PWD = "a=ice-pwd:";
+    private final String FINGERPRINT = "a=fingerprint:";
+    private final String SETUP = "a=setup:";
+
+    /**
+     * @param sdpAnswers answers, each one starts with a `v=` line
+     */
+    public List<SdpAnswer> parse(String sdpAnswers) {
+        List<SdpAnswer> answers = new ArrayList<>();
+        SdpAnswer answer = null;
+        SdpAnswer.Section section = null;
+        int answerStart = 0;
+        int answerLines = 0;
+        int lineStart = 0;
+        while (true) {
+            int lineEnd = sdpAnswers.indexOf(LINE_DELIMITER, lineStart);
+            int to = lineEnd < 0 ? sdpAnswers.length() : lineEnd;
+            if (answer == null || sdpAnswers.startsWith("v=", lineStart)) {
+                if (answer != null) {
+                    answers.add(validate(answer, answerLines));
+                }
+                answer = new SdpAnswer();
+                section = answer.getSession();
+                answerStart = lineStart;
+                answerLines = 0;
+            }
+            if (answerLines > 0 && sdpAnswers.startsWith("m=", lineStart)) {
+                if (answer.getMedias().isEmpty()) {
+                    answer.setSessionDetails(sdpAnswers.substring(answerStart, lineStart - LINE_DELIMITER.length()));
+                }
+                section = new SdpAnswer.Section();
+                section.setMedia(sdpAnswers.substring(lineStart + 2, endOf(sdpAnswers, lineStart + 2, to, false)));
+                answer.getMedias().add(section);
+            } else if (sdpAnswers.startsWith("a=", lineStart)) {
+                parseAttribute(sdpAnswers, lineStart, to, section);
+            }
+            answerLines++;
+            if (lineEnd < 0) {
+                break;
+            }
+            lineStart = lineEnd + LINE_DELIMITER.length();
+        }
+        answers.add(validate(answer, answerLines));
+        return answers;
+    }
+
+    /**
+     * @param candidate candidate attribute without the `a=` prefix
+     * @return null if it is not a correct candidate
+     */
+    public Answer.Candidate parseCandidate(String candidate) {
+        if (candidate == null || !candidate.startsWith(CANDIDATE)) {
+            return null;
+        }
+        return parseCandidate(candidate, CANDIDATE.length(), candidate.length());
+    }
+
+    public Answer toAnswer(SdpAnswer sdpAnswer) {
+        SdpAnswer.Section audioMedia = sdpAnswer.findMedia("audio", SdpAnswer.Section::isSendrecv);
+        SdpAnswer.Section videoMedia = sdpAnswer.findMedia("video", SdpAnswer.Section::isSendrecv);
+        SdpAnswer.Section dataMedia = sdpAnswer.findMedia("application", x -> true);
+        SdpAnswer.Section confIdMedia = sdpAnswer.findMedia("text", x -> x.getMid() != null && x.getMid().startsWith("confId-"));
+
+        String conferenceId;
+        String sctpConnectionId;
+        if (confIdMedia == null) {
+            String mid = dataMedia != null ? dataMedia.getMid() : null;
+            int delimiter = mid != null && mid.startsWith("data-") ? mid.lastIndexOf('-', mid.length() - 2) : -1;
+            if (delimiter <= "data-".length()) {
+                throw new NoSuchElementException("No value present");
+            }
+            conferenceId = mid.substring("data-".length(), delimiter);
+            sctpConnectionId = mid.substring(delimiter + 1);
+        } else {
+            if (confIdMedia.getMid().length() == "confId-".length() || dataMedia == null || dataMedia.getMid() == null) {
+                throw new NoSuchElementException("No value present");
+            }
+            conferenceId = confIdMedia.getMid().substring("confId-".length());
+            sctpConnectionId = dataMedia.getMid();
+        }
+
+        if (dataMedia.getIceUfrag() == null) {
+            throw new ProgramLogicException("No 'ice-ufrag' attribute");
+        }
+        if (dataMedia.getIcePwd() == null) {
+            throw new ProgramLogicException("No 'ice-pwd' attribute");
+        }
+
+        String fingerprint = sdpAnswer.getSession().getFingerprint() != null ? sdpAnswer.getSession().getFingerprint() : dataMedia.getFingerprint();
+        String[] fingerprintAttribute = fingerprint != null ? fingerprint.split(" ") : null;
+        if (fingerprintAttribute != null && fingerprintAttribute.length != 2) {
+            throw new ProgramLogicException("Strange fingerprint attribute");
+        }
+        String fingerprintHash = fingerprintAttribute != null ? fingerprintAttribute[0] : null;
+
+        String fingerprintValue = fingerprintAttribute != null ? fingerprintAttribute[1] : null;
+
+        if (Stream.of(fingerprintHash, fingerprintValue).anyMatch(x -> x == null || x.length() == 0)) {
+            throw new RuntimeException("fingerprint error");
+        }
+
+        return Answer.builder()
+                .conferenceId(conferenceId)
+                .sctpConnectionId(sctpConnectionId)
+                .audioChannelId(getChannelId(audioMedia, "audio-mixed-"))
+                .audioSsrc(audioMedia != null ? audioMedia.getSsrcs() : List.of())
+                .audioSsrcGroups(audioMedia != null ? audioMedia.getSsrcGroups() : List.of())
+                .videoChannelId(getChannelId(videoMedia, "video-mixed-"))
+                .videoSsrc(videoMedia != null ? videoMedia.getSsrcs() : List.of())
+                .videoSsrcGroups(videoMedia != null ? videoMedia.getSsrcGroups() : List.of())
+                .fingerprintValue(fingerprintValue)
+                .fingerprintHash(fingerprintHash)
+                .fingerprintSetup(dataMedia.getSetup())
+                .iceUfrag(dataMedia.getIceUfrag())
+                .icePwd(dataMedia.getIcePwd())
+                .candidates(dataMedia.getCandidates())
+                .build();
+    }
+
+    private String getChannelId(SdpAnswer.Section media, String prefix) {
+        if (media == null || media.getMid() == null) {
+            return null;
+        }
+        return media.getMid().startsWith(prefix) ? media.getMid().substring(prefix.length()) : media.getMid();
+    }
+
+    private SdpAnswer validate(SdpAnswer answer, int lines) {
+        if (lines < 2) {
+            throw new BadSdpException("SDP must contain correct line delimiter `\\r\\n`");
+        }
+        if (answer.getMedias().isEmpty()) {
+            throw new BadSdpException("SDP must contain at least 1 media section");
+        }
+        return answer;
+    }
+
+    private void parseAttribute(String sdp, int from, int to, SdpAnswer.Section section) {
+        if (sdp.startsWith(CANDIDATE, from + 2)) {
+            Answer.Candidate candidate = parseCandidate(sdp, from + 2 + CANDIDATE.length(), to);
+            if (candidate != null) {
+                section.getCandidates().add(candidate);
+            }
+        } else if (sdp.startsWith(SSRC, from)) {
+            parseSsrc(sdp, from + SSRC.length(), to, section);
+        } else if (sdp.startsWith(SSRC_GROUP, from)) {
+            parseSsrcGroup(sdp, from + SSRC_GROUP.length(), to, section);
+        } else if (sdp.startsWith(MID, from)) {
+            if (section.getMid() == null && from + MID.length() < to) {
+                section.setMid(sdp.substring(from + MID.length(), to));
+            }
+        } else if (sdp.startsWith(SENDRECV, from)) {
+            section.setSendrecv(true);
+        } else if (sdp.startsWith(ICE_UFRAG, from)) {
+            if (section.getIceUfrag() == null) {
+                section.setIceUfrag(sdp.substring(from + ICE_UFRAG.length(), to));
+            }
+        } else if (sdp.startsWith(ICE_PWD, from)) {
+            if (section.getIcePwd() == null) {
+                section.setIcePwd(sdp.substring(from + ICE_PWD.length(), to));
+            }
+        } else if (sdp.startsWith(FINGERPRINT, from)) {
+            if (section.getFingerprint() == null) {
+                section.setFingerprint(sdp.substring(from + FINGERPRINT.length(), to));
+            }
+        } else if (sdp.startsWith(SETUP, from)) {
+            if (section.getSetup() == null) {
+                section.setSetup(sdp.substring(from + SETUP.length(), to));
+            }
+        }
+    }
+
+    // <ssrc> <attribute>
+    private void parseSsrc(String sdp, int from, int to, SdpAnswer.Section section) {
+        int ssrcEnd = digitsEnd(sdp, from, to);
+        if (ssrcEnd == from || ssrcEnd + 1 >= to || !isWhitespace(sdp.charAt(ssrcEnd))) {
+            return;
+        }
+        Long ssrc = Long.parseLong(sdp, from, ssrcEnd, 10);
+        if (!section.getSsrcs().contains(ssrc)) {
+            section.getSsrcs().add(ssrc);
+        }
+    }
+
+    // <semantics> <ssrc> ...
+    private void parseSsrcGroup(String sdp, int from, int to, SdpAnswer.Section section) {
+        int semanticsEnd = from;
+        while (semanticsEnd < to && isWordChar(sdp.charAt(semanticsEnd))) {
+            semanticsEnd++;
+        }
+        if (semanticsEnd == from || semanticsEnd == to || !isWhitespace(sdp.charAt(semanticsEnd))) {
+            return;
+        }
+        int i = semanticsEnd + 1;
+        while (i < to && isWhitespace(sdp.charAt(i))) {
+            i++;
+        }
+        List<Long> ssrcs = new ArrayList<>();
+        while (i < to) {
+            if (sdp.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+            int ssrcEnd = digitsEnd(sdp, i, to);
+            if (ssrcEnd == i) {
+                return;
+            }
+            ssrcs.add(Long.parseLong(sdp, i, ssrcEnd, 10));
+            i = ssrcEnd;
+        }
+        if (!ssrcs.isEmpty()) {
+            section.getSsrcGroups().add(Map.entry(sdp.substring(from, semanticsEnd), ssrcs));
+        }
+    }
+
+    // <foundation> <component-id> <transport> <priority> <address> <port> typ <type> [raddr <address>] [rport <port>] [generation <generation>] ...
+    private Answer.Candidate parseCandidate(String sdp, int from, int to) {
+        // the component id, the priority and the port are numbers
+        String[] fields = new String[6];
+        int i = from;
+        for (int field = 0; field < fields.length; field++) {
+            int fieldEnd = endOf(sdp, i, to, field % 2 == 1);
+            if (fieldEnd == i || fieldEnd == to || sdp.charAt(fieldEnd) != ' ') {
+                return null;
+            }
+            fields[field] = sdp.substring(i, fieldEnd);
+            i = fieldEnd + 1;
+        }
+        if (!sdp.startsWith("typ ", i)) {
+            return null;
+        }
+        i += "typ ".length();
+        int typeEnd = endOf(sdp, i, to, false);
+        if (typeEnd == i) {
+            return null;
+        }
+        Answer.Candidate.CandidateBuilder candidate = Answer.Candidate.builder()
+                .foundation(fields[0])
+                .componentId(fields[1])
+                .transport(fields[2])
+                .priority(fields[3])
+                .connectionAddress(fields[4])
+                .port(fields[5])
+                .candidateType(sdp.substring(i, typeEnd));
+
+        // the optional parts are taken only when they follow each other in this order, the rest is ignored
+        i = typeEnd;
+        int relAddressEnd = optionalEnd(sdp, i, to, " raddr ", false);
+        if (relAddressEnd > 0) {
+            candidate.relAddress(sdp.substring(i + " raddr ".length(), relAddressEnd));
+            i = relAddressEnd;
+        }
+        int relPortEnd = optionalEnd(sdp, i, to, " rport ", true);
+        if (relPortEnd > 0) {
+            candidate.relPort(sdp.substring(i + " rport ".length(), relPortEnd));
+            i = relPortEnd;
+        }
+        int generationEnd = optionalEnd(sdp, i, to, " generation ", true);
+        if (generationEnd > 0) {
+            candidate.generation(sdp.substring(i + " generation ".length(), generationEnd));
+        }
+        return candidate.build();
+    }
+
+    // end of the not empty value after the prefix, -1 if there is none
+    private int optionalEnd(String sdp, int from, int to, String prefix, boolean digits) {
+        if (!sdp.startsWith(prefix, from)) {
+            return -1;
+        }
+        int valueEnd = endOf(sdp, from + prefix.length(), to, digits);
+        return valueEnd > from + prefix.length() ? valueEnd : -1;
+    }
+
+    private int endOf(String sdp, int from, int to, boolean digits) {
+        return digits ? digitsEnd(sdp, from, to) : nonWhitespaceEnd(sdp, from, to);
+    }
+
+    private int digitsEnd(String sdp, int from, int to) {
+        int i = from;
+        while (i < to && sdp.charAt(i) >= '0' && sdp.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private int nonWhitespaceEnd(String sdp, int from, int to) {
+        int i = from;
+        while (i < to && !isWhitespace(sdp.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+}
@@ -3,7 +3,9 @@ package com.connectclub.jvbuster.videobridge;
 import com.connectclub.jvbuster.exception.BadSdpException;
 import com.connectclub.jvbuster.exception.ProgramLogicException;
 import com.connectclub.jvbuster.exception.EndpointNotFound;
+import com.connectclub.jvbuster.videobridge.data.OfferDelta;
 import com.connectclub.jvbuster.videobridge.data.PrevOffer;
+import com.connectclub.jvbuster.videobridge.data.Subscription;
 import com.connectclub.jvbuster.videobridge.data.jvb.*;
 import com.connectclub.jvbuster.videobridge.data.sdp.*;
 import com.google.common.collect.Maps;
@@ -15,6 +17,7 @@ import org.springframework.util.StringUtils;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -24,69 +27,158 @@ public class SdpUtils {
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    private Channel getPrimaryChannel(Conference conf, String contentName, String endpoint) {
-        return conf.getContents().stream()
-                .filter(x -> contentName.equals(x.getName()))
-                .map(Content::getChannels)
-                .flatMap(Collection::stream)
-                .filter(x -> x instanceof Channel)
-                .map(x -> (Channel)x)
-                .filter(x -> endpoint.equals(x.getEndpoint()))
+    private final List<String> RTP_PROTO = List.of("RTP", "SAVPF");
+
+    private final List<Connection> CONNECTIONS = List.of(new Connection("IN", "IP4", "0.0.0.0"));
+
+    private final Attribute RTCP_ATTRIBUTE = RealTimeControlProtocolAttribute.builder()
+            .port(1)
+            .netType("IN")
+            .addrType("IP4")
+            .address("0.0.0.0")
+            .build();
+
+    // rtcp, direction, codecs and header extensions of the medias, rendered once for each direction
+    private final Map<String, Attribute> AUDIO_ATTRIBUTES = renderForDirections(direction -> List.of(
+            RTCP_ATTRIBUTE,
+            new BaseAttribute(direction),
+            RTPMapAttribute.builder().format(111).name("opus").rate(48000).parameters("2").build(),
+            FormatAttribute.builder()
+                    .format(111)
+                    .parameters(Map.of(
+                            "minptime", "10",
+                            "useinbandfec", "1",
+                            "stereo", "0"))
+                    .build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(111).type("transport-cc").build(),
+            new BaseAttribute("extmap", "1 urn:ietf:params:rtp-hdrext:ssrc-audio-level"),
+            new BaseAttribute("extmap", "5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
+    ));
+
+    private final Map<String, Attribute> VIDEO_ATTRIBUTES = renderForDirections(direction -> List.of(
+            RTCP_ATTRIBUTE,
+            new BaseAttribute(direction),
+            RTPMapAttribute.builder().format(100).name("VP8").rate(90000).build(),
+            RTPMapAttribute.builder().format(96).name("rtx").rate(90000).build(),
+            FormatAttribute.builder()
+                    .format(100)
+                    .parameters(Map.of(
+                            "max-fr", "30",
+                            "max-recv-width", "360",
+                            "max-recv-height", "360"
+                    ))
+                    .build(),
+            FormatAttribute.builder()
+                    .format(96)
+                    .parameters(Map.of("apt", "100"))
+                    .build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("ccm").subtype("fir").build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("nack").build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("nack").subtype("pli").build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("transport-cc").build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(96).type("ccm").subtype("fir").build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(96).type("nack").build(),
+            RealTimeControlProtocolFeedbackAttribute.builder().format(96).type("nack").subtype("pli").build(),
+            new BaseAttribute("extmap", "3 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time"),
+            new BaseAttribute("extmap", "5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
+    ));
+
+    private final Map<Enum<?>, String> serializedNames = new ConcurrentHashMap<>();
+
+    private Map<String, Attribute> renderForDirections(Function<String, List<Attribute>> attributes) {
+        return Stream.of("sendonly", "recvonly", "inactive")
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), x -> new RenderedAttributes(attributes.apply(x))));
+    }
+
+    private String getSerializedName(Enum<?> value) {
+        return serializedNames.computeIfAbsent(value, x -> gson.toJsonTree(x).getAsString());
+    }
+
+    private Channel getPrimaryChannel(ConferenceIndex index, String contentName, String endpoint) {
+        return index.getChannels(endpoint, contentName).stream()
                 .filter(x -> x.getDirection() == Channel.Direction.SENDRECV)
                 .findFirst().orElse(null);
     }
 
-    private List<Channel> getAnotherChannels(Conference conf, String contentName, String exceptEndpoint) {
-        return conf.getContents().stream()
-                .filter(x -> contentName.equals(x.getName()))
-                .map(Content::getChannels)
-                .flatMap(Collection::stream)
-                .filter(x -> x instanceof Channel)
-                .map(x -> (Channel)x)
+    private List<Channel> getAnotherChannels(ConferenceIndex index, String contentName, String exceptEndpoint) {
+        return index.getSendingChannels(contentName).stream()
                 .filter(x -> !exceptEndpoint.equalsIgnoreCase(x.getEndpoint()))
-                .filter(channel -> channel.getSsrcs() != null && channel.getSsrcs().size() > 0)
                 .collect(Collectors.toList());
     }
 
+    // channels without an endpoint are offered anyway
+    private void retainSubscribed(Subscription subscription, List<Channel> audioChannels, List<Channel> videoChannels, PrevOffer prevOffer) {
+        Set<String> offeredChannelIds = new HashSet<>();
+        if (prevOffer != null) {
+            for (String channel : prevOffer.getChannels()) {
+                if (channel.contains("-")) {
+                    offeredChannelIds.add(channel.split("-")[1]);
+                }
+            }
+        }
+        Set<String> remoteEndpoints = new LinkedHashSet<>();
+        Set<String> offeredEndpoints = new HashSet<>();
+        Stream.concat(audioChannels.stream(), videoChannels.stream())
+                .filter(x -> x.getEndpoint() != null)
+                .forEach(x -> {
+                    remoteEndpoints.add(x.getEndpoint());
+                    if (offeredChannelIds.contains(x.getId())) {
+                        offeredEndpoints.add(x.getEndpoint());
+                    }
+                });
+        Set<String> subscribedEndpoints = subscription.select(remoteEndpoints, offeredEndpoints);
+        audioChannels.removeIf(x -> x.getEndpoint() != null && !subscribedEndpoints.contains(x.getEndpoint()));
+        videoChannels.removeIf(x -> x.getEndpoint() != null && !subscribedEndpoints.contains(x.getEndpoint()));
+    }
+
     public SessionDescription toOfferSdp(
             Conference conference,
             String endpoint,
             Long videoBandwidth,
             PrevOffer prevOffer
     ) {
-        if (Stream.ofNullable(conference.getEndpoints())
-                .flatMap(Collection::stream)
-                .noneMatch(x -> Objects.equals(x.getId(), endpoint))
-        ) {
+        return toOfferSdp(conference, endpoint, videoBandwidth, prevOffer, Subscription.ALL);
+    }
+
+    /**
+     * @param subscription remote endpoints getting media sections, the sections of the others are disabled
+     */
+    public SessionDescription toOfferSdp(
+            Conference conference,
+            String endpoint,
+            Long videoBandwidth,
+            PrevOffer prevOffer,
+            Subscription subscription
+    ) {
+        ConferenceIndex index = ConferenceIndex.of(conference);
+        if (!index.hasEndpoint(endpoint)) {
             throw new EndpointNotFound();
         }
 
-        Channel primaryAudioChannel = getPrimaryChannel(conference, "audio", endpoint);
-        Channel primaryVideoChannel = getPrimaryChannel(conference, "video", endpoint);
+        Channel primaryAudioChannel = getPrimaryChannel(index, "audio", endpoint);
+        Channel primaryVideoChannel = getPrimaryChannel(index, "video", endpoint);
 
-        List<Channel> anotherAudioChannels = getAnotherChannels(conference, "audio", endpoint);
-        List<Channel> anotherVideoChannels = getAnotherChannels(conference, "video", endpoint);
+        List<Channel> anotherAudioChannels = getAnotherChannels(index, "audio", endpoint);
+        List<Channel> anotherVideoChannels = getAnotherChannels(index, "video", endpoint);
+        if (!subscription.isAll()) {
+            retainSubscribed(subscription, anotherAudioChannels, anotherVideoChannels, prevOffer);
+        }
 
-        SctpConnection sctpConnection = conference.getContents().stream()
-                .filter(x -> "data".equals(x.getName()))
-                .map(Content::getSctpConnections)
-                .flatMap(Collection::stream)
-                .filter(x -> Objects.equals(endpoint, x.getEndpoint()))
+        SctpConnection sctpConnection = index.getSctpConnections(endpoint).stream()
                 .findFirst()
                 .orElseThrow(() -> new NoSuchElementException(String.format("Can not find sctp connection for endpoint(%s) in conference:\n%s", endpoint, gson.toJson(conference))));
 
-        List<Attribute> candidateAttributes = conference.getChannelBundles().stream()
-                .filter(x -> Objects.equals(x.getId(), endpoint))
+        List<Attribute> candidateAttributes = Stream.ofNullable(index.getChannelBundle(endpoint))
                 .flatMap(x -> x.getTransport().getCandidates().stream()
                         .map(candidate ->
                                 CandidateAttribute.builder()
                                         .foundation(candidate.getFoundation())
                                         .componentId(candidate.getComponent())
-                                        .transport(gson.toJsonTree(candidate.getProtocol()).getAsString())
+                                        .transport(getSerializedName(candidate.getProtocol()))
                                         .priority(candidate.getPriority())
                                         .address(candidate.getIp())
                                         .port(candidate.getPort())
-                                        .type(gson.toJsonTree(candidate.getType()).getAsString())
+                                        .type(getSerializedName(candidate.getType()))
                                         .relAddr(candidate.getRelAddr())
                                         .relPort(candidate.getRelPort())
                                         .extensions(Collections.singletonList(new CandidateAttribute.Extension("generation", candidate.getGeneration())))
@@ -94,10 +186,8 @@ public class SdpUtils {
                         ))
                 .collect(Collectors.toList());
 
-        Transport transport = conference.getChannelBundles().stream()
-                .filter(x -> Objects.equals(x.getId(), endpoint))
+        Transport transport = Optional.ofNullable(index.getChannelBundle(endpoint))
                 .map(ChannelBundle::getTransport)
-                .findFirst()
                 .orElseThrow(() -> new NoSuchElementException(String.format("Can not find channel bundle for endpoint(%s) in conference:\n%s", endpoint, gson.toJson(conference))));
 
         List<Attribute> transportAttributes = List.of(
@@ -106,77 +196,30 @@ public class SdpUtils {
                 new FingerprintAttribute(transport.getFingerprints().get(0).getHash(), transport.getFingerprints().get(0).getFingerprint()),
                 new SetupAttribute(transport.getFingerprints().get(0).getSetup())
         );
-        Attribute rtcpMuxAttribute = transport.isRtcpMux() ? new BaseAttribute("rtcp-mux") : NullAttribute.INSTANCE;
-
-        RealTimeControlProtocolAttribute rtcpAttribute = RealTimeControlProtocolAttribute.builder()
-                .port(1)
-                .netType("IN")
-                .addrType("IP4")
-                .address("0.0.0.0")
-                .build();
-
-        List<Connection> connections = Collections.singletonList(new Connection("IN", "IP4", "0.0.0.0"));
+        // the same in every media of the offer
+        Attribute mediaTransportAttributes = new RenderedAttributes(Stream.concat(
+                Stream.of(transport.isRtcpMux() ? new BaseAttribute("rtcp-mux") : NullAttribute.INSTANCE),
+                candidateAttributes.stream()
+        ).collect(Collectors.toList()));
 
         Function<String, MediaDescription.MediaDescriptionBuilder> audioMediaBuilderSupplier = (direction) ->
                 MediaDescription.builder()
                         .media("audio")
                         .port(1)
-                        .proto(List.of("RTP", "SAVPF"))
+                        .proto(RTP_PROTO)
                         .format(111)
-                        .connections(connections)
-                        .attribute(rtcpAttribute)
-                        .attributes(List.of(
-                                new BaseAttribute(direction),
-                                RTPMapAttribute.builder().format(111).name("opus").rate(48000).parameters("2").build(),
-                                FormatAttribute.builder()
-                                        .format(111)
-                                        .parameters(Map.of(
-                                                "minptime", "10",
-                                                "useinbandfec", "1",
-                                                "stereo", "0"))
-                                        .build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(111).type("transport-cc").build(),
-                                new BaseAttribute("extmap", "1 urn:ietf:params:rtp-hdrext:ssrc-audio-level"),
-                                new BaseAttribute("extmap", "5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
-                        ));
+                        .connections(CONNECTIONS)
+                        .attribute(AUDIO_ATTRIBUTES.get(direction));
 
         Function<String, MediaDescription.MediaDescriptionBuilder> videoMediaBuilderSupplier = (direction) ->
                 MediaDescription.builder()
                         .media("video")
                         .port(1)
-                        .proto(List.of("RTP", "SAVPF"))
-                        .connections(connections)
-                        .attribute(rtcpAttribute)
-                        .attribute(new BaseAttribute(direction))
+                        .proto(RTP_PROTO)
+                        .connections(CONNECTIONS)
                         .format(100)
                         .format(96)
-                        .attributes(List.of(
-                                RTPMapAttribute.builder().format(100).name("VP8").rate(90000).build(),
-                                RTPMapAttribute.builder().format(96).name("rtx").rate(90000).build(),
-                                FormatAttribute.builder()
-                                        .format(100)
-                                        .parameters(Map.of(
-                                                "max-fr", "30",
-                                                "max-recv-width", "360",
-                                                "max-recv-height", "360"
-                                        ))
-                                        .build(),
-                                FormatAttribute.builder()
-                                        .format(96)
-                                        .parameters(Map.of("apt", "100"))
-                                        .build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("ccm").subtype("fir").build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("nack").build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("nack").subtype("pli").build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(100).type("transport-cc").build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(96).type("ccm").subtype("fir").build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(96).type("nack").build(),
-                                RealTimeControlProtocolFeedbackAttribute.builder().format(96).type("nack").subtype("pli").build()
-                        ))
-                        .attributes(List.of(
-                                new BaseAttribute("extmap", "3 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time"),
-                                new BaseAttribute("extmap", "5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01")
-                        ));
+                        .attribute(VIDEO_ATTRIBUTES.get(direction));
 
         GroupAttribute.GroupAttributeBuilder groupAttributeBuilder = GroupAttribute.builder().semantics("BUNDLE");
         MsidSemanticAttribute.MsidSemanticAttributeBuilder msidSemanticAttributeBuilder = MsidSemanticAttribute.builder().semanticToken(" WMS");
@@ -201,7 +244,7 @@ public class SdpUtils {
                         .port(1)
                         .proto(List.of("DTLS", "SCTP"))
                         .format(5000)
-                        .connections(List.of(new Connection("IN", "IP4", "0.0.0.0")))
+                        .connections(CONNECTIONS)
                         .attributes(List.of(
                                 SCTPMapAttribute.builder()
                                         .number(5000)
@@ -211,8 +254,7 @@ public class SdpUtils {
                                 new BaseAttribute("sendrecv"),
                                 new MidAttribute(groupAttributeBuilder, "data-" + conference.getId() + "-" + sctpConnection.getId())
                         ))
-                        .attribute(rtcpMuxAttribute)
-                        .attributes(candidateAttributes)
+                        .attribute(mediaTransportAttributes)
                         .build());
 
         if (primaryAudioChannel != null) {
@@ -229,16 +271,14 @@ public class SdpUtils {
                     .attribute(new MsidAttribute(msidSemanticAttributeBuilder, "mixedmslabel", "audio"))
 //                    .attributes(ssrcGroupAttributes)
                     .attributes(ssrcAttributes)
-                    .attribute(rtcpMuxAttribute)
-                    .attributes(candidateAttributes)
+                    .attribute(mediaTransportAttributes)
                     .build()
             );
         } else {
             sdpBuilder.media(audioMediaBuilderSupplier.apply("inactive")
                     .attribute(new MidAttribute(groupAttributeBuilder, "audio-fake"))
                     .attribute(new MsidAttribute(msidSemanticAttributeBuilder, "fakemslabel", "audio"))
-                    .attribute(rtcpMuxAttribute)
-                    .attributes(candidateAttributes)
+                    .attribute(mediaTransportAttributes)
                     .build());
         }
 
@@ -256,16 +296,14 @@ public class SdpUtils {
                     .attribute(new MsidAttribute(msidSemanticAttributeBuilder, "mixedmslabel", "video"))
 //                    .attributes(ssrcGroupAttributes)
                     .attributes(ssrcAttributes)
-                    .attribute(rtcpMuxAttribute)
-                    .attributes(candidateAttributes)
+                    .attribute(mediaTransportAttributes)
                     .build()
             );
         } else {
             sdpBuilder.media(videoMediaBuilderSupplier.apply("inactive")
                     .attribute(new MidAttribute(groupAttributeBuilder, "video-fake"))
                     .attribute(new MsidAttribute(msidSemanticAttributeBuilder, "fakemslabel", "video"))
-                    .attribute(rtcpMuxAttribute)
-                    .attributes(candidateAttributes)
+                    .attribute(mediaTransportAttributes)
                     .build()
             );
         }
@@ -284,8 +322,7 @@ public class SdpUtils {
                                 )
                         ))
                 .peek(x -> x.getValue()
-                        .attribute(rtcpMuxAttribute)
-                        .attributes(candidateAttributes)
+                        .attribute(mediaTransportAttributes)
                         .attribute(new MsidAttribute(msidSemanticAttributeBuilder, x.getKey().getEndpoint(), x.getKey().getId())))
                 .peek(x -> Stream.ofNullable(x.getKey().getSsrcGroups())
                         .flatMap(Collection::stream)
@@ -364,6 +401,48 @@ public class SdpUtils {
         return sdpBuilder.build();
     }
 
+    /**
+     * @param prevSdpSections sections of the previous offer the new one has been made for
+     */
+    public OfferDelta toOfferDelta(SessionDescription offer, String conferenceId, String[] prevSdpSections) {
+        List<OfferDelta.Section> sections = new ArrayList<>();
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < offer.getMedias().size(); i++) {
+            MediaDescription media = offer.getMedias().get(i);
+            stringBuilder.setLength(0);
+            try (SdpWriter writer = SdpWriter.of(stringBuilder, 1024)) {
+                media.write(writer);
+            }
+            String sdp = stringBuilder.toString();
+            // the first one is the session section
+            String prevSection = i + 1 < prevSdpSections.length ? prevSdpSections[i + 1] : null;
+            OfferDelta.Change change;
+            if (prevSection == null) {
+                change = OfferDelta.Change.ADDED;
+            } else if (sdp.startsWith(prevSection) && sdp.length() == (prevSection.endsWith("\r\n") ? prevSection.length() : prevSection.length() + 2)) {
+                continue;
+            } else if (media.getPort() == 0) {
+                change = OfferDelta.Change.REMOVED;
+            } else if (prevSection.startsWith(" 0 ", prevSection.indexOf(' '))) {
+                change = OfferDelta.Change.REUSED;
+            } else {
+                change = OfferDelta.Change.CHANGED;
+            }
+            sections.add(OfferDelta.Section.builder()
+                    .index(i)
+                    .change(change)
+                    .sdp(sdp)
+                    .build());
+        }
+        return OfferDelta.builder()
+                .conferenceId(conferenceId)
+                .sessionVersion(offer.getOrigin().getSessVersion())
+                .sessionDetails(offer.toDetailsOnlyString())
+                .mediaCount(offer.getMedias().size())
+                .sections(sections)
+                .build();
+    }
+
     public String[] splitSdpIntoSections(String sdp) {
         if (!sdp.contains("\r\n")) {
             throw new BadSdpException("SDP must contain correct line delimiter `\\r\\n`");
@@ -9,6 +9,7 @@ import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,53 +19,40 @@ public class VideobridgeConferenceUtils {
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    private Channel getPrimaryChannel(Conference conf, String contentName, String endpoint) {
-        return conf.getContents().stream()
-                .filter(x -> contentName.equals(x.getName()))
-                .map(Content::getChannels)
-                .flatMap(Collection::stream)
-                .filter(x -> x instanceof Channel)
-                .map(x -> (Channel) x)
-                .filter(x -> endpoint.equals(x.getEndpoint()))
+    private Channel getPrimaryChannel(ConferenceIndex index, String contentName, String endpoint) {
+        return index.getChannels(endpoint, contentName).stream()
                 .findFirst().orElse(null);
     }
 
-    private List<Channel> getNonPrimaryChannels(Conference conf, String contentName, String exceptEndpoint) {
-        return conf.getContents().stream()
-                .filter(x -> contentName.equals(x.getName()))
-                .map(Content::getChannels)
-                .flatMap(Collection::stream)
-                .filter(x -> x instanceof Channel)
-                .map(x -> (Channel) x)
+    private boolean isReceivable(Channel channel) {
+        return channel.getDirection() == Channel.Direction.SENDRECV || channel.getDirection() == Channel.Direction.RECVONLY;
+    }
+
+    private List<Channel> getNonPrimaryChannels(ConferenceIndex index, String contentName, String exceptEndpoint) {
+        return index.getSendingChannels(contentName).stream()
                 .filter(x -> !exceptEndpoint.equalsIgnoreCase(x.getEndpoint()))
-                .filter(channel -> channel.getDirection() == Channel.Direction.SENDRECV || channel.getDirection() == Channel.Direction.RECVONLY)
-                .filter(channel -> channel.getSsrcs() != null && channel.getSsrcs().size() > 0)
+                .filter(VideobridgeConferenceUtils::isReceivable)
                 .collect(Collectors.toList());
     }
 
     public VideobridgeConferenceOffer toVideobridgeConference(String videobridgeId, Conference conference, String endpoint) {
-        if (conference.getEndpoints().stream().noneMatch(x -> Objects.equals(x.getId(), endpoint))) {
+        ConferenceIndex index = ConferenceIndex.of(conference);
+        if (!index.hasEndpoint(endpoint)) {
             throw new EndpointNotFound();
         }
 
-        SctpConnection sctpConnection = conference.getContents().stream()
-                .filter(x -> "data".equals(x.getName()))
-                .map(Content::getSctpConnections)
-                .flatMap(Collection::stream)
-                .filter(x -> Objects.equals(endpoint, x.getEndpoint()))
+        SctpConnection sctpConnection = index.getSctpConnections(endpoint).stream()
                 .findFirst()
                 .orElseThrow(() -> new NoSuchElementException(String.format("Can not find sctp connection for endpoint(%s) in conference:\n%s", endpoint, gson.toJson(conference))));
 
-        Channel primaryAudioChannel = getPrimaryChannel(conference, "audio", endpoint);
-        Channel primaryVideoChannel = getPrimaryChannel(conference, "video", endpoint);
+        Channel primaryAudioChannel = getPrimaryChannel(index, "audio", endpoint);
+        Channel primaryVideoChannel = getPrimaryChannel(index, "video", endpoint);
 
-        List<Channel> anotherAudioChannels = getNonPrimaryChannels(conference, "audio", endpoint);
-        List<Channel> anotherVideoChannels = getNonPrimaryChannels(conference, "video", endpoint);
+        List<Channel> anotherAudioChannels = getNonPrimaryChannels(index, "audio", endpoint);
+        List<Channel> anotherVideoChannels = getNonPrimaryChannels(index, "video", endpoint);
 
-        Transport transport = conference.getChannelBundles().stream()
-                .filter(x -> Objects.equals(x.getId(), endpoint))
+        Transport transport = Optional.ofNullable(index.getChannelBundle(endpoint))
                 .map(ChannelBundle::getTransport)
-                .findFirst()
                 .orElseThrow(() -> new NoSuchElementException(String.format("Can not find channel bundle for endpoint(%s) in conference:\n%s", endpoint, gson.toJson(conference))));
 
         return VideobridgeConferenceOffer.builder()
@@ -112,15 +100,7 @@ public class VideobridgeConferenceUtils {
                                 .build()
                 )
                 .audioChannels(anotherAudioChannels.stream()
-                        .map(x -> VideobridgeChannel.builder()
-                                .id(x.getId())
-                                .endpoint(x.getEndpoint())
-                                .ssrcs(x.getSsrcs())
-                                .ssrcGroups(Stream.ofNullable(x.getSsrcGroups()).flatMap(Collection::stream)
-                                        .map(g -> new VideobridgeSsrcGroup(g.getSemantics(), g.getSources()))
-                                        .collect(Collectors.toList())
-                                )
-                                .build())
+                        .map(VideobridgeConferenceUtils::convertToVideobridgeAudioChannel)
                         .collect(Collectors.toList())
                 )
                 .videoChannels(anotherVideoChannels.stream()
@@ -137,6 +117,18 @@ public class VideobridgeConferenceUtils {
                 .build();
     }
 
+    private static VideobridgeChannel convertToVideobridgeAudioChannel(Channel ch) {
+        return VideobridgeChannel.builder()
+                .id(ch.getId())
+                .endpoint(ch.getEndpoint())
+                .ssrcs(ch.getSsrcs())
+                .ssrcGroups(Stream.ofNullable(ch.getSsrcGroups()).flatMap(Collection::stream)
+                        .map(g -> new VideobridgeSsrcGroup(g.getSemantics(), g.getSources()))
+                        .collect(Collectors.toList())
+                )
+                .build();
+    }
+
     private static VideobridgeChannel convertToVideobridgeChannel(Channel ch) {
         VideobridgeChannel.VideobridgeChannelBuilder builder = VideobridgeChannel.builder()
                 .id(ch.getId())
@@ -168,47 +160,98 @@ public class VideobridgeConferenceUtils {
         return builder.ssrcs(ssrcs).ssrcGroups(ssrcGroups).build();
     }
 
-    private static void copyChannels(Conference source, Conference target, String contentName, Set<String> endpointsToCopy) {
-        if(source.getContents() == null) return;
-        Content content = target.getContents().stream()
+    private static Content findContent(Conference conference, String contentName) {
+        Content content = conference.getContents().stream()
                 .filter(x -> Objects.equals(contentName, x.getName()))
                 .findFirst().orElseThrow();
         if(content.getChannels().size() == 0) {
-            String otherContents = target.getContents().stream()
+            String otherContents = conference.getContents().stream()
                     .filter(x -> !Objects.equals(contentName, x.getName()))
                     .map(x -> String.format("%s(channels=[%s])", x.getName(), x.getChannels().stream()
                             .map(ChannelCommon::getId)
                             .distinct()
                             .collect(Collectors.joining(", "))))
                     .collect(Collectors.joining(", "));
-            log.warn("No channels in content(name={}). Other contents [{}]. Conference(id={})", contentName, otherContents, target.getId());
+            log.warn("No channels in content(name={}). Other contents [{}]. Conference(id={})", contentName, otherContents, conference.getId());
         }
-        List<ChannelCommon> channels = new ArrayList<>(content.getChannels());
-        channels.addAll(source.getContents().stream()
-                        .filter(x -> contentName.equals(x.getName()))
-                        .flatMap(x -> x.getChannels().stream())
-                        .filter(x -> !"octo".equals(x.getId()))
-                        .map(Channel.class::cast)
-                        .filter(x -> endpointsToCopy.contains(x.getEndpoint()))
-                        .collect(Collectors.toList())
-                );
-        content.setChannels(channels);
+        return content;
+    }
+
+    private static List<SpeakersChannels.SpeakerChannel> toSpeakerChannels(
+            ConferenceIndex index,
+            String contentName,
+            Map<String, UUID> primaryEndpoints,
+            Function<Channel, VideobridgeChannel> converter
+    ) {
+        return index.getSendingChannels(contentName).stream()
+                .filter(x -> !"octo".equals(x.getId()))
+                .filter(x -> x.getEndpoint() != null && primaryEndpoints.containsKey(x.getEndpoint()))
+                .filter(VideobridgeConferenceUtils::isReceivable)
+                .map(x -> new SpeakersChannels.SpeakerChannel(primaryEndpoints.get(x.getEndpoint()), converter.apply(x)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Converts the channels of the primary speaker endpoints, the same for every listener of the conference.
+     */
+    public SpeakersChannels toSpeakersChannels(List<Conference> confForSpeakers) {
+        if (confForSpeakers.stream().allMatch(x -> x.getContents() == null)) {
+            return SpeakersChannels.WITHOUT_CONTENTS;
+        }
+        List<SpeakersChannels.SpeakerChannel> audioChannels = new ArrayList<>();
+        List<SpeakersChannels.SpeakerChannel> videoChannels = new ArrayList<>();
+        for (Conference confForSpeaker : confForSpeakers) {
+            if (confForSpeaker.getContents() == null) {
+                continue;
+            }
+            Map<String, UUID> primaryEndpoints = new HashMap<>();
+            confForSpeaker.getEndpoints().stream()
+                    .filter(x -> "primary".equals(x.getDisplayName()))
+                    .forEach(x -> primaryEndpoints.putIfAbsent(x.getId(), x.getUuid()));
+            ConferenceIndex index = ConferenceIndex.of(confForSpeaker);
+            audioChannels.addAll(toSpeakerChannels(index, "audio", primaryEndpoints, VideobridgeConferenceUtils::convertToVideobridgeAudioChannel));
+            videoChannels.addAll(toSpeakerChannels(index, "video", primaryEndpoints, VideobridgeConferenceUtils::convertToVideobridgeChannel));
+        }
+        return new SpeakersChannels(true, List.copyOf(audioChannels), List.copyOf(videoChannels));
+    }
+
+    private static List<VideobridgeChannel> withSpeakerChannels(
+            List<VideobridgeChannel> channels,
+            List<SpeakersChannels.SpeakerChannel> speakerChannels,
+            Set<UUID> listenerEndpoints,
+            String endpoint
+    ) {
+        List<VideobridgeChannel> result = new ArrayList<>(channels.size() + speakerChannels.size());
+        result.addAll(channels);
+        for (SpeakersChannels.SpeakerChannel speakerChannel : speakerChannels) {
+            if (listenerEndpoints.contains(speakerChannel.getEndpointUuid()) && !endpoint.equalsIgnoreCase(speakerChannel.getChannel().getEndpoint())) {
+                result.add(speakerChannel.getChannel());
+            }
+        }
+        return result;
     }
 
     public VideobridgeConferenceOffer toVideobridgeConference(String videobridgeId, Conference confForListener, List<Conference> confForSpeakers, String endpoint) {
+        return toVideobridgeConference(videobridgeId, confForListener, toSpeakersChannels(confForSpeakers), endpoint);
+    }
+
+    /**
+     * Only the channels of the speakers known to the listener's videobridge are added to the listener's own offer.
+     */
+    public VideobridgeConferenceOffer toVideobridgeConference(String videobridgeId, Conference confForListener, SpeakersChannels speakersChannels, String endpoint) {
+        if (!speakersChannels.isWithContents()) {
+            return toVideobridgeConference(videobridgeId, confForListener, endpoint);
+        }
         Set<UUID> listenerEndpoints = confForListener.getEndpoints().stream()
                 .map(Endpoint::getUuid)
                 .collect(Collectors.toSet());
-        for (Conference confForSpeaker : confForSpeakers) {
-            Set<String> primaryEndpoints = confForSpeaker.getEndpoints().stream()
-                    .filter(x -> "primary".equals(x.getDisplayName()))
-                    .filter(x -> listenerEndpoints.contains(x.getUuid()))
-                    .map(Endpoint::getId)
-                    .collect(Collectors.toSet());
-            copyChannels(confForSpeaker, confForListener, "audio", primaryEndpoints);
-            copyChannels(confForSpeaker, confForListener, "video", primaryEndpoints);
-        }
-        return toVideobridgeConference(videobridgeId, confForListener, endpoint);
+        // both contents are expected in the listener conference
+        findContent(confForListener, "audio");
+        findContent(confForListener, "video");
+        VideobridgeConferenceOffer offer = toVideobridgeConference(videobridgeId, confForListener, endpoint);
+        offer.setAudioChannels(withSpeakerChannels(offer.getAudioChannels(), speakersChannels.getAudioChannels(), listenerEndpoints, endpoint));
+        offer.setVideoChannels(withSpeakerChannels(offer.getVideoChannels(), speakersChannels.getVideoChannels(), listenerEndpoints, endpoint));
+        return offer;
     }
 
 }
@@ -0,0 +1,26 @@
+package com.connectclub.jvbuster.videobridge.data;
+
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+@Getter
+@ToString(exclude = "conference")
+@AllArgsConstructor
+public class ConferenceSnapshot {
+    // grows with every request to the videobridge, a response never replaces a snapshot of a later request
+    private final long version;
+    private final String instanceId;
+    private final long timestampInNanos;
+    // null if the snapshot has been invalidated
+    private final Conference conference;
+    // version of the conference gid whose changes the snapshot is known to have, -1 if it is not known
+    private final long conferenceVersion;
+
+    public long getAgeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timestampInNanos);
+    }
+}
@@ -0,0 +1,33 @@
+package com.connectclub.jvbuster.videobridge.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Pending removal of an endpoint from the conferences it has been added to, stored in redis.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class EndpointTeardown {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Target {
+        private String instanceId;
+        private String jvbConferenceId;
+        private String confId;
+        private String gid;
+    }
+
+    private String endpoint;
+    private List<Target> targets;
+    private int attempts;
+}
@@ -0,0 +1,44 @@
+package com.connectclub.jvbuster.videobridge.data;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Difference of an offer from the previous one of the client. The offer is the session details followed by
+ * mediaCount media sections, each one is either the section of the same index in the previous offer or the one
+ * given here.
+ */
+@Builder
+@Getter
+@ToString
+public class OfferDelta {
+
+    public enum Change {
+        // after the last section of the previous offer
+        ADDED,
+        // disabled, the slot may be reused later
+        REMOVED,
+        // a disabled slot of the previous offer is taken by a new channel
+        REUSED,
+        CHANGED
+    }
+
+    @Builder
+    @Getter
+    @ToString
+    public static class Section {
+        // index of the media section, starting from 0
+        private final int index;
+        private final Change change;
+        private final String sdp;
+    }
+
+    private final String conferenceId;
+    private final long sessionVersion;
+    private final String sessionDetails;
+    private final int mediaCount;
+    private final List<Section> sections;
+}
@@ -0,0 +1,51 @@
+package com.connectclub.jvbuster.videobridge.data;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The attributes of an SDP answer the videobridges need, the first occurrence wins for single valued ones.
+ */
+@Getter
+@Setter
+public class SdpAnswer {
+
+    @Getter
+    @Setter
+    public static class Section {
+        // null for the session section
+        private String media;
+        private boolean sendrecv;
+        private String mid;
+        private final List<Long> ssrcs = new ArrayList<>();
+        private final List<Map.Entry<String, List<Long>>> ssrcGroups = new ArrayList<>();
+        private final List<Answer.Candidate> candidates = new ArrayList<>();
+        private String iceUfrag;
+        private String icePwd;
+        private String fingerprint;
+        private String setup;
+    }
+
+    private String sessionDetails;
+
+    private final Section session = new Section();
+
+    private final List<Section> medias = new ArrayList<>();
+
+    /**
+     * @return the first media section of the type matching the condition or null
+     */
+    public Section findMedia(String media, Predicate<Section> condition) {
+        for (Section section : medias) {
+            if (media.equals(section.getMedia()) && condition.test(section)) {
+                return section;
+            }
+        }
+        return null;
+    }
+}
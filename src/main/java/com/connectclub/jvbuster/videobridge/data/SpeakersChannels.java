@@ -0,0 +1,30 @@
+package com.connectclub.jvbuster.videobridge.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sending channels of the primary speaker endpoints, converted once and shared by the offers of all the listeners
+ * of the conference. The channels must not be modified.
+ */
+@Getter
+@AllArgsConstructor
+public class SpeakersChannels {
+
+    public static final SpeakersChannels WITHOUT_CONTENTS = new SpeakersChannels(false, List.of(), List.of());
+
+    @Getter
+    @AllArgsConstructor
+    public static class SpeakerChannel {
+        private final UUID endpointUuid;
+        private final VideobridgeChannel channel;
+    }
+
+    // false if none of the speaker conferences has contents, a listener gets only its own channels then
+    private final boolean withContents;
+    private final List<SpeakerChannel> audioChannels;
+    private final List<SpeakerChannel> videoChannels;
+}
@@ -0,0 +1,57 @@
+package com.connectclub.jvbuster.videobridge.data;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.*;
+
+/**
+ * Remote endpoints the offer of a client is limited to, the channels of the other endpoints get no media section.
+ * A section of the previous offer left without its channel is disabled and may be reused by a subscribed one.
+ */
+@Builder
+@Getter
+@ToString
+public class Subscription {
+
+    public static final Subscription ALL = Subscription.builder().build();
+
+    // null for every endpoint
+    private final Set<String> endpoints;
+    // max number of the subscribed endpoints, null for no limit
+    private final Integer limit;
+
+    public boolean isAll() {
+        return endpoints == null && limit == null;
+    }
+
+    /**
+     * @param remoteEndpoints endpoints having channels in the conference, in the order of the conference
+     * @param offeredEndpoints endpoints of the previous offer, they are kept first when the limit is exceeded
+     */
+    public Set<String> select(Collection<String> remoteEndpoints, Set<String> offeredEndpoints) {
+        List<String> candidates = new ArrayList<>(remoteEndpoints.size());
+        for (String endpoint : remoteEndpoints) {
+            if (endpoints == null || endpoints.contains(endpoint)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (limit == null || candidates.size() <= limit) {
+            return new HashSet<>(candidates);
+        }
+        Set<String> result = new HashSet<>();
+        for (String endpoint : candidates) {
+            if (result.size() < limit && offeredEndpoints.contains(endpoint)) {
+                result.add(endpoint);
+            }
+        }
+        for (String endpoint : candidates) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(endpoint);
+        }
+        return result;
+    }
+}
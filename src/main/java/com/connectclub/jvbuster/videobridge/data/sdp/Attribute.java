@@ -5,12 +5,20 @@ public abstract class Attribute {
 
     public abstract String getValue();
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        stringBuilder.append("a=").append(getField());
+    public void write(SdpWriter writer) {
+        writer.append("a=").append(getField());
+        writeValue(writer);
+        writer.endLine();
+    }
+
+    /**
+     * Writes ':' and the value if there is one. Overridden by the attributes written for every channel,
+     * so their values are not built as strings.
+     */
+    protected void writeValue(SdpWriter writer) {
         String value = getValue();
         if (value != null) {
-            stringBuilder.append(":").append(value);
+            writer.append(':').append(value);
         }
-        return stringBuilder.append("\r\n");
     }
 }
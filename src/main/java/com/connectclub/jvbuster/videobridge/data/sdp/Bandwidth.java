@@ -14,7 +14,7 @@ public class Bandwidth {
     private String type;
     private long bandwidth;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder.append("b=").append(type).append(":").append(bandwidth).append("\r\n");
+    public void write(SdpWriter writer) {
+        writer.append("b=").append(type).append(':').append(bandwidth).endLine();
     }
 }
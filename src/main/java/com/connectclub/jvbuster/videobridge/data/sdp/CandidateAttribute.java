@@ -59,4 +59,23 @@ public class CandidateAttribute extends Attribute {
         return stringBuilder.toString();
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(foundation).append(' ')
+                .append(componentId).append(' ')
+                .append(transport).append(' ')
+                .append(priority).append(' ')
+                .append(address).append(' ')
+                .append(port).append(" typ ").append(type);
+        if (relAddr != null) {
+            writer.append(" raddr ").append(relAddr);
+        }
+        if (relPort != null) {
+            writer.append(" rport ").append(relPort);
+        }
+        for (Extension ext : extensions) {
+            writer.append(' ').append(ext.name).append(' ').append(ext.value);
+        }
+    }
+
 }
@@ -13,11 +13,11 @@ public class Connection {
     private String addrType;
     private String address;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder.append("c=")
-                .append(netType).append(" ")
-                .append(addrType).append(" ")
-                .append(address).append("\r\n");
+    public void write(SdpWriter writer) {
+        writer.append("c=")
+                .append(netType).append(' ')
+                .append(addrType).append(' ')
+                .append(address).endLine();
     }
 
 }
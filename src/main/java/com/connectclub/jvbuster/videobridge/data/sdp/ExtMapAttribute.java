@@ -26,4 +26,16 @@ public class ExtMapAttribute extends Attribute {
         return id + (direction != null ? "/" + direction : "") + " " + name + (attributes != null ? " " + attributes : "");
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(id);
+        if (direction != null) {
+            writer.append('/').append(direction);
+        }
+        writer.append(' ').append(name);
+        if (attributes != null) {
+            writer.append(' ').append(attributes);
+        }
+    }
+
 }
@@ -22,4 +22,9 @@ public class FingerprintAttribute extends Attribute {
         return hashFunc + " " + fingerprint;
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(hashFunc).append(' ').append(fingerprint);
+    }
+
 }
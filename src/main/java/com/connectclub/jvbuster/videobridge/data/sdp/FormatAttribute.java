@@ -5,6 +5,7 @@ import lombok.*;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Getter
@@ -48,4 +49,17 @@ public class FormatAttribute extends Attribute {
         return string.toString();
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(format);
+        boolean first = true;
+        for (Map.Entry<String, String> entry : parameters.size() > 1 ? new TreeMap<>(parameters).entrySet() : parameters.entrySet()) {
+            writer.append(first ? " " : "; ").append(entry.getKey());
+            first = false;
+            if (entry.getValue() != null) {
+                writer.append('=').append(entry.getValue());
+            }
+        }
+    }
+
 }
@@ -31,4 +31,12 @@ public class GroupAttribute extends Attribute {
         return value.toString();
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(semantics);
+        for (String tag : tags) {
+            writer.append(' ').append(tag);
+        }
+    }
+
 }
\ No newline at end of file
@@ -13,8 +13,8 @@ public class Information {
 
     private String text;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder.append("i=").append(text).append("\r\n");
+    public void write(SdpWriter writer) {
+        writer.append("i=").append(text).endLine();
     }
 
 }
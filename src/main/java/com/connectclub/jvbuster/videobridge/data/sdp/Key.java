@@ -14,12 +14,12 @@ public class Key {
     private String type;
     private String key;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        stringBuilder.append("k=");
+    public void write(SdpWriter writer) {
+        writer.append("k=");
         if (key != null) {
-            stringBuilder.append(key).append(" ");
+            writer.append(key).append(' ');
         }
-        return stringBuilder.append(type).append("\r\n");
+        writer.append(type).endLine();
     }
 
 }
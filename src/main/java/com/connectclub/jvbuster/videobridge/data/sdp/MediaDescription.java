@@ -27,40 +27,39 @@ public class MediaDescription {
     private List<Attribute> attributes;
     private Key key;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        stringBuilder.append("m=").append(media).append(" ").append(port);
+    public void write(SdpWriter writer) {
+        writer.append("m=").append(media).append(' ').append(port);
         if (numberOfPorts != null) {
-            stringBuilder.append("/").append(numberOfPorts);
+            writer.append('/').append(numberOfPorts);
         }
-        stringBuilder.append(" ");
+        writer.append(' ');
         boolean first = true;
         for (String p : proto) {
             if (!first) {
-                stringBuilder.append("/");
+                writer.append('/');
             } else {
                 first = false;
             }
-            stringBuilder.append(p);
+            writer.append(p);
         }
         for (Integer f : formats) {
-            stringBuilder.append(" ").append(f);
+            writer.append(' ').append(f);
         }
-        stringBuilder.append("\r\n");
+        writer.endLine();
         if (information != null) {
-            information.append(stringBuilder);
+            information.write(writer);
         }
         for (Connection c : connections) {
-            c.append(stringBuilder);
+            c.write(writer);
         }
         if (bandwidth != null) {
-            bandwidth.append(stringBuilder);
+            bandwidth.write(writer);
         }
         if (key != null) {
-            key.append(stringBuilder);
+            key.write(writer);
         }
         for (Attribute b : attributes) {
-            b.append(stringBuilder);
+            b.write(writer);
         }
-        return stringBuilder;
     }
 }
@@ -25,6 +25,11 @@ public class MsidAttribute extends Attribute {
         return streamId + " " + trackId;
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(streamId).append(' ').append(trackId);
+    }
+
     public MsidAttribute(MsidSemanticAttribute.MsidSemanticAttributeBuilder msidSemanticAttributeBuilder, String streamId, String trackId) {
         this(streamId, trackId);
         msidSemanticAttributeBuilder.stream(streamId);
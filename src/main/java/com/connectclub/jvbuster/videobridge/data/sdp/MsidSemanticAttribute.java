@@ -32,4 +32,12 @@ public class MsidSemanticAttribute extends Attribute {
                 streams.stream()
         ).collect(Collectors.joining(" "));
     }
+
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(semanticToken);
+        for (String stream : streams) {
+            writer.append(' ').append(stream);
+        }
+    }
 }
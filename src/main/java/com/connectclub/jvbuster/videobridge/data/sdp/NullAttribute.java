@@ -17,7 +17,7 @@ public class NullAttribute extends Attribute {
         return null;
     }
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder;
+    @Override
+    public void write(SdpWriter writer) {
     }
 }
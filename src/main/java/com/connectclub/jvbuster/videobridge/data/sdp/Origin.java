@@ -16,14 +16,14 @@ public class Origin {
     private String addrtype;
     private String address;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder.append("o=")
-                .append(username).append(" ")
-                .append(sessId).append(" ")
-                .append(sessVersion).append(" ")
-                .append(nettype).append(" ")
-                .append(addrtype).append(" ")
-                .append(address).append("\r\n");
+    public void write(SdpWriter writer) {
+        writer.append("o=")
+                .append(username).append(' ')
+                .append(sessId).append(' ')
+                .append(sessVersion).append(' ')
+                .append(nettype).append(' ')
+                .append(addrtype).append(' ')
+                .append(address).endLine();
     }
 
 }
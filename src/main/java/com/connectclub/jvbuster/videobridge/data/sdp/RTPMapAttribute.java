@@ -24,4 +24,12 @@ public class RTPMapAttribute extends Attribute {
         return format.toString() + " " + name + "/" + rate + (parameters!=null ? "/" + parameters : "" );
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(format).append(' ').append(name).append('/').append(rate);
+        if (parameters != null) {
+            writer.append('/').append(parameters);
+        }
+    }
+
 }
@@ -25,4 +25,12 @@ public class RealTimeControlProtocolFeedbackAttribute extends Attribute {
     public String getValue() {
         return format + " " + type + (StringUtils.isNoneBlank(subtype) ? " " + subtype : "");
     }
+
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(format).append(' ').append(type);
+        if (StringUtils.isNoneBlank(subtype)) {
+            writer.append(' ').append(subtype);
+        }
+    }
 }
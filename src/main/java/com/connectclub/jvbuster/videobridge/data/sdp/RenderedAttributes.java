@@ -0,0 +1,42 @@
+package com.connectclub.jvbuster.videobridge.data.sdp;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Attributes rendered to SDP text once, for the blocks repeated in many medias. Written as is.
+ */
+@Getter
+public class RenderedAttributes extends Attribute {
+
+    private final List<Attribute> attributes;
+
+    private final String text;
+
+    public RenderedAttributes(List<Attribute> attributes) {
+        this.attributes = List.copyOf(attributes);
+        StringBuilder stringBuilder = new StringBuilder();
+        try (SdpWriter writer = SdpWriter.of(stringBuilder, 0)) {
+            for (Attribute attribute : this.attributes) {
+                attribute.write(writer);
+            }
+        }
+        this.text = stringBuilder.toString();
+    }
+
+    @Override
+    public String getField() {
+        return null;
+    }
+
+    @Override
+    public String getValue() {
+        return null;
+    }
+
+    @Override
+    public void write(SdpWriter writer) {
+        writer.append(text);
+    }
+}
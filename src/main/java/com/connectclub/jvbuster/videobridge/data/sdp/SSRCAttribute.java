@@ -25,4 +25,12 @@ public class SSRCAttribute extends Attribute {
         return SSRC + " " + attrField + (attrValue != null ? ":" + attrValue : "");
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(SSRC).append(' ').append(attrField);
+        if (attrValue != null) {
+            writer.append(':').append(attrValue);
+        }
+    }
+
 }
@@ -30,4 +30,12 @@ public class SSRCGroupAttribute extends Attribute {
         return value;
     }
 
+    @Override
+    protected void writeValue(SdpWriter writer) {
+        writer.append(':').append(semantics);
+        for (Long id : SSRCIds) {
+            writer.append(' ').append(id);
+        }
+    }
+
 }
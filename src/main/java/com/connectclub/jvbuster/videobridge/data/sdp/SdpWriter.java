@@ -0,0 +1,150 @@
+package com.connectclub.jvbuster.videobridge.data.sdp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes SDP to a Writer through a char buffer, the numbers are written without building strings. The buffer
+ * is reused by the next writer of the same thread once this one is closed, closing does not close the Writer.
+ */
+public class SdpWriter implements AutoCloseable {
+
+    private final static int MIN_BUFFER_SIZE = 64;
+    private final static int MAX_BUFFER_SIZE = 16 * 1024;
+
+    private final static ThreadLocal<char[]> buffers = new ThreadLocal<>();
+
+    private final Writer writer;
+    private char[] buffer;
+    private int position;
+    private long written;
+
+    /**
+     * @param expectedLength expected length of the whole SDP, the buffer is not made larger than it needs to be
+     */
+    public SdpWriter(Writer writer, int expectedLength) {
+        this.writer = writer;
+        int bufferSize = Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, expectedLength));
+        char[] cached = buffers.get();
+        if (cached != null && cached.length >= bufferSize) {
+            buffers.remove();
+            this.buffer = cached;
+        } else {
+            this.buffer = new char[bufferSize];
+        }
+    }
+
+    public static SdpWriter of(StringBuilder stringBuilder, int expectedLength) {
+        stringBuilder.ensureCapacity(stringBuilder.length() + expectedLength);
+        return new SdpWriter(new StringBuilderWriter(stringBuilder), expectedLength);
+    }
+
+    public SdpWriter append(String value) {
+        if (value == null) {
+            return append("null");
+        }
+        int start = 0;
+        int length = value.length();
+        while (start < length) {
+            if (position == buffer.length) {
+                flush();
+            }
+            int end = Math.min(length, start + buffer.length - position);
+            value.getChars(start, end, buffer, position);
+            position += end - start;
+            start = end;
+        }
+        return this;
+    }
+
+    public SdpWriter append(char value) {
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = value;
+        return this;
+    }
+
+    public SdpWriter append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long x = value; x >= 10; x /= 10) {
+            digits++;
+        }
+        if (position + digits > buffer.length) {
+            flush();
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+        return this;
+    }
+
+    // the same text as StringBuilder.append(Object) gives
+    public SdpWriter append(Object value) {
+        if (value instanceof Long || value instanceof Integer) {
+            return append(((Number) value).longValue());
+        }
+        return append(String.valueOf(value));
+    }
+
+    public SdpWriter endLine() {
+        return append('\r').append('\n');
+    }
+
+    /**
+     * @return number of chars written so far
+     */
+    public long getWritten() {
+        return written + position;
+    }
+
+    public void flush() {
+        try {
+            writer.write(buffer, 0, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written += position;
+        position = 0;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        if (buffer.length <= MAX_BUFFER_SIZE) {
+            buffers.set(buffer);
+        }
+        buffer = null;
+    }
+
+    private static class StringBuilderWriter extends Writer {
+        private final StringBuilder stringBuilder;
+
+        private StringBuilderWriter(StringBuilder stringBuilder) {
+            this.stringBuilder = stringBuilder;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            stringBuilder.append(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -13,6 +13,9 @@ import java.util.List;
 @AllArgsConstructor
 public class SessionDescription {
 
+    private final static int MEDIA_EXPECTED_LENGTH = 705;
+    private final static int HEADER_EXPECTED_LENGTH = 100;
+
     private Integer version;
     private Origin origin;
     private URI uri;
@@ -30,42 +33,55 @@ public class SessionDescription {
     @Singular
     private List<MediaDescription> medias;
 
-    public StringBuilder appendDetailsOnly(StringBuilder stringBuilder) {
-        stringBuilder.append("v=").append(version).append("\r\n");
-        origin.append(stringBuilder);
-        sessionName.append(stringBuilder);
+    public void writeDetailsOnly(SdpWriter writer) {
+        writer.append("v=").append(version).endLine();
+        origin.write(writer);
+        sessionName.write(writer);
         if (uri != null) {
-            stringBuilder.append("u=").append(uri.toString()).append("\r\n");
+            writer.append("u=").append(uri.toString()).endLine();
         }
         for (String email : emails) {
-            stringBuilder.append("e=").append(email).append("\r\n");
+            writer.append("e=").append(email).endLine();
         }
         for (String phone : phones) {
-            stringBuilder.append("p=").append(phone).append("\r\n");
+            writer.append("p=").append(phone).endLine();
         }
         if (connection != null) {
-            connection.append(stringBuilder);
+            connection.write(writer);
         }
         for (Time time : times) {
-            time.append(stringBuilder);
+            time.write(writer);
         }
         for (Attribute attr : attributes) {
-            attr.append(stringBuilder);
+            attr.write(writer);
         }
-        return stringBuilder;
     }
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        appendDetailsOnly(stringBuilder);
+    public void write(SdpWriter writer) {
+        writeDetailsOnly(writer);
         for (MediaDescription media : medias) {
-            media.append(stringBuilder);
+            media.write(writer);
+        }
+    }
+
+    public StringBuilder append(StringBuilder stringBuilder) {
+        try (SdpWriter writer = SdpWriter.of(stringBuilder, getExpectedLength())) {
+            write(writer);
         }
         return stringBuilder;
     }
 
     public String toDetailsOnlyString() {
-        return appendDetailsOnly(new StringBuilder()).toString();
+        StringBuilder stringBuilder = new StringBuilder();
+        try (SdpWriter writer = SdpWriter.of(stringBuilder, HEADER_EXPECTED_LENGTH)) {
+            writeDetailsOnly(writer);
+        }
+        return stringBuilder.toString();
     }
 
-}
+    // an empirically derived formula
+    public int getExpectedLength() {
+        return MEDIA_EXPECTED_LENGTH * medias.size() + HEADER_EXPECTED_LENGTH;
+    }
 
+}
@@ -11,8 +11,8 @@ public class SessionName {
 
     private String name;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder.append("s=").append(name).append("\r\n");
+    public void write(SdpWriter writer) {
+        writer.append("s=").append(name).endLine();
     }
 
 }
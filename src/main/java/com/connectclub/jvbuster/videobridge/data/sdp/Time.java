@@ -12,8 +12,8 @@ public class Time {
     private Integer start;
     private Integer stop;
 
-    public StringBuilder append(StringBuilder stringBuilder) {
-        return stringBuilder.append("t=").append(start).append(" ").append(stop).append("\r\n");
+    public void write(SdpWriter writer) {
+        writer.append("t=").append(start).append(' ').append(stop).endLine();
     }
 
 }
@@ -0,0 +1,15 @@
+package com.connectclub.jvbuster.videobridge.exception;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+@Getter
+public class JvbInstanceCircuitOpenException extends IOException {
+    private final String id;
+
+    public JvbInstanceCircuitOpenException(String id) {
+        super(String.format("JvbInstance(id=%s) circuit breaker is open", id));
+        this.id = id;
+    }
+}
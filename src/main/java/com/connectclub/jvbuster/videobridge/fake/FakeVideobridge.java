@@ -0,0 +1,483 @@
+package com.connectclub.jvbuster.videobridge.fake;
+
+import com.connectclub.jvbuster.videobridge.ColibriCodec;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-process stand-in for the colibri REST API of jitsi-videobridge. It keeps the conferences, channels, sctp
+ * connections, channel bundles and octo channels which jvbuster creates, so placement, scaling and signaling can be
+ * run against it without real videobridges. Latency, errors and slow responses can be injected at any time.
+ */
+@Slf4j
+public class FakeVideobridge {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong ids = new AtomicLong(ThreadLocalRandom.current().nextInt(0x10000));
+    private final ConcurrentMap<String, FakeConference> conferences = new ConcurrentHashMap<>();
+
+    @Getter
+    private volatile boolean shutdownInProgress;
+
+    @Getter @Setter
+    private volatile long latencyInMillis;
+    @Getter @Setter
+    private volatile long latencyJitterInMillis;
+    // probability (0..1) of `500 Internal Server Error`
+    @Getter @Setter
+    private volatile double errorRate;
+    // probability (0..1) of a response delayed by slowResponseDelayInMillis
+    @Getter @Setter
+    private volatile double slowResponseRate;
+    @Getter @Setter
+    private volatile long slowResponseDelayInMillis;
+    // a conference without endpoints is expired after this period
+    @Getter @Setter
+    private volatile long conferenceExpireInMillis = 60_000;
+
+    public FakeVideobridge(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/colibri/", this::handle);
+    }
+
+    public FakeVideobridge start() {
+        server.start();
+        log.info("Fake videobridge has been started on port {}", getPort());
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getConferencesCount() {
+        return conferences.size();
+    }
+
+    private String nextId() {
+        return Long.toHexString(ids.incrementAndGet());
+    }
+
+    private static class HttpError extends RuntimeException {
+        private final int code;
+
+        HttpError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String response;
+            int code = 200;
+            try {
+                injectFaults();
+                response = route(exchange.getRequestMethod(), exchange.getRequestURI(), readBody(exchange));
+            } catch (HttpError e) {
+                code = e.code;
+                response = e.getMessage();
+            } catch (Exception e) {
+                log.error("Fake videobridge request failed", e);
+                code = 500;
+                response = String.valueOf(e.getMessage());
+            }
+            byte[] body = response == null ? new byte[0] : response.getBytes(StandardCharsets.UTF_8);
+            // the reason phrase can not be set, so errors are reported in the body
+            exchange.getResponseHeaders().add("Content-Type", code == 200 ? "application/json" : "text/plain");
+            exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            return CharStreams.toString(reader);
+        }
+    }
+
+    private void injectFaults() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyInMillis;
+        if (latencyJitterInMillis > 0) {
+            delay += random.nextLong(latencyJitterInMillis + 1);
+        }
+        if (slowResponseRate > 0 && random.nextDouble() < slowResponseRate) {
+            delay += slowResponseDelayInMillis;
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            throw new HttpError(500, "Injected error");
+        }
+    }
+
+    private String route(String method, URI uri, String body) {
+        List<String> path = Arrays.stream(uri.getPath().split("/"))
+                .filter(x -> !x.isEmpty())
+                .skip(1)
+                .collect(Collectors.toList());
+        String endpoint = Optional.ofNullable(uri.getQuery())
+                .filter(x -> x.startsWith("endpoint="))
+                .map(x -> x.substring("endpoint=".length()))
+                .orElse(null);
+        // conference ids are replaced by "{id}" and endpoints/message classes by "{name}"
+        List<String> pattern = new ArrayList<>(path);
+        if (pattern.size() > 1 && "conferences".equals(pattern.get(0)) && !"expire".equals(pattern.get(1))) {
+            pattern.set(1, "{id}");
+        }
+        if (pattern.size() > 3) {
+            pattern.set(3, "{name}");
+        }
+        switch (method + " " + String.join("/", pattern)) {
+            case "GET stats":
+                return ColibriCodec.toJson(getStats());
+            case "POST shutdown":
+                shutdown(ColibriCodec.fromJson(new StringReader(body), Map.class));
+                return null;
+            case "GET conferences":
+                return ColibriCodec.toJson(conferences.values().stream()
+                        .map(x -> Conference.builder().id(x.id).gid(x.gid).build())
+                        .collect(Collectors.toList()));
+            case "POST conferences":
+                return createConference(ColibriCodec.fromJson(new StringReader(body), Conference.class));
+            case "DELETE conferences":
+                conferences.clear();
+                return null;
+            case "POST conferences/expire":
+                return ColibriCodec.toJson(expireConferences());
+            case "GET conferences/{id}": {
+                FakeConference conference = getConference(path.get(1));
+                synchronized (conference) {
+                    return ColibriCodec.toJson(conference.render(endpoint));
+                }
+            }
+            case "PATCH conferences/{id}": {
+                FakeConference conference = getConference(path.get(1));
+                Conference patch = ColibriCodec.fromJson(new StringReader(body), Conference.class);
+                synchronized (conference) {
+                    conference.apply(patch);
+                    return ColibriCodec.toJson(conference.render(endpoint));
+                }
+            }
+            case "DELETE conferences/{id}/endpoint/{name}": {
+                FakeConference conference = getConference(path.get(1));
+                synchronized (conference) {
+                    conference.removeEndpoint(path.get(3));
+                }
+                return null;
+            }
+            case "POST conferences/{id}/broadcast-message/{name}":
+                getConference(path.get(1));
+                return null;
+        }
+        throw new HttpError(404, String.format("%s %s is not supported", method, uri.getPath()));
+    }
+
+    private FakeConference getConference(String id) {
+        FakeConference conference = conferences.get(id);
+        if (conference == null) {
+            throw new HttpError(404, String.format("Conference(id=%s) not found", id));
+        }
+        return conference;
+    }
+
+    private String createConference(Conference request) {
+        if (shutdownInProgress) {
+            throw new HttpError(503, "Graceful shutdown in progress");
+        }
+        FakeConference conference = new FakeConference(nextId(), request.getGid());
+        conferences.put(conference.id, conference);
+        synchronized (conference) {
+            return ColibriCodec.toJson(conference.render(null));
+        }
+    }
+
+    private List<Conference> expireConferences() {
+        long now = System.currentTimeMillis();
+        List<Conference> expired = new ArrayList<>();
+        conferences.values().removeIf(conference -> {
+            synchronized (conference) {
+                if (conference.endpoints.isEmpty() && now - conference.emptySince >= conferenceExpireInMillis) {
+                    expired.add(Conference.builder().id(conference.id).gid(conference.gid).build());
+                    return true;
+                }
+                return false;
+            }
+        });
+        return expired;
+    }
+
+    private Stats getStats() {
+        int sendingAudio = 0;
+        int sendingVideo = 0;
+        int receiveOnly = 0;
+        for (FakeConference conference : conferences.values()) {
+            synchronized (conference) {
+                for (String endpoint : conference.endpoints.keySet()) {
+                    boolean audio = conference.isSending(endpoint, "audio");
+                    boolean video = conference.isSending(endpoint, "video");
+                    if (audio) sendingAudio++;
+                    if (video) sendingVideo++;
+                    if (!audio && !video) receiveOnly++;
+                }
+            }
+        }
+        return Stats.builder()
+                .endpointsSendingAudio(sendingAudio)
+                .endpointsSendingVideo(sendingVideo)
+                .receiveOnlyEndpoints(receiveOnly)
+                .shutdownInProgress(shutdownInProgress)
+                .build();
+    }
+
+    private void shutdown(Map<?, ?> request) {
+        if (Boolean.TRUE.equals(request.get("graceful-shutdown"))) {
+            shutdownInProgress = true;
+        } else {
+            new Thread(this::stop).start();
+        }
+    }
+
+    private class FakeConference {
+        private final String id;
+        private final String gid;
+        private final Map<String, Map<String, ChannelCommon>> contents = new LinkedHashMap<>();
+        private final Map<String, SctpConnection> sctpConnections = new LinkedHashMap<>();
+        private final Map<String, ChannelBundle> channelBundles = new LinkedHashMap<>();
+        private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+        private long emptySince = System.currentTimeMillis();
+
+        FakeConference(String id, String gid) {
+            this.id = id;
+            this.gid = gid;
+            contents.put("audio", new LinkedHashMap<>());
+            contents.put("video", new LinkedHashMap<>());
+            contents.put("data", new LinkedHashMap<>());
+        }
+
+        void apply(Conference patch) {
+            for (Endpoint endpoint : Optional.ofNullable(patch.getEndpoints()).orElse(List.of())) {
+                addEndpoint(endpoint.getId()).setDisplayName(endpoint.getDisplayName());
+            }
+            for (Content content : Optional.ofNullable(patch.getContents()).orElse(List.of())) {
+                Map<String, ChannelCommon> channels = contents.computeIfAbsent(content.getName(), x -> new LinkedHashMap<>());
+                for (ChannelCommon channel : Optional.ofNullable(content.getChannels()).orElse(List.of())) {
+                    applyChannel(channels, channel);
+                }
+                for (SctpConnection sctpConnection : Optional.ofNullable(content.getSctpConnections()).orElse(List.of())) {
+                    applySctpConnection(sctpConnection);
+                }
+            }
+            for (ChannelBundle channelBundle : Optional.ofNullable(patch.getChannelBundles()).orElse(List.of())) {
+                addChannelBundle(channelBundle.getId());
+            }
+        }
+
+        private void applyChannel(Map<String, ChannelCommon> channels, ChannelCommon patch) {
+            if (patch.getId() != null && patch.getExpire() == 0) {
+                channels.remove(patch.getId());
+                return;
+            }
+            if (patch instanceof OctoChannel) {
+                channels.put(patch.getId(), patch);
+                return;
+            }
+            Channel channelPatch = (Channel) patch;
+            Channel channel = patch.getId() != null ? (Channel) channels.get(patch.getId()) : null;
+            if (channel == null) {
+                channel = new Channel();
+                channel.setId(patch.getId() != null ? patch.getId() : nextId());
+                channel.setEndpoint(channelPatch.getEndpoint());
+                channel.setChannelBundleId(channelPatch.getChannelBundleId());
+                channel.setInitiator(channelPatch.isInitiator());
+                channel.setRtpLevelRelayType(channelPatch.getRtpLevelRelayType());
+                channels.put(channel.getId(), channel);
+                if (channel.getEndpoint() != null) {
+                    addEndpoint(channel.getEndpoint());
+                }
+                if (channel.getChannelBundleId() != null) {
+                    addChannelBundle(channel.getChannelBundleId());
+                }
+            }
+            if (patch.getExpire() > 0) channel.setExpire(patch.getExpire());
+            if (channelPatch.getDirection() != null) channel.setDirection(channelPatch.getDirection());
+            if (channelPatch.getLastN() != null) channel.setLastN(channelPatch.getLastN());
+            if (isNotEmpty(patch.getPayloadTypes())) channel.setPayloadTypes(patch.getPayloadTypes());
+            if (isNotEmpty(patch.getRtpHdrexts())) channel.setRtpHdrexts(patch.getRtpHdrexts());
+            if (isNotEmpty(patch.getSsrcGroups())) channel.setSsrcGroups(patch.getSsrcGroups());
+            if (isNotEmpty(channelPatch.getSources())) {
+                // a real videobridge learns ssrcs from the media, here the signaled sources are trusted
+                channel.setSources(channelPatch.getSources());
+                channel.setSsrcs(channelPatch.getSources());
+            }
+        }
+
+        private void applySctpConnection(SctpConnection patch) {
+            if (patch.getId() != null) {
+                if (!sctpConnections.containsKey(patch.getId())) {
+                    throw new HttpError(400, "Failed to create conference: No SCTP connection found for ID: " + patch.getId());
+                }
+                if (patch.getExpire() == 0) {
+                    sctpConnections.remove(patch.getId());
+                }
+                return;
+            }
+            SctpConnection sctpConnection = SctpConnection.builder()
+                    .id(nextId())
+                    .expire(patch.getExpire())
+                    .initiator(patch.isInitiator())
+                    .endpoint(patch.getEndpoint())
+                    .port(patch.getPort())
+                    .channelBundleId(patch.getChannelBundleId())
+                    .build();
+            sctpConnections.put(sctpConnection.getId(), sctpConnection);
+            if (sctpConnection.getEndpoint() != null) {
+                addEndpoint(sctpConnection.getEndpoint());
+            }
+            if (sctpConnection.getChannelBundleId() != null) {
+                addChannelBundle(sctpConnection.getChannelBundleId());
+            }
+        }
+
+        private Endpoint addEndpoint(String endpoint) {
+            return endpoints.computeIfAbsent(endpoint, x -> Endpoint.builder()
+                    .id(x)
+                    .uuid(UUID.randomUUID())
+                    .build());
+        }
+
+        private void addChannelBundle(String id) {
+            channelBundles.computeIfAbsent(id, x -> ChannelBundle.builder()
+                    .id(x)
+                    .transport(Transport.builder()
+                            .xmlns("urn:xmpp:jingle:transports:ice-udp:1")
+                            .rtcpMux(true)
+                            .ufrag(nextId())
+                            .pwd(UUID.randomUUID().toString().replace("-", ""))
+                            .fingerprints(List.of(Fingerprint.builder()
+                                    .hash("sha-256")
+                                    .fingerprint(randomFingerprint())
+                                    .setup("actpass")
+                                    .build()))
+                            .candidates(List.of(Candidate.builder()
+                                    .id(nextId())
+                                    .type(Candidate.Type.HOST)
+                                    .generation("0")
+                                    .component(1)
+                                    .protocol(Candidate.Protocol.UDP)
+                                    .ip("127.0.0.1")
+                                    .port(10000)
+                                    .foundation("1")
+                                    .priority(2130706431)
+                                    .network("0")
+                                    .build()))
+                            .build())
+                    .build());
+        }
+
+        void removeEndpoint(String endpoint) {
+            contents.values().forEach(channels -> channels.values().removeIf(x -> x instanceof Channel && endpoint.equals(((Channel) x).getEndpoint())));
+            sctpConnections.values().removeIf(x -> endpoint.equals(x.getEndpoint()));
+            channelBundles.remove(endpoint);
+            endpoints.remove(endpoint);
+            if (endpoints.isEmpty()) {
+                emptySince = System.currentTimeMillis();
+            }
+        }
+
+        boolean isSending(String endpoint, String contentName) {
+            return contents.getOrDefault(contentName, Map.of()).values().stream()
+                    .filter(x -> x instanceof Channel)
+                    .map(Channel.class::cast)
+                    .anyMatch(x -> endpoint.equals(x.getEndpoint()) && isNotEmpty(x.getSources()));
+        }
+
+        /**
+         * @param endpoint if not null only channels of this endpoint are returned, as `?endpoint=` does
+         */
+        Conference render(String endpoint) {
+            List<Endpoint> allEndpoints = new ArrayList<>(endpoints.values());
+            // endpoints of the other videobridges known from octo
+            contents.values().stream()
+                    .flatMap(x -> x.values().stream())
+                    .filter(x -> x instanceof OctoChannel)
+                    .flatMap(x -> ((OctoChannel) x).getSources().stream())
+                    .filter(x -> x.getEndpointId() != null && !endpoints.containsKey(x.getEndpointId()))
+                    .map(x -> Endpoint.builder().id(x.getEndpointId()).uuid(x.getEndpointUuid()).build())
+                    .distinct()
+                    .forEach(allEndpoints::add);
+            return Conference.builder()
+                    .id(id)
+                    .gid(gid)
+                    .contents(contents.entrySet().stream()
+                            .map(x -> Content.builder()
+                                    .name(x.getKey())
+                                    .channels(x.getValue().values().stream()
+                                            .filter(channel -> endpoint == null || (channel instanceof Channel && endpoint.equals(((Channel) channel).getEndpoint())))
+                                            .collect(Collectors.toList()))
+                                    .sctpConnections("data".equals(x.getKey())
+                                            ? sctpConnections.values().stream()
+                                                    .filter(sctp -> endpoint == null || endpoint.equals(sctp.getEndpoint()))
+                                                    .collect(Collectors.toList())
+                                            : List.of())
+                                    .build())
+                            .collect(Collectors.toList()))
+                    .channelBundles(channelBundles.values().stream()
+                            .filter(x -> endpoint == null || endpoint.equals(x.getId()))
+                            .collect(Collectors.toList()))
+                    .endpoints(allEndpoints)
+                    .build();
+        }
+    }
+
+    private static boolean isNotEmpty(Collection<?> collection) {
+        return collection != null && !collection.isEmpty();
+    }
+
+    private static String randomFingerprint() {
+        byte[] bytes = new byte[32];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        StringJoiner joiner = new StringJoiner(":");
+        for (byte b : bytes) {
+            joiner.add(String.format("%02X", b));
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,10 @@
+package com.connectclub.jvbuster.videobridge.i;
+
+import com.connectclub.jvbuster.videobridge.JvbInstance;
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface ConferencePatchService {
+    CompletableFuture<Conference> patch(JvbInstance jvbInstance, Conference patch);
+}
@@ -0,0 +1,38 @@
+package com.connectclub.jvbuster.videobridge.i;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.videobridge.data.ConferenceSnapshot;
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Last known state of the colibri conferences. Returned conferences are shared and must not be modified.
+ */
+public interface ConferenceSnapshotService {
+    /**
+     * @param maxStalenessInMillis how old the snapshot may be, otherwise the conference is requested from videobridge
+     */
+    CompletableFuture<Conference> get(JvbConferenceData jvbConference, long maxStalenessInMillis);
+
+    /**
+     * @param minConferenceVersion version of the conference gid read before the call, a snapshot which may miss
+     *                             the changes of this version is not used
+     */
+    CompletableFuture<Conference> get(JvbConferenceData jvbConference, long maxStalenessInMillis, long minConferenceVersion);
+
+    CompletableFuture<Conference> patch(JvbInstanceData jvbInstance, String gid, Conference patch);
+
+    Optional<ConferenceSnapshot> getSnapshot(String jvbConferenceId);
+
+    void invalidate(String jvbConferenceId);
+
+    void invalidateInstance(String instanceId);
+
+    void retain(Collection<String> jvbConferencesIds);
+
+    void retainInstances(Collection<String> instancesIds);
+}
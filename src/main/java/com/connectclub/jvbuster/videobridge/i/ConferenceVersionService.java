@@ -0,0 +1,22 @@
+package com.connectclub.jvbuster.videobridge.i;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Version of the conference gid, bumped on any change of its endpoints or their sources, so a client can
+ * tell whether its offers are still actual without asking the videobridges.
+ */
+public interface ConferenceVersionService {
+
+    long get(String gid);
+
+    CompletableFuture<Long> getAsync(String gid);
+
+    void bump(String gid);
+
+    /**
+     * @param listener called with the gid on every bump, made by this or any other jvbuster
+     */
+    void addListener(Consumer<String> listener);
+}
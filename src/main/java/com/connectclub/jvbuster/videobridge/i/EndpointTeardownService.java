@@ -0,0 +1,30 @@
+package com.connectclub.jvbuster.videobridge.i;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface EndpointTeardownService {
+
+    /**
+     * Queues the removal of the endpoint from the conferences, an already queued removal of the same endpoint
+     * is extended by them.
+     */
+    void enqueue(String endpoint, List<JvbConferenceData> conferences);
+
+    /**
+     * Runs the queued removal of the endpoint right away, for an endpoint which is going to be added again to the
+     * conference gid. A removal being run elsewhere is waited for. A failed removal stays in the queue, unless it is
+     * from a conference of the gid: the endpoint is added there again and a retry would remove it.
+     *
+     * @return removals by jvb conference id, they never fail
+     */
+    Map<String, CompletableFuture<Void>> runNow(String endpoint, String gid);
+
+    /**
+     * Runs the queued removals which are due, called periodically.
+     */
+    void processDue();
+}
@@ -0,0 +1,19 @@
+package com.connectclub.jvbuster.videobridge.i;
+
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.videobridge.JvbInstance;
+
+import java.util.Collection;
+
+public interface JvbInstanceRegistryService {
+    JvbInstance get(JvbInstanceData jvbInstanceData);
+
+    JvbInstance register(JvbInstance jvbInstance);
+
+    /**
+     * @return false if the circuit breaker of the instance is open
+     */
+    boolean isAvailable(String instanceId);
+
+    void retain(Collection<String> instancesIds);
+}
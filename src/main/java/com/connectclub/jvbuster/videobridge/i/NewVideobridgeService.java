@@ -2,18 +2,17 @@ package com.connectclub.jvbuster.videobridge.i;
 
 import com.connectclub.jvbuster.videobridge.VideobridgeConferenceAnswer;
 import com.connectclub.jvbuster.videobridge.data.VideobridgeConferenceOffer;
-import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface NewVideobridgeService {
 
-    List<VideobridgeConferenceOffer> getNewOffers(String conferenceGid, String endpoint, boolean speaker) throws IOException, JvbInstanceRestException;
+    CompletableFuture<List<VideobridgeConferenceOffer>> getNewOffers(String conferenceGid, String endpoint, boolean speaker);
 
-    List<VideobridgeConferenceOffer> getCurrentOffers(String conferenceGid, String endpoint) throws JvbInstanceRestException, IOException;
+    CompletableFuture<List<VideobridgeConferenceOffer>> getCurrentOffers(String conferenceGid, String endpoint);
 
-    void processAnswers(String conferenceGid, String endpoint, List<VideobridgeConferenceAnswer> conferences) throws IOException, JvbInstanceRestException;
+    CompletableFuture<Void> processAnswers(String conferenceGid, String endpoint, List<VideobridgeConferenceAnswer> conferences);
 
     void delete(String conferenceGid, String endpoint, boolean quiet);
 }
@@ -2,19 +2,23 @@ package com.connectclub.jvbuster.videobridge.i;
 
 import com.connectclub.jvbuster.videobridge.data.Answer;
 import com.connectclub.jvbuster.videobridge.data.PrevOffer;
+import com.connectclub.jvbuster.videobridge.data.Subscription;
 import com.connectclub.jvbuster.videobridge.data.jvb.Candidate;
 import com.connectclub.jvbuster.videobridge.data.sdp.SessionDescription;
-import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface VideobridgeService {
-    List<SessionDescription> getOffers(String conferenceGid, String endpoint, Long videoBandwidth, String... videobridgeIds) throws IOException, JvbInstanceRestException;
+    CompletableFuture<List<SessionDescription>> getOffers(String conferenceGid, String endpoint, Long videoBandwidth, String... videobridgeIds);
+
+    CompletableFuture<List<SessionDescription>> getOffers(String conferenceGid, String endpoint, Long videoBandwidth, Subscription subscription, String... videobridgeIds);
 
     List<SessionDescription> getOffers(String conferenceGid, String endpoint, Long videoBandwidth, List<PrevOffer> prevOffers);
 
-    void processAnswers(String conferenceGid, String endpoint, List<Answer> answers) throws IOException, JvbInstanceRestException;
+    List<SessionDescription> getOffers(String conferenceGid, String endpoint, Long videoBandwidth, List<PrevOffer> prevOffers, Subscription subscription);
+
+    CompletableFuture<Void> processAnswers(String conferenceGid, String endpoint, List<Answer> answers);
 
     void processIceCandidate(
             String conferenceGid,
@@ -0,0 +1,186 @@
+package com.connectclub.jvbuster.web;
+
+import com.connectclub.jvbuster.exception.EndpointNotFound;
+import com.connectclub.jvbuster.videobridge.JvbInstance;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.NewVideobridgeService;
+import com.connectclub.jvbuster.web.data.VersionedOffers;
+import com.google.gson.Gson;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Current offers of the endpoints, also pushed to the endpoints subscribed over SSE. A bump of the conference
+ * version, made by any jvbuster, requests one fan-out per gid which sends the offers to every subscribed endpoint
+ * that does not have them yet. Bumps arriving before the fan-out has started are served by it.
+ */
+@Slf4j
+@Component
+public class OffersPush {
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        // version of the last offers the endpoint has got
+        private volatile long version;
+
+        private Subscriber(SseEmitter emitter, long version) {
+            this.emitter = emitter;
+            this.version = version;
+        }
+    }
+
+    private final Gson gson = new Gson();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // fan-outs which have been requested but have not started yet
+    private final Set<String> pendingFanOuts = ConcurrentHashMap.newKeySet();
+
+    private final NewVideobridgeService newVideobridgeService;
+    private final SingleFlight singleFlight;
+    private final ConferenceVersionService conferenceVersionService;
+    private final Executor pushExecutor;
+    private final long timeoutInMillis;
+
+    public OffersPush(
+            @Value("${jvb.offers-push.timeout-in-millis}") long timeoutInMillis,
+            @Qualifier("pushExecutor") Executor pushExecutor,
+            NewVideobridgeService newVideobridgeService,
+            SingleFlight singleFlight,
+            ConferenceVersionService conferenceVersionService
+    ) {
+        this.timeoutInMillis = timeoutInMillis;
+        this.pushExecutor = pushExecutor;
+        this.newVideobridgeService = newVideobridgeService;
+        this.singleFlight = singleFlight;
+        this.conferenceVersionService = conferenceVersionService;
+        conferenceVersionService.addListener(this::requestFanOut);
+    }
+
+    public CompletableFuture<VersionedOffers> getCurrentOffers(String conferenceGid, String endpoint) {
+        return singleFlight.execute(
+                "current-offers",
+                conferenceGid,
+                endpoint,
+                VersionedOffers.class,
+                // a change made while the offers are built makes the next request get them again,
+                // getCurrentOffers does not block, so it may be called on the redis thread
+                () -> conferenceVersionService.getAsync(conferenceGid).thenCompose(version -> newVideobridgeService
+                        .getCurrentOffers(conferenceGid, endpoint)
+                        .thenApply(offers -> new VersionedOffers(version, offers)))
+        );
+    }
+
+    /**
+     * @param version version of the offers the endpoint already has, the offers of another version are pushed right away
+     */
+    public SseEmitter subscribe(String conferenceGid, String endpoint, long version) {
+        SseEmitter emitter = new SseEmitter(timeoutInMillis);
+        Subscriber subscriber = new Subscriber(emitter, version);
+        AtomicReference<Subscriber> previous = new AtomicReference<>();
+        subscribers.compute(conferenceGid, (gid, gidSubscribers) -> {
+            if (gidSubscribers == null) {
+                gidSubscribers = new ConcurrentHashMap<>();
+            }
+            previous.set(gidSubscribers.put(endpoint, subscriber));
+            return gidSubscribers;
+        });
+        if (previous.get() != null) {
+            previous.get().emitter.complete();
+        }
+        emitter.onCompletion(() -> unsubscribe(conferenceGid, endpoint, subscriber));
+        emitter.onTimeout(() -> unsubscribe(conferenceGid, endpoint, subscriber));
+        emitter.onError(e -> unsubscribe(conferenceGid, endpoint, subscriber));
+        requestFanOut(conferenceGid);
+        return emitter;
+    }
+
+    private void unsubscribe(String conferenceGid, String endpoint, Subscriber subscriber) {
+        subscribers.computeIfPresent(conferenceGid, (gid, gidSubscribers) -> {
+            gidSubscribers.remove(endpoint, subscriber);
+            return gidSubscribers.isEmpty() ? null : gidSubscribers;
+        });
+    }
+
+    // keeps the idle streams open behind the proxies
+    public void sendHeartbeats() {
+        subscribers.values().forEach(gidSubscribers -> gidSubscribers.values().forEach(subscriber -> {
+            try {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                subscriber.emitter.completeWithError(e);
+            }
+        }));
+    }
+
+    private void requestFanOut(String conferenceGid) {
+        if (!subscribers.containsKey(conferenceGid) || !pendingFanOuts.add(conferenceGid)) {
+            return;
+        }
+        try {
+            pushExecutor.execute(() -> {
+                // a bump arriving from now on may carry changes this fan-out does not see
+                pendingFanOuts.remove(conferenceGid);
+                fanOut(conferenceGid);
+            });
+        } catch (RuntimeException e) {
+            pendingFanOuts.remove(conferenceGid);
+            log.error("Offers push to conference(gid={}) has not been requested", conferenceGid, e);
+        }
+    }
+
+    private void fanOut(String conferenceGid) {
+        long version = conferenceVersionService.get(conferenceGid);
+        List<CompletableFuture<Boolean>> pushes = new ArrayList<>();
+        subscribers.getOrDefault(conferenceGid, new ConcurrentHashMap<>()).forEach((endpoint, subscriber) -> {
+            if (subscriber.version != version) {
+                pushes.add(push(conferenceGid, endpoint, subscriber, version));
+            }
+        });
+        CompletableFuture.allOf(pushes.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            // the offers have been taken from a flight which started before the bump
+            if (pushes.stream().anyMatch(CompletableFuture::join)) {
+                requestFanOut(conferenceGid);
+            }
+        });
+    }
+
+    /**
+     * @return true if the pushed offers are older than the version
+     */
+    private CompletableFuture<Boolean> push(String conferenceGid, String endpoint, Subscriber subscriber, long version) {
+        return getCurrentOffers(conferenceGid, endpoint).handleAsync((offers, e) -> {
+            if (e != null) {
+                if (JvbInstance.unwrap(e) instanceof EndpointNotFound) {
+                    subscriber.emitter.complete();
+                } else {
+                    log.warn("Offers of endpoint(id={}) have not been pushed: {}", endpoint, JvbInstance.unwrap(e).toString());
+                }
+                return false;
+            }
+            if (offers.getVersion() == subscriber.version) {
+                return false;
+            }
+            try {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(offers.getVersion()))
+                        .name("offers")
+                        .data(gson.toJson(offers.getOffers())));
+                subscriber.version = offers.getVersion();
+            } catch (IOException | IllegalStateException x) {
+                subscriber.emitter.completeWithError(x);
+                return false;
+            }
+            return offers.getVersion() < version;
+        }, pushExecutor);
+    }
+}
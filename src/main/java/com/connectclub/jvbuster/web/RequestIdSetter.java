@@ -18,7 +18,13 @@ public class RequestIdSetter extends OncePerRequestFilter {
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        MDC.put(REQUEST_ID_KEY, UUID.randomUUID().toString());
+        // an asynchronous request is dispatched again to write its result, it keeps the id
+        String requestId = (String) request.getAttribute(REQUEST_ID_KEY);
+        if (requestId == null) {
+            requestId = UUID.randomUUID().toString();
+            request.setAttribute(REQUEST_ID_KEY, requestId);
+        }
+        MDC.put(REQUEST_ID_KEY, requestId);
         try {
             filterChain.doFilter(request, response);
         } finally {
@@ -26,4 +32,9 @@ public class RequestIdSetter extends OncePerRequestFilter {
         }
     }
 
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
 }
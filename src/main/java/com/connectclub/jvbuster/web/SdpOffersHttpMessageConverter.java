@@ -0,0 +1,74 @@
+package com.connectclub.jvbuster.web;
+
+import com.connectclub.jvbuster.videobridge.data.sdp.SdpWriter;
+import com.connectclub.jvbuster.videobridge.data.sdp.SessionDescription;
+import com.connectclub.jvbuster.web.data.SdpOffers;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the offers straight to the response, the whole text is never built. The charset is the one
+ * the offers have been sent with as a String.
+ */
+@Slf4j
+@Component
+public class SdpOffersHttpMessageConverter extends AbstractHttpMessageConverter<SdpOffers> {
+
+    public SdpOffersHttpMessageConverter() {
+        super(StandardCharsets.ISO_8859_1, MediaType.TEXT_PLAIN);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SdpOffers.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected SdpOffers readInternal(Class<? extends SdpOffers> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("SDP offers are not read", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(SdpOffers sdpOffers, HttpOutputMessage outputMessage) throws IOException {
+        MediaType contentType = outputMessage.getHeaders().getContentType();
+        Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset() : getDefaultCharset();
+        int expectedLength = sdpOffers.getExpectedLength();
+        Writer outputWriter = new OutputStreamWriter(outputMessage.getBody(), charset);
+        long written;
+        try (SdpWriter writer = new SdpWriter(outputWriter, expectedLength)) {
+            boolean first = true;
+            for (SessionDescription offer : sdpOffers.getOffers()) {
+                if (first) {
+                    first = false;
+                } else {
+                    writer.endLine();
+                }
+                offer.write(writer);
+            }
+            written = writer.getWritten();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        outputWriter.flush();
+        if (written > expectedLength) {
+            log.warn("Expected offers string length({}) is less than actual({}).", expectedLength, written);
+        }
+    }
+}
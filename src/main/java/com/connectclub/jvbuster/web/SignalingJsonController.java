@@ -6,66 +6,122 @@ import com.connectclub.jvbuster.exception.EndpointNotFound;
 import com.connectclub.jvbuster.security.VideobridgeAuthenticationToken;
 import com.connectclub.jvbuster.videobridge.VideobridgeConferenceAnswer;
 import com.connectclub.jvbuster.videobridge.data.VideobridgeConferenceOffer;
-import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
 import com.connectclub.jvbuster.videobridge.i.NewVideobridgeService;
+import com.google.gson.reflect.TypeToken;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @Controller
 @RequestMapping("/signaling-new")
 public class SignalingJsonController {
 
+    private final static Type OFFERS_TYPE = new TypeToken<List<VideobridgeConferenceOffer>>() {}.getType();
+
     private final NewVideobridgeService newVideobridgeService;
+    private final SingleFlight singleFlight;
+    private final ConferenceVersionService conferenceVersionService;
+    private final OffersPush offersPush;
+    private final Executor signalingExecutor;
 
     public SignalingJsonController(
-            NewVideobridgeService newVideobridgeService
+            NewVideobridgeService newVideobridgeService,
+            SingleFlight singleFlight,
+            ConferenceVersionService conferenceVersionService,
+            OffersPush offersPush,
+            @Qualifier("signalingExecutor") Executor signalingExecutor
     ) {
         this.newVideobridgeService = newVideobridgeService;
+        this.singleFlight = singleFlight;
+        this.conferenceVersionService = conferenceVersionService;
+        this.offersPush = offersPush;
+        this.signalingExecutor = signalingExecutor;
+    }
+
+    private static String toETag(long version) {
+        return "\"" + version + "\"";
     }
 
     @GetMapping(value = "/new-offers", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public List<VideobridgeConferenceOffer> getNewOffers(
+    public CompletableFuture<List<VideobridgeConferenceOffer>> getNewOffers(
             VideobridgeAuthenticationToken authToken,
             @RequestParam(value = "speaker", defaultValue = "true") boolean speaker,
             HttpServletResponse response
-    ) throws IOException, JvbInstanceRestException {
+    ) {
         if (authToken.isGuest() && speaker) {
             throw new ConflictException("a guest can not speak");
         }
         response.setHeader("Webrtc-Simulcast", "true");
-        return newVideobridgeService.getNewOffers(authToken.getConferenceGid(), authToken.getEndpoint(), speaker);
+        // a double-fired join gets the offers of the endpoint created by the first request
+        return singleFlight.execute(
+                speaker ? "new-offers-speaker" : "new-offers-listener",
+                authToken.getConferenceGid(),
+                authToken.getEndpoint(),
+                OFFERS_TYPE,
+                () -> newVideobridgeService.getNewOffers(authToken.getConferenceGid(), authToken.getEndpoint(), speaker)
+        );
     }
 
     @GetMapping(value = "/current-offers", produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public List<VideobridgeConferenceOffer> getCurrentOffers(
-            VideobridgeAuthenticationToken authToken
-    ) throws JvbInstanceRestException, IOException {
-        return newVideobridgeService.getCurrentOffers(authToken.getConferenceGid(), authToken.getEndpoint());
+    public CompletableFuture<ResponseEntity<List<VideobridgeConferenceOffer>>> getCurrentOffers(
+            VideobridgeAuthenticationToken authToken,
+            WebRequest webRequest
+    ) {
+        String conferenceGid = authToken.getConferenceGid();
+        // nothing has changed in the conference since the client got its offers, the videobridges are not asked
+        if (webRequest.checkNotModified(toETag(conferenceVersionService.get(conferenceGid)))) {
+            return null;
+        }
+        return offersPush.getCurrentOffers(conferenceGid, authToken.getEndpoint())
+                .thenApply(x -> ResponseEntity.ok()
+                        .eTag(toETag(x.getVersion()))
+                        .body(x.getOffers()));
+    }
+
+    /**
+     * Offers of the endpoint pushed as `offers` events whenever the conference changes, the event id is the version.
+     */
+    @GetMapping(value = "/offers-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamOffers(
+            VideobridgeAuthenticationToken authToken,
+            @RequestHeader(value = "Last-Event-ID", defaultValue = "-1") long lastEventId
+    ) {
+        return offersPush.subscribe(authToken.getConferenceGid(), authToken.getEndpoint(), lastEventId);
     }
 
     @PostMapping(value = "/answers", consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(value = HttpStatus.OK)
-    public void processAnswers(
+    public CompletableFuture<Void> processAnswers(
             VideobridgeAuthenticationToken authToken,
             @RequestBody List<VideobridgeConferenceAnswer> conferences
-    ) throws IOException, JvbInstanceRestException {
-        newVideobridgeService.processAnswers(authToken.getConferenceGid(), authToken.getEndpoint(), conferences);
+    ) {
+        return newVideobridgeService.processAnswers(authToken.getConferenceGid(), authToken.getEndpoint(), conferences);
     }
 
     @DeleteMapping
     @ResponseStatus(HttpStatus.OK)
-    public void delete(VideobridgeAuthenticationToken authToken) {
-        newVideobridgeService.delete(authToken.getConferenceGid(), authToken.getEndpoint(), false);
+    public CompletableFuture<Void> delete(VideobridgeAuthenticationToken authToken) {
+        return CompletableFuture.runAsync(
+                () -> newVideobridgeService.delete(authToken.getConferenceGid(), authToken.getEndpoint(), false),
+                signalingExecutor
+        );
     }
 
     @PostMapping(value = "/log/error", consumes = MediaType.TEXT_PLAIN_VALUE)
@@ -0,0 +1,157 @@
+package com.connectclub.jvbuster.web;
+
+import com.google.gson.Gson;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Type;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Concurrent identical signaling requests, keyed by (operation, gid, endpoint), share one computation and
+ * all of them get its result or its exception. In the shared mode the computation is also shared with the
+ * other jvbusters through redis, the result is passed to them as json.
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class RemoteResult {
+        private String flightId;
+        // null if the computation has failed
+        private String json;
+    }
+
+    private final Gson gson = new Gson();
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<String>> remoteFlights = new ConcurrentHashMap<>();
+
+    private final RedissonClient redissonClient;
+    private final RTopic topic;
+    private final boolean shared;
+    private final long leaseInMillis;
+    // the computations are started on it, never on a redis or a timer thread
+    private final Executor signalingExecutor;
+
+    public SingleFlight(
+            @Value("${jvb.single-flight.shared}") boolean shared,
+            @Value("${jvb.single-flight.lease-in-millis}") long leaseInMillis,
+            @Qualifier("signalingExecutor") Executor signalingExecutor,
+            RedissonClient redissonClient
+    ) {
+        this.shared = shared;
+        this.leaseInMillis = leaseInMillis;
+        this.signalingExecutor = signalingExecutor;
+        this.redissonClient = redissonClient;
+        this.topic = redissonClient.getTopic("single-flight", StringCodec.INSTANCE);
+        if (shared) {
+            topic.addListener(String.class, (channel, msg) -> {
+                RemoteResult remoteResult = gson.fromJson(msg, RemoteResult.class);
+                CompletableFuture<String> remoteFlight = remoteFlights.get(remoteResult.getFlightId());
+                if (remoteFlight != null) {
+                    remoteFlight.complete(remoteResult.getJson());
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String operation, String gid, String endpoint, Type resultType, Supplier<CompletableFuture<T>> computation) {
+        String key = operation + "-" + gid + "-" + endpoint;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> currentFlight = flights.putIfAbsent(key, flight);
+        if (currentFlight != null) {
+            // a copy, so the flight can not be completed or cancelled by one of its requests
+            return (CompletableFuture<T>) currentFlight.copy();
+        }
+        CompletableFuture<T> result = shared ? executeShared(key, resultType, computation) : compute(computation);
+        result.whenComplete((x, e) -> {
+            if (e != null) {
+                flight.completeExceptionally(e);
+            } else {
+                flight.complete(x);
+            }
+            flights.remove(key, flight);
+        });
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> compute(Supplier<CompletableFuture<T>> computation) {
+        try {
+            return computation.get();
+        } catch (RuntimeException | Error e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> executeShared(String key, Type resultType, Supplier<CompletableFuture<T>> computation) {
+        RBucket<String> claim = redissonClient.getBucket("single-flight-" + key, StringCodec.INSTANCE);
+        String flightId = UUID.randomUUID().toString();
+        return claim.trySetAsync(flightId, leaseInMillis, TimeUnit.MILLISECONDS).toCompletableFuture().thenComposeAsync(claimed -> {
+            if (!claimed) {
+                return claim.getAsync().toCompletableFuture()
+                        .thenCompose(remoteFlightId -> remoteFlightId != null ? awaitRemote(remoteFlightId) : CompletableFuture.completedFuture(null))
+                        // the remote computation is over, has failed or is too slow
+                        .thenComposeAsync(json -> json != null ? CompletableFuture.completedFuture(gson.<T>fromJson(json, resultType)) : compute(computation), signalingExecutor);
+            }
+            CompletableFuture<T> result = compute(computation);
+            result.whenComplete((x, e) -> publish(flightId, e == null ? gson.toJson(x, resultType) : null)
+                    .thenRun(() -> claim.compareAndSetAsync(flightId, null)));
+            return result;
+        }, signalingExecutor);
+    }
+
+    private RBucket<String> getResultBucket(String flightId) {
+        return redissonClient.getBucket("single-flight-result-" + flightId, StringCodec.INSTANCE);
+    }
+
+    private CompletableFuture<Void> publish(String flightId, String json) {
+        CompletableFuture<Void> stored = json != null
+                ? getResultBucket(flightId).setAsync(json, leaseInMillis, TimeUnit.MILLISECONDS).toCompletableFuture()
+                : CompletableFuture.completedFuture(null);
+        return stored
+                .thenCompose(x -> topic.publishAsync(gson.toJson(new RemoteResult(flightId, json))).toCompletableFuture())
+                .handle((x, e) -> {
+                    if (e != null) {
+                        log.warn("Can not publish the result of flight(id={})", flightId, e);
+                    }
+                    return null;
+                });
+    }
+
+    // completes with null if the flight has not been completed in time
+    private CompletableFuture<String> awaitRemote(String flightId) {
+        CompletableFuture<String> remoteFlight = remoteFlights.computeIfAbsent(flightId, x -> new CompletableFuture<>());
+        // the result may have been published before the future was registered
+        getResultBucket(flightId).getAsync().onComplete((json, e) -> {
+            if (json != null) {
+                remoteFlight.complete(json);
+            }
+        });
+        return remoteFlight.copy()
+                .orTimeout(leaseInMillis, TimeUnit.MILLISECONDS)
+                .handle((json, e) -> {
+                    remoteFlights.remove(flightId, remoteFlight);
+                    if (e != null) {
+                        log.warn("Flight(id={}) has not been completed in time", flightId);
+                        return null;
+                    }
+                    return json;
+                });
+    }
+}
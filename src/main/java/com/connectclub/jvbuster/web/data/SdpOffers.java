@@ -0,0 +1,20 @@
+package com.connectclub.jvbuster.web.data;
+
+import com.connectclub.jvbuster.videobridge.data.sdp.SessionDescription;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Offers of the legacy signaling, written as text separated by empty lines.
+ */
+@Data
+@AllArgsConstructor
+public class SdpOffers {
+    private List<SessionDescription> offers;
+
+    public int getExpectedLength() {
+        return offers.stream().mapToInt(SessionDescription::getExpectedLength).sum();
+    }
+}
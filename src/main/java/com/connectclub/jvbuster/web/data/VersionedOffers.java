@@ -0,0 +1,17 @@
+package com.connectclub.jvbuster.web.data;
+
+import com.connectclub.jvbuster.videobridge.data.VideobridgeConferenceOffer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionedOffers {
+    // version of the conference taken before the offers
+    private long version;
+    private List<VideobridgeConferenceOffer> offers;
+}
@@ -0,0 +1,63 @@
+package com.connectclub.jvbuster.monitoring;
+
+import com.connectclub.jvbuster.monitoring.i.ConferenceSyncService;
+import com.connectclub.jvbuster.monitoring.i.JvbConferencesTasksService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DefaultConferenceSyncServiceTest {
+
+    @Mock
+    private JvbConferencesTasksService jvbConferencesTasksService;
+
+    private final List<Runnable> queue = new ArrayList<>();
+
+    private ConferenceSyncService conferenceSyncService;
+
+    @BeforeEach
+    public void beforeEach() {
+        conferenceSyncService = new DefaultConferenceSyncService(jvbConferencesTasksService, queue::add);
+    }
+
+    @Test
+    public void pendingSyncIsSharedTest() {
+        CompletableFuture<Void> first = conferenceSyncService.requestSync("1");
+        CompletableFuture<Void> second = conferenceSyncService.requestSync("1");
+        CompletableFuture<Void> other = conferenceSyncService.requestSync("2");
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, queue.size());
+
+        queue.forEach(Runnable::run);
+        assertTrue(first.isDone());
+        verify(jvbConferencesTasksService, times(1)).syncConferences("1");
+        verify(jvbConferencesTasksService, times(1)).syncConferences("2");
+    }
+
+    @Test
+    public void requestDuringSyncSchedulesAnotherOneTest() {
+        CompletableFuture<Void> first = conferenceSyncService.requestSync("1");
+        doAnswer(invocation -> {
+            assertNotSame(first, conferenceSyncService.requestSync("1"));
+            return null;
+        }).when(jvbConferencesTasksService).syncConferences("1");
+        queue.remove(0).run();
+
+        assertEquals(1, queue.size());
+        doThrow(new RuntimeException("sync failed")).when(jvbConferencesTasksService).syncConferences("1");
+        CompletableFuture<Void> second = conferenceSyncService.requestSync("1");
+        queue.remove(0).run();
+        assertTrue(second.isCompletedExceptionally());
+    }
+}
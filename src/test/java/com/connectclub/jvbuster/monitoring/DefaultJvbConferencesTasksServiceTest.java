@@ -0,0 +1,150 @@
+package com.connectclub.jvbuster.monitoring;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.repository.i.JvbConferenceDataRepository;
+import com.connectclub.jvbuster.repository.i.JvbInstanceDataRepository;
+import com.connectclub.jvbuster.videobridge.JvbInstance;
+import com.connectclub.jvbuster.videobridge.data.ConferenceSnapshot;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RLock;
+import org.redisson.api.RReadWriteLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DefaultJvbConferencesTasksServiceTest {
+
+    @Mock
+    private JvbConferenceDataRepository jvbConferenceDataRepository;
+
+    @Mock
+    private JvbInstanceDataRepository jvbInstanceDataRepository;
+
+    @Mock
+    private JvbInstanceRegistryService jvbInstanceRegistryService;
+
+    @Mock
+    private ConferenceSnapshotService conferenceSnapshotService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private ConferenceVersionService conferenceVersionService;
+
+    private DefaultJvbConferencesTasksService jvbConferencesTasksService;
+
+    @BeforeEach
+    public void beforeEach() {
+        jvbConferencesTasksService = new DefaultJvbConferencesTasksService(
+                999,
+                80,
+                500,
+                jvbConferenceDataRepository,
+                jvbInstanceDataRepository,
+                jvbInstanceRegistryService,
+                conferenceSnapshotService,
+                transactionTemplate,
+                redissonClient,
+                conferenceVersionService
+        );
+    }
+
+    @Test
+    public void cacheConferencesLocksOnlyChangedConferencesTest() {
+        JvbInstanceData instanceData = JvbInstanceData.builder().id("jvb-1").build();
+        JvbInstance instance = mock(JvbInstance.class);
+        when(jvbInstanceDataRepository.findAllByRespondingIsTrue()).thenReturn(List.of(instanceData));
+        when(jvbInstanceRegistryService.get(instanceData)).thenReturn(instance);
+        when(instance.getConferencesAsync()).thenReturn(CompletableFuture.completedFuture(List.of(
+                Conference.builder().id("a").gid("1").build(),
+                Conference.builder().id("b").gid("2").build()
+        )));
+        when(jvbConferenceDataRepository.findAll()).thenReturn(List.of(
+                JvbConferenceData.builder().id("1-a").gid("1").confId("a").instance(instanceData).build()
+        ));
+        RReadWriteLock readWriteLock = mock(RReadWriteLock.class);
+        RLock writeLock = mock(RLock.class);
+        when(redissonClient.getReadWriteLock("conference-2")).thenReturn(readWriteLock);
+        when(readWriteLock.writeLock()).thenReturn(writeLock);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        jvbConferencesTasksService.cacheConferences();
+
+        verify(redissonClient, times(1)).getReadWriteLock(any());
+        verify(writeLock).lock();
+        verify(writeLock).unlock();
+        verify(jvbConferenceDataRepository).saveAll(List.of(
+                JvbConferenceData.builder().id("2-b").gid("2").confId("b").instance(instanceData).build()
+        ));
+        verify(conferenceSnapshotService).retain(Set.of("1-a", "2-b"));
+        verify(conferenceVersionService).bump("2");
+        verifyNoMoreInteractions(conferenceVersionService);
+    }
+
+    @Test
+    public void syncConferencesBumpsVersionOnlyIfListenersChangedTest() {
+        JvbInstanceData speakerInstance = JvbInstanceData.builder().id("jvb-1").host("10.0.0.1").build();
+        JvbInstanceData listenerInstance = JvbInstanceData.builder().id("jvb-2").host("10.0.0.2").build();
+        JvbConferenceData speakerConference = JvbConferenceData.builder().id("1a-a").gid("1a").confId("a").instance(speakerInstance).build();
+        JvbConferenceData listenerConference = JvbConferenceData.builder().id("1a-b").gid("1a").confId("b").instance(listenerInstance).build();
+        when(jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers("1a", true)).thenReturn(List.of(speakerConference));
+        when(jvbConferenceDataRepository.findAllByGidAndInstanceForSpeakers("1a", false)).thenReturn(List.of(listenerConference));
+        UUID speakerUuid = UUID.randomUUID();
+        when(conferenceSnapshotService.get(speakerConference, 500)).thenReturn(CompletableFuture.completedFuture(Conference.builder()
+                .id("a")
+                .contents(List.of(Content.builder()
+                        .name("audio")
+                        .channel(Channel.builder().id("audio1").endpoint("speaker").ssrcs(List.of(1L)).build())
+                        .build()))
+                .endpoints(List.of(Endpoint.builder().id("speaker").uuid(speakerUuid).build()))
+                .build()));
+        Conference patchedListenerConference = Conference.builder()
+                .id("b")
+                .contents(List.of(Content.builder()
+                        .name("audio")
+                        .channel(OctoChannel.builder().id("octo-audio").sources(List.of(Source.builder().endpointId("speaker").endpointUuid(speakerUuid).ssrc(1L).build())).build())
+                        .build()))
+                .endpoints(List.of(Endpoint.builder().id("speaker").uuid(speakerUuid).build()))
+                .build();
+        when(conferenceSnapshotService.patch(eq(listenerInstance), eq("1a"), any())).thenReturn(CompletableFuture.completedFuture(patchedListenerConference));
+        when(conferenceSnapshotService.patch(eq(speakerInstance), eq("1a"), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // the speaker is new to the listener videobridge
+        when(conferenceSnapshotService.getSnapshot("1a-b")).thenReturn(Optional.of(new ConferenceSnapshot(1, "jvb-2", System.nanoTime(), Conference.builder().id("b").build(), -1)));
+        jvbConferencesTasksService.syncConferences("1a");
+        verify(conferenceVersionService).bump("1a");
+
+        // nothing has changed since the previous sync
+        when(conferenceSnapshotService.getSnapshot("1a-b")).thenReturn(Optional.of(new ConferenceSnapshot(2, "jvb-2", System.nanoTime(), patchedListenerConference, -1)));
+        jvbConferencesTasksService.syncConferences("1a");
+        verifyNoMoreInteractions(conferenceVersionService);
+    }
+}
@@ -55,6 +55,8 @@ public class DefaultJvbInstancesTasksServiceTest {
                 jvbInstanceDataRepository,
                 jvbConferenceDataRepository,
                 nodeExporterService,
+                null,
+                null,
                 null
         );
     }
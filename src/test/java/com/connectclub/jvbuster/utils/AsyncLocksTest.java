@@ -0,0 +1,49 @@
+package com.connectclub.jvbuster.utils;
+
+import com.connectclub.jvbuster.exception.ConflictException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RLock;
+import org.redisson.misc.RedissonPromise;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class AsyncLocksTest {
+
+    @Test
+    public void lockIsHeldUntilActionCompletesTest() throws Exception {
+        RLock lock = mock(RLock.class);
+        RedissonPromise<Void> locked = new RedissonPromise<>();
+        when(lock.lockAsync(anyLong())).thenReturn(locked);
+        when(lock.unlockAsync(anyLong())).thenReturn(RedissonPromise.newSucceededFuture(null));
+        CompletableFuture<String> action = new CompletableFuture<>();
+
+        CompletableFuture<String> result = AsyncLocks.withLock(lock, () -> action);
+        ArgumentCaptor<Long> ownerId = ArgumentCaptor.forClass(Long.class);
+        verify(lock).lockAsync(ownerId.capture());
+        assertTrue(ownerId.getValue() < 0);
+
+        locked.trySuccess(null);
+        verify(lock, never()).unlockAsync(anyLong());
+        assertFalse(result.isDone());
+
+        action.complete("result");
+        verify(lock).unlockAsync(ownerId.getValue());
+        assertEquals("result", result.get());
+    }
+
+    @Test
+    public void busyLockFailsTest() {
+        RLock lock = mock(RLock.class);
+        when(lock.tryLockAsync(anyLong())).thenReturn(RedissonPromise.newSucceededFuture(false));
+
+        CompletableFuture<String> result = AsyncLocks.withTryLock(lock, () -> CompletableFuture.completedFuture("result"), () -> new ConflictException("busy"));
+        assertTrue(assertThrows(ExecutionException.class, result::get).getCause() instanceof ConflictException);
+        verify(lock, never()).unlockAsync(anyLong());
+    }
+}
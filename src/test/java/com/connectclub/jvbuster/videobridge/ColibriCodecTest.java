@@ -0,0 +1,136 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.google.gson.*;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColibriCodecTest {
+
+    // The reflective configuration which was used before the codec
+    private final static Gson reflectiveGson = new GsonBuilder()
+            .registerTypeAdapter(ChannelCommon.class, (JsonDeserializer<ChannelCommon>) (json, typeOfT, context) -> {
+                JsonElement typeElem = json.getAsJsonObject().get("type");
+                if (typeElem != null && "octo".equals(typeElem.getAsString())) {
+                    return ColibriCodecTest.reflectiveGson.fromJson(json, OctoChannel.class);
+                }
+                return ColibriCodecTest.reflectiveGson.fromJson(json, Channel.class);
+            })
+            .registerTypeAdapter(ChannelCommon.class, (JsonSerializer<ChannelCommon>) (src, typeOfSrc, context) -> {
+                if (src instanceof OctoChannel) {
+                    return ColibriCodecTest.reflectiveGson.toJsonTree(src, OctoChannel.class);
+                }
+                return ColibriCodecTest.reflectiveGson.toJsonTree(src, Channel.class);
+            })
+            .create();
+
+    private InputStreamReader conferenceResponse() {
+        return new InputStreamReader(getClass().getResourceAsStream("/colibri-conference.response"), StandardCharsets.UTF_8);
+    }
+
+    private static String write(Object src) throws IOException {
+        Buffer buffer = new Buffer();
+        ColibriCodec.toRequestBody(src).writeTo(buffer);
+        return buffer.readUtf8();
+    }
+
+    @Test
+    public void readConferenceTest() {
+        Conference expected = reflectiveGson.fromJson(conferenceResponse(), Conference.class);
+        Conference conference = ColibriCodec.fromJson(conferenceResponse(), Conference.class);
+
+        assertEquals(expected, conference);
+        assertEquals(UUID.fromString("00000000-0000-0001-0000-000000000002"), conference.getEndpoints().get(0).getUuid());
+
+        List<ChannelCommon> channels = conference.getContents().get(0).getChannels();
+        Channel channel = (Channel) channels.get(0);
+        assertEquals(List.of(1234L, 5678L), channel.getSources());
+        assertEquals(Channel.Direction.SENDRECV, channel.getDirection());
+        assertEquals(Channel.RtpLevelRelayType.TRANSLATOR, channel.getRtpLevelRelayType());
+
+        OctoChannel octoChannel = (OctoChannel) channels.get(1);
+        assertEquals(4321L, octoChannel.getSources().get(0).getSsrc());
+        assertEquals(Set.of("10.0.0.2:4096"), octoChannel.getRelays());
+    }
+
+    @Test
+    public void readConferenceListTest() {
+        String json = "[" + ColibriCodec.toJson(ColibriCodec.fromJson(conferenceResponse(), Conference.class)) + ", {\"id\": \"conference-2\"}]";
+        List<Conference> expected = reflectiveGson.fromJson(json, Conference.LIST_TYPE);
+        List<Conference> conferences = ColibriCodec.fromJson(new StringReader(json), Conference.LIST_TYPE);
+
+        assertEquals(expected, conferences);
+        assertEquals(List.of(), conferences.get(1).getContents());
+    }
+
+    @Test
+    public void writeOctoPatchTest() throws IOException {
+        Conference patch = JvbConferenceUtils.buildPatchWithOcto(
+                "123abc",
+                "conference-1",
+                Set.of("10.0.0.2:4096"),
+                Map.of("endpoint-2", new UUID(3, 4)),
+                List.of(Map.entry("endpoint-2", List.of(4321L))),
+                List.of(Map.entry("endpoint-2", List.of(8765L, 8766L))),
+                List.of(Map.entry("SIM", List.of(8765L, 8766L)))
+        );
+
+        String json = write(patch);
+
+        assertFalse(json.contains("\n"));
+        assertEquals(JsonParser.parseString(reflectiveGson.toJson(patch)), JsonParser.parseString(json));
+        assertEquals(json, ColibriCodec.toJson(patch));
+    }
+
+    @Test
+    public void writeChannelPatchTest() throws IOException {
+        Conference patch = Conference.builder()
+                .id("conference-1")
+                .contents(List.of(Content.builder()
+                        .name("video")
+                        .channel(Channel.builder()
+                                .id("video-channel-1")
+                                .endpoint("endpoint-1")
+                                .direction(Channel.Direction.SENDONLY)
+                                .rtpLevelRelayType(Channel.RtpLevelRelayType.TRANSLATOR)
+                                .payloadTypes(List.of(PayloadType.builder().id(100).name("VP8").clockrate(90000).parameters(Map.of("x-google-start-bitrate", 800)).build()))
+                                .ssrcGroups(List.of(SsrcGroup.build("FID", List.of(1L, 2L))))
+                                .sources(List.of(1L, 2L))
+                                .build())
+                        .sctpConnection(SctpConnection.builder().id("sctp-1").port(5000).build())
+                        .build()))
+                .build();
+
+        String json = write(patch);
+
+        assertEquals(JsonParser.parseString(reflectiveGson.toJson(patch)), JsonParser.parseString(json));
+        assertEquals(reflectiveGson.fromJson(json, Conference.class), ColibriCodec.fromJson(new StringReader(json), Conference.class));
+    }
+
+    @Test
+    public void writeTemplatePatchTest() throws IOException {
+        Conference patch = JvbConferenceUtils.buildPatchWithNewEndpoint(
+                JvbConferenceData.builder().gid("123abc").confId("conference-1").build(),
+                "endpoint-1",
+                "primary",
+                Channel.Direction.SENDRECV
+        );
+
+        String json = write(patch);
+
+        assertEquals(JsonParser.parseString(reflectiveGson.toJson(patch)), JsonParser.parseString(json));
+        assertTrue(json.contains(reflectiveGson.toJson(ChannelTemplate.VIDEO.getPayloadTypes())));
+    }
+}
@@ -0,0 +1,118 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.SpeakersChannels;
+import com.connectclub.jvbuster.videobridge.data.VideobridgeChannel;
+import com.connectclub.jvbuster.videobridge.data.VideobridgeConferenceOffer;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConferenceIndexTest {
+
+    private static Channel channel(String id, String endpoint, Channel.Direction direction, List<Long> ssrcs) {
+        return Channel.builder()
+                .id(id)
+                .endpoint(endpoint)
+                .direction(direction)
+                .ssrcs(ssrcs)
+                .sources(List.of())
+                .ssrcGroups(List.of())
+                .build();
+    }
+
+    private static Conference conference(String id, List<String> endpoints, String displayName) {
+        Content.ContentBuilder audio = Content.builder().name("audio");
+        Content.ContentBuilder video = Content.builder().name("video");
+        Content.ContentBuilder data = Content.builder().name("data");
+        for (int i = 0; i < endpoints.size(); i++) {
+            String endpoint = endpoints.get(i);
+            Channel.Direction direction = i == 0 ? Channel.Direction.SENDRECV : Channel.Direction.SENDONLY;
+            audio.channel(channel(id + "-audio-" + endpoint, endpoint, direction, List.of(100L + i)));
+            video.channel(channel(id + "-video-" + endpoint, endpoint, direction, i % 2 == 0 ? List.of(200L + i) : List.of()));
+            data.sctpConnection(SctpConnection.builder().id(id + "-sctp-" + endpoint).endpoint(endpoint).build());
+        }
+        audio.channel(OctoChannel.builder().id("octo").build());
+        return Conference.builder()
+                .id(id)
+                .contents(List.of(audio.build(), video.build(), data.build()))
+                .channelBundles(endpoints.stream()
+                        .map(x -> ChannelBundle.builder()
+                                .id(x)
+                                .transport(Transport.builder().ufrag("ufrag-" + x).candidates(List.of()).fingerprints(List.of()).build())
+                                .build())
+                        .collect(Collectors.toList()))
+                .endpoints(endpoints.stream()
+                        .map(x -> Endpoint.builder().id(x).uuid(UUID.nameUUIDFromBytes(x.getBytes())).displayName(displayName).build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    @Test
+    public void lookupTest() {
+        Conference conference = conference("conference-1", List.of("endpoint-1", "endpoint-2", "endpoint-3"), "primary");
+        ConferenceIndex index = ConferenceIndex.of(conference);
+
+        assertSame(index, ConferenceIndex.of(conference));
+        assertTrue(index.hasEndpoint("endpoint-2"));
+        assertFalse(index.hasEndpoint("endpoint-4"));
+        assertEquals(List.of("conference-1-audio-endpoint-2"), index.getChannels("endpoint-2", "audio").stream().map(Channel::getId).collect(Collectors.toList()));
+        assertEquals(List.of(), index.getChannels("endpoint-4", "audio"));
+        assertEquals(3, index.getChannels("audio").size());
+        assertEquals(
+                List.of("conference-1-video-endpoint-1", "conference-1-video-endpoint-3"),
+                index.getSendingChannels("video").stream().map(Channel::getId).collect(Collectors.toList())
+        );
+        assertEquals("conference-1-sctp-endpoint-3", index.getSctpConnections("endpoint-3").get(0).getId());
+        assertEquals("ufrag-endpoint-3", index.getChannelBundle("endpoint-3").getTransport().getUfrag());
+        assertThrows(UnsupportedOperationException.class, () -> index.getChannels("audio").clear());
+
+        // an equal but different conference gets its own index
+        assertNotSame(index, ConferenceIndex.of(conference("conference-1", List.of("endpoint-1", "endpoint-2", "endpoint-3"), "primary")));
+    }
+
+    @Test
+    public void listenerOfferDoesNotModifySnapshotsTest() {
+        Conference confForListener = conference("conference-2", List.of("listener-1", "endpoint-1"), "primary");
+        Conference confForSpeaker = conference("conference-1", List.of("endpoint-1", "endpoint-2"), "primary");
+        int listenerAudioChannels = confForListener.getContents().get(0).getChannels().size();
+
+        VideobridgeConferenceOffer offer = VideobridgeConferenceUtils.toVideobridgeConference("jvb-1", confForListener, List.of(confForSpeaker), "listener-1");
+
+        assertEquals(listenerAudioChannels, confForListener.getContents().get(0).getChannels().size());
+        assertEquals("conference-2-audio-listener-1", offer.getPrimaryAudioChannel().getId());
+        assertEquals(
+                List.of("conference-1-audio-endpoint-1"),
+                offer.getAudioChannels().stream().map(VideobridgeChannel::getId).collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void sharedSpeakersChannelsTest() {
+        SpeakersChannels speakersChannels = VideobridgeConferenceUtils.toSpeakersChannels(List.of(
+                conference("conference-1", List.of("endpoint-1", "endpoint-2"), "primary"),
+                conference("conference-3", List.of("endpoint-3", "endpoint-4"), "primary")
+        ));
+        Conference confForListener1 = conference("conference-2", List.of("listener-1", "endpoint-1", "endpoint-3"), "primary");
+        Conference confForListener2 = conference("conference-4", List.of("listener-2", "endpoint-1"), "primary");
+
+        VideobridgeConferenceOffer offer1 = VideobridgeConferenceUtils.toVideobridgeConference("jvb-2", confForListener1, speakersChannels, "listener-1");
+        VideobridgeConferenceOffer offer2 = VideobridgeConferenceUtils.toVideobridgeConference("jvb-4", confForListener2, speakersChannels, "listener-2");
+
+        assertEquals(
+                List.of("conference-1-audio-endpoint-1", "conference-3-audio-endpoint-3"),
+                offer1.getAudioChannels().stream().map(VideobridgeChannel::getId).collect(Collectors.toList())
+        );
+        assertEquals(
+                List.of("conference-1-audio-endpoint-1"),
+                offer2.getAudioChannels().stream().map(VideobridgeChannel::getId).collect(Collectors.toList())
+        );
+        // the speaker part is converted only once
+        assertSame(offer1.getAudioChannels().get(0), offer2.getAudioChannels().get(0));
+        assertEquals("conference-4-audio-listener-2", offer2.getPrimaryAudioChannel().getId());
+    }
+}
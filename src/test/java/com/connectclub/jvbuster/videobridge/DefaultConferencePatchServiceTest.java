@@ -0,0 +1,159 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.jvb.Channel;
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+import com.connectclub.jvbuster.videobridge.data.jvb.Content;
+import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
+import com.connectclub.jvbuster.videobridge.i.ConferencePatchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DefaultConferencePatchServiceTest {
+
+    @Mock
+    private JvbInstance jvbInstance;
+
+    private ConferencePatchService conferencePatchService;
+
+    private final List<Runnable> scheduledFlushes = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeClass() {
+        conferencePatchService = new DefaultConferencePatchService(50, 10) {
+            @Override
+            void scheduleFlush(Runnable flush) {
+                scheduledFlushes.add(flush);
+            }
+        };
+        when(jvbInstance.getId()).thenReturn("jvb-1");
+    }
+
+    private void closeWindows() {
+        List<Runnable> flushes = new ArrayList<>(scheduledFlushes);
+        scheduledFlushes.clear();
+        flushes.forEach(Runnable::run);
+    }
+
+    private static Conference patch(String channelId, String endpoint) {
+        return Conference.builder()
+                .id("conference-1")
+                .contents(List.of(Content.builder()
+                        .name("audio")
+                        .channel(Channel.builder().id(channelId).endpoint(endpoint).build())
+                        .build()))
+                .build();
+    }
+
+    @Test
+    public void mergePatchesTest() throws Exception {
+        Conference response = Conference.builder().id("conference-1").build();
+        when(jvbInstance.patchConferenceAsync(any())).thenReturn(CompletableFuture.completedFuture(response));
+
+        CompletableFuture<Conference> first = conferencePatchService.patch(jvbInstance, patch(null, "endpoint-1"));
+        CompletableFuture<Conference> second = conferencePatchService.patch(jvbInstance, patch("channel-2", "endpoint-2"));
+        closeWindows();
+
+        assertSame(response, JvbInstance.await(first));
+        assertSame(response, JvbInstance.await(second));
+
+        ArgumentCaptor<Conference> captor = ArgumentCaptor.forClass(Conference.class);
+        verify(jvbInstance, times(1)).patchConferenceAsync(captor.capture());
+        assertEquals(2, captor.getValue().getContents().get(0).getChannels().size());
+    }
+
+    @Test
+    public void conflictingPatchesTest() throws Exception {
+        CompletableFuture<Conference> firstResponse = new CompletableFuture<>();
+        Conference secondResponse = Conference.builder().id("conference-1").gid("second").build();
+        when(jvbInstance.patchConferenceAsync(any()))
+                .thenReturn(firstResponse)
+                .thenReturn(CompletableFuture.completedFuture(secondResponse));
+
+        CompletableFuture<Conference> first = conferencePatchService.patch(jvbInstance, patch("channel-1", "endpoint-1"));
+        CompletableFuture<Conference> second = conferencePatchService.patch(jvbInstance, patch("channel-1", "endpoint-1"));
+        closeWindows();
+
+        // the second patch waits for the first one
+        verify(jvbInstance, times(1)).patchConferenceAsync(any());
+        assertFalse(second.isDone());
+
+        firstResponse.complete(Conference.builder().id("conference-1").build());
+        assertSame(secondResponse, JvbInstance.await(second));
+        assertTrue(first.isDone());
+        verify(jvbInstance, times(2)).patchConferenceAsync(any());
+    }
+
+    @Test
+    public void patchAfterSentBatchTest() throws Exception {
+        CompletableFuture<Conference> firstResponse = new CompletableFuture<>();
+        Conference secondResponse = Conference.builder().id("conference-1").gid("second").build();
+        when(jvbInstance.patchConferenceAsync(any()))
+                .thenReturn(firstResponse)
+                .thenReturn(CompletableFuture.completedFuture(secondResponse));
+
+        CompletableFuture<Conference> first = conferencePatchService.patch(jvbInstance, patch("channel-1", "endpoint-1"));
+        closeWindows();
+        CompletableFuture<Conference> second = conferencePatchService.patch(jvbInstance, patch("channel-1", "endpoint-1"));
+        closeWindows();
+
+        // the first batch is in flight, the second one waits for it
+        verify(jvbInstance, times(1)).patchConferenceAsync(any());
+        assertFalse(second.isDone());
+
+        firstResponse.complete(Conference.builder().id("conference-1").build());
+        assertSame(secondResponse, JvbInstance.await(second));
+        assertTrue(first.isDone());
+        verify(jvbInstance, times(2)).patchConferenceAsync(any());
+    }
+
+    @Test
+    public void fallbackToSeparatePatchesTest() {
+        JvbInstanceRestException badRequest = new JvbInstanceRestException("jvb-1", "", "PATCH", null, 400, "Bad Request", "");
+        Conference response = Conference.builder().id("conference-1").build();
+        when(jvbInstance.patchConferenceAsync(argThat(x -> x != null && x.getContents().get(0).getChannels().size() == 2)))
+                .thenReturn(CompletableFuture.failedFuture(badRequest));
+        when(jvbInstance.patchConferenceAsync(argThat(x -> x != null && x.getContents().get(0).getChannels().size() == 1 && "endpoint-1".equals(((Channel) x.getContents().get(0).getChannels().get(0)).getEndpoint()))))
+                .thenReturn(CompletableFuture.completedFuture(response));
+        when(jvbInstance.patchConferenceAsync(argThat(x -> x != null && x.getContents().get(0).getChannels().size() == 1 && "endpoint-2".equals(((Channel) x.getContents().get(0).getChannels().get(0)).getEndpoint()))))
+                .thenReturn(CompletableFuture.failedFuture(badRequest));
+
+        CompletableFuture<Conference> first = conferencePatchService.patch(jvbInstance, patch("channel-1", "endpoint-1"));
+        CompletableFuture<Conference> second = conferencePatchService.patch(jvbInstance, patch("channel-2", "endpoint-2"));
+        closeWindows();
+
+        assertDoesNotThrow(() -> JvbInstance.await(first));
+        assertThrows(JvbInstanceRestException.class, () -> JvbInstance.await(second));
+    }
+
+    @Test
+    public void allocatingPatchIsNotRetriedTest() {
+        JvbInstanceRestException badRequest = new JvbInstanceRestException("jvb-1", "", "PATCH", null, 400, "Bad Request", "");
+        Conference response = Conference.builder().id("conference-1").build();
+        when(jvbInstance.patchConferenceAsync(argThat(x -> x != null && x.getContents().get(0).getChannels().size() == 2)))
+                .thenReturn(CompletableFuture.failedFuture(badRequest));
+        when(jvbInstance.patchConferenceAsync(argThat(x -> x != null && x.getContents().get(0).getChannels().size() == 1)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        CompletableFuture<Conference> first = conferencePatchService.patch(jvbInstance, patch(null, "endpoint-1"));
+        CompletableFuture<Conference> second = conferencePatchService.patch(jvbInstance, patch("channel-2", "endpoint-2"));
+        closeWindows();
+
+        assertThrows(JvbInstanceRestException.class, () -> JvbInstance.await(first));
+        assertDoesNotThrow(() -> JvbInstance.await(second));
+        verify(jvbInstance, times(2)).patchConferenceAsync(any());
+    }
+}
@@ -0,0 +1,124 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.repository.data.JvbInstanceData;
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+import com.connectclub.jvbuster.videobridge.i.ConferencePatchService;
+import com.connectclub.jvbuster.videobridge.i.ConferenceSnapshotService;
+import com.connectclub.jvbuster.videobridge.i.JvbInstanceRegistryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DefaultConferenceSnapshotServiceTest {
+
+    @Mock
+    private JvbInstanceRegistryService jvbInstanceRegistryService;
+
+    @Mock
+    private ConferencePatchService conferencePatchService;
+
+    @Mock
+    private JvbInstance jvbInstance;
+
+    private ConferenceSnapshotService conferenceSnapshotService;
+
+    private final JvbInstanceData jvbInstanceData = JvbInstanceData.builder().id("jvb-1").build();
+    private final JvbConferenceData jvbConference = JvbConferenceData.builder()
+            .id(JvbConferenceData.buildId("1", "conference-1"))
+            .gid("1")
+            .confId("conference-1")
+            .instance(jvbInstanceData)
+            .build();
+
+    @BeforeEach
+    public void beforeEach() {
+        conferenceSnapshotService = new DefaultConferenceSnapshotService(jvbInstanceRegistryService, conferencePatchService);
+        when(jvbInstanceRegistryService.get(jvbInstanceData)).thenReturn(jvbInstance);
+    }
+
+    private static Conference conference(String gid) {
+        return Conference.builder().id("conference-1").gid(gid).build();
+    }
+
+    @Test
+    public void readThroughTest() {
+        Conference fromGet = conference("1");
+        when(jvbInstance.getConferenceAsync("conference-1")).thenReturn(CompletableFuture.completedFuture(fromGet));
+
+        assertSame(fromGet, conferenceSnapshotService.get(jvbConference, 1000).join());
+        assertSame(fromGet, conferenceSnapshotService.get(jvbConference, 1000).join());
+        verify(jvbInstance, times(1)).getConferenceAsync("conference-1");
+
+        conferenceSnapshotService.get(jvbConference, -1).join();
+        verify(jvbInstance, times(2)).getConferenceAsync("conference-1");
+    }
+
+    @Test
+    public void olderResponseDoesNotReplaceSnapshotTest() {
+        CompletableFuture<Conference> slowGet = new CompletableFuture<>();
+        when(jvbInstance.getConferenceAsync("conference-1")).thenReturn(slowGet);
+        Conference fromPatch = conference("1");
+        when(conferencePatchService.patch(any(), any())).thenReturn(CompletableFuture.completedFuture(fromPatch));
+
+        CompletableFuture<Conference> get = conferenceSnapshotService.get(jvbConference, 1000);
+        conferenceSnapshotService.patch(jvbInstanceData, "1", Conference.builder().id("conference-1").build()).join();
+        long patchVersion = conferenceSnapshotService.getSnapshot(jvbConference.getId()).orElseThrow().getVersion();
+        slowGet.complete(conference("1"));
+
+        assertNotSame(fromPatch, get.join());
+        assertSame(fromPatch, conferenceSnapshotService.get(jvbConference, 1000).join());
+        assertEquals(patchVersion, conferenceSnapshotService.getSnapshot(jvbConference.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    public void invalidationTest() {
+        CompletableFuture<Conference> slowGet = new CompletableFuture<>();
+        when(jvbInstance.getConferenceAsync("conference-1"))
+                .thenReturn(CompletableFuture.completedFuture(conference("1")))
+                .thenReturn(slowGet);
+
+        conferenceSnapshotService.get(jvbConference, 1000).join();
+        conferenceSnapshotService.retainInstances(List.of("jvb-2"));
+        assertTrue(conferenceSnapshotService.getSnapshot(jvbConference.getId()).isEmpty());
+
+        // a response to the request sent before invalidation is dropped
+        conferenceSnapshotService.get(jvbConference, 1000);
+        conferenceSnapshotService.invalidate(jvbConference.getId());
+        slowGet.complete(conference("1"));
+        assertTrue(conferenceSnapshotService.getSnapshot(jvbConference.getId()).isEmpty());
+    }
+
+    @Test
+    public void olderConferenceVersionIsNotUsedTest() {
+        when(jvbInstance.getConferenceAsync("conference-1"))
+                .thenReturn(CompletableFuture.completedFuture(conference("1")))
+                .thenReturn(CompletableFuture.completedFuture(conference("1")));
+        Conference fromPatch = conference("1");
+        when(conferencePatchService.patch(any(), any())).thenReturn(CompletableFuture.completedFuture(fromPatch));
+
+        conferenceSnapshotService.get(jvbConference, 1000, 1).join();
+        conferenceSnapshotService.get(jvbConference, 1000, 1).join();
+        verify(jvbInstance, times(1)).getConferenceAsync("conference-1");
+
+        // a change bumped by another jvbuster may be missing in the snapshot
+        conferenceSnapshotService.get(jvbConference, 1000, 2).join();
+        verify(jvbInstance, times(2)).getConferenceAsync("conference-1");
+
+        // a later patch response has the changes of the snapshot it replaces
+        conferenceSnapshotService.patch(jvbInstanceData, "1", Conference.builder().id("conference-1").build()).join();
+        assertSame(fromPatch, conferenceSnapshotService.get(jvbConference, 1000, 2).join());
+        assertEquals(2, conferenceSnapshotService.getSnapshot(jvbConference.getId()).orElseThrow().getConferenceVersion());
+        verify(jvbInstance, times(2)).getConferenceAsync("conference-1");
+    }
+}
@@ -0,0 +1,83 @@
+package com.connectclub.jvbuster.videobridge;
+
+import org.junit.jupiter.api.Test;
+
+import static com.connectclub.jvbuster.videobridge.JvbInstanceCircuitBreaker.Operation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JvbInstanceCircuitBreakerTest {
+
+    private static JvbInstanceCircuitBreaker circuitBreaker(long openDurationInMillis) {
+        return new JvbInstanceCircuitBreaker("jvb-1", JvbInstanceCircuitBreaker.Settings.builder()
+                .windowSize(10)
+                .minSamples(4)
+                .failureRateThreshold(50)
+                .consecutiveFailuresThreshold(3)
+                .openDurationInMillis(openDurationInMillis)
+                .timeoutMultiplier(2)
+                .minTimeoutInMillis(100)
+                .maxTimeoutInMillis(5000)
+                .build());
+    }
+
+    @Test
+    public void adaptiveTimeoutTest() {
+        JvbInstanceCircuitBreaker circuitBreaker = circuitBreaker(1000);
+        assertEquals(5000, circuitBreaker.getTimeoutInMillis(GET));
+        for (int i = 1; i <= 10; i++) {
+            circuitBreaker.onSuccess(GET, i * 10);
+        }
+        assertEquals(100, circuitBreaker.getLatencyPercentile(GET, 99));
+        assertEquals(100, circuitBreaker.getLatencyPercentile(GET, 95));
+        assertEquals(50, circuitBreaker.getLatencyPercentile(GET, 50));
+        assertEquals(10, circuitBreaker.getLatencyPercentile(GET, 10));
+        assertEquals(200, circuitBreaker.getTimeoutInMillis(GET));
+        // replaces the oldest one
+        circuitBreaker.onSuccess(GET, 5);
+        assertEquals(5, circuitBreaker.getLatencyPercentile(GET, 10));
+    }
+
+    @Test
+    public void timeoutPerOperationTest() {
+        JvbInstanceCircuitBreaker circuitBreaker = circuitBreaker(1000);
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onSuccess(GET, 10);
+        }
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onSuccess(BULK, 2000);
+        }
+        assertEquals(100, circuitBreaker.getTimeoutInMillis(GET));
+        assertEquals(4000, circuitBreaker.getTimeoutInMillis(BULK));
+        assertEquals(5000, circuitBreaker.getTimeoutInMillis(UPDATE));
+    }
+
+    @Test
+    public void openAndProbeTest() throws InterruptedException {
+        JvbInstanceCircuitBreaker circuitBreaker = circuitBreaker(50);
+        circuitBreaker.onSuccess(GET, 10);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        assertTrue(circuitBreaker.isOpen());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        Thread.sleep(60);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(JvbInstanceCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        // only one probe at a time
+        assertFalse(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.isOpen());
+        circuitBreaker.onFailure();
+        assertTrue(circuitBreaker.isOpen());
+
+        Thread.sleep(60);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onCancel();
+        assertFalse(circuitBreaker.isOpen());
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess(GET, 10);
+        assertEquals(JvbInstanceCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+}
@@ -0,0 +1,142 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.jvb.Conference;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JvbInstanceHedgingTest {
+
+    private HttpServer server;
+    private final AtomicBoolean stall = new AtomicBoolean();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/colibri/conferences/", exchange -> {
+            requests.incrementAndGet();
+            // only the first request after the warm-up is stuck
+            if (stall.compareAndSet(true, false)) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            byte[] body = "{\"id\":\"conference-1\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    private JvbInstance jvbInstance(int budgetPercent, int maxBurst) {
+        OkHttpClient okHttpClient = new OkHttpClient();
+        JvbInstanceCircuitBreaker circuitBreaker = new JvbInstanceCircuitBreaker("jvb-1", JvbInstanceCircuitBreaker.Settings.builder()
+                .windowSize(20)
+                .minSamples(5)
+                .failureRateThreshold(50)
+                .consecutiveFailuresThreshold(5)
+                .openDurationInMillis(1000)
+                .timeoutMultiplier(100)
+                .minTimeoutInMillis(3000)
+                .maxTimeoutInMillis(5000)
+                .build());
+        JvbInstanceHedging hedging = new JvbInstanceHedging(
+                okHttpClient.newBuilder().connectionPool(new ConnectionPool()).build(),
+                JvbInstanceHedging.Settings.builder()
+                        .budgetPercent(budgetPercent)
+                        .maxBurst(maxBurst)
+                        .minDelayInMillis(20)
+                        .build()
+        );
+        return new JvbInstance("jvb-1", "test", "http", "127.0.0.1", server.getAddress().getPort(), null, false, true, 0, okHttpClient)
+                .withClient(okHttpClient, circuitBreaker, hedging);
+    }
+
+    // the hedges of the registered instances have their own request limits
+    private JvbInstance registeredJvbInstance(int maxRequestsPerHost) {
+        DefaultJvbInstanceRegistryService registryService = new DefaultJvbInstanceRegistryService(
+                5000, 5000, 5000, 16, 300, maxRequestsPerHost,
+                20, 5, 50, 5, 1000, 100, 3000, 5000,
+                true, 5, 1, 20, 1,
+                new OkHttpClient()
+        );
+        return registryService.register(new JvbInstance("jvb-1", "test", "http", "127.0.0.1", server.getAddress().getPort(), null, false, true, 0, null));
+    }
+
+    private void warmUp(JvbInstance jvbInstance) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            JvbInstance.await(jvbInstance.getConferenceAsync("conference-1"));
+        }
+        requests.set(0);
+        stall.set(true);
+    }
+
+    @Test
+    public void slowRequestIsHedgedTest() throws Exception {
+        JvbInstance jvbInstance = jvbInstance(5, 1);
+        warmUp(jvbInstance);
+
+        long start = System.nanoTime();
+        Conference conference = JvbInstance.await(jvbInstance.getConferenceAsync("conference-1"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("conference-1", conference.getId());
+        assertEquals(2, requests.get());
+        assertTrue(elapsed < 2000, "elapsed " + elapsed + "ms");
+    }
+
+    @Test
+    public void hedgingBudgetTest() throws Exception {
+        JvbInstance jvbInstance = jvbInstance(0, 0);
+        warmUp(jvbInstance);
+        CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS).execute(release::countDown);
+
+        Conference conference = JvbInstance.await(jvbInstance.getConferenceAsync("conference-1"));
+
+        assertEquals("conference-1", conference.getId());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void hedgeDoesNotWaitForStuckRequestsTest() throws Exception {
+        JvbInstance jvbInstance = registeredJvbInstance(1);
+        warmUp(jvbInstance);
+
+        long start = System.nanoTime();
+        Conference conference = JvbInstance.await(jvbInstance.getConferenceAsync("conference-1"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("conference-1", conference.getId());
+        assertEquals(2, requests.get());
+        assertTrue(elapsed < 2000, "elapsed " + elapsed + "ms");
+    }
+}
@@ -0,0 +1,304 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.exception.BadSdpException;
+import com.connectclub.jvbuster.exception.ProgramLogicException;
+import com.connectclub.jvbuster.videobridge.data.Answer;
+import com.connectclub.jvbuster.videobridge.data.SdpAnswer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class SdpAnswerParserTest {
+
+    private static String answer(String dataMid, String confIdMid, String candidates) {
+        return String.join("\r\n",
+                "v=0",
+                "o=- 4611731400430051336 2 IN IP4 127.0.0.1",
+                "s=-",
+                "t=0 0",
+                "a=group:BUNDLE " + dataMid + " audio-mixed-a1 video-mixed-v1",
+                "a=msid-semantic: WMS stream",
+                "m=application 9 DTLS/SCTP 5000",
+                "c=IN IP4 0.0.0.0",
+                "b=AS:30",
+                "a=ice-ufrag:Tg7J",
+                "a=ice-pwd:q9kMPxKtvP0sZhT4W1c1ZuV2",
+                "a=ice-options:trickle",
+                "a=fingerprint:sha-256 6B:8B:5D:EA:59:04:20:23:29:C8:87:1C:CA:87:C8:F4:BC:D5:F4:83:D1:75:29:57:28:3C:6F:41:7A:1F:1C:66",
+                "a=setup:active",
+                "a=mid:" + dataMid,
+                "a=sctpmap:5000 webrtc-datachannel 1024",
+                candidates,
+                "m=audio 9 UDP/TLS/RTP/SAVPF 111",
+                "c=IN IP4 0.0.0.0",
+                "a=rtcp:9 IN IP4 0.0.0.0",
+                "a=ice-ufrag:Tg7J",
+                "a=ice-pwd:q9kMPxKtvP0sZhT4W1c1ZuV2",
+                "a=mid:audio-mixed-a1",
+                "a=sendrecv",
+                "a=rtcp-mux",
+                "a=rtpmap:111 opus/48000/2",
+                "a=fmtp:111 minptime=10;useinbandfec=1",
+                "a=ssrc:1001 cname:4ZcPYLqSmAXCsaQA",
+                "a=ssrc:1001 msid:stream track-a",
+                "a=ssrc:1001 mslabel:stream",
+                "m=video 9 UDP/TLS/RTP/SAVPF 100 96",
+                "c=IN IP4 0.0.0.0",
+                "a=mid:video-mixed-v1",
+                "a=sendrecv",
+                "a=rtcp-mux",
+                "a=rtpmap:100 VP8/90000",
+                "a=ssrc-group:FID 2001 2002",
+                "a=ssrc-group:SIM 2001  2003 2005",
+                "a=ssrc-group:bad 2001\t2002",
+                "a=ssrc:2001 cname:4ZcPYLqSmAXCsaQA",
+                "a=ssrc:2002 cname:4ZcPYLqSmAXCsaQA",
+                "a=ssrc:2002 msid:stream track-v",
+                "a=ssrc:2003 ",
+                "m=video 0 UDP/TLS/RTP/SAVPF 0",
+                "c=IN IP4 0.0.0.0",
+                "a=mid:video-v2",
+                "a=recvonly",
+                "m=audio 9 UDP/TLS/RTP/SAVPF 111",
+                "c=IN IP4 0.0.0.0",
+                "a=mid:audio-a2",
+                "a=recvonly",
+                confIdMid == null ? "a=ssrc:3001 cname:x" : "m=text 0 RTP/AVP 0\r\na=mid:" + confIdMid,
+                ""
+        );
+    }
+
+    private static final String CANDIDATES = String.join("\r\n",
+            "a=candidate:1467250027 1 udp 2122260223 192.168.0.196 46243 typ host generation 0 network-id 1",
+            "a=candidate:842163049 1 udp 1686052607 37.29.9.219 46243 typ srflx raddr 192.168.0.196 rport 46243 generation 0 network-id 1",
+            "a=candidate:467250027 1 tcp 1518280447 192.168.0.196 9 typ host tcptype active generation 0",
+            "a=candidate:3 1 udp 41885439 10.0.0.1 3478 typ relay raddr 37.29.9.219 rport 42000",
+            "a=candidate:4 1 udp 1 10.0.0.1 3478 typ relay rport 42000 generation 1",
+            "a=candidate:bad 1 udp 1 10.0.0.1 port typ host",
+            "a=candidate:5 1 udp 1 10.0.0.1 3478 typ"
+    );
+
+    private static final String ANSWERS = String.join("\r\n",
+            answer("data-conference-1-sctp1", null, CANDIDATES),
+            answer("sctp-2", "confId-conference-2", "a=candidate:1 1 udp 2122260223 192.168.0.196 46243 typ host generation 0"),
+            answer("data-conference-3-sctp3", null, CANDIDATES).replace("a=fingerprint:", "a=setup:passive\r\na=fingerprint:")
+    );
+
+    @Test
+    public void parseTest() {
+        List<SdpAnswer> sdpAnswers = SdpAnswerParser.parse(ANSWERS);
+        assertEquals(3, sdpAnswers.size());
+
+        SdpAnswer sdpAnswer = sdpAnswers.get(0);
+        assertTrue(sdpAnswer.getSessionDetails().startsWith("v=0\r\n"));
+        assertTrue(sdpAnswer.getSessionDetails().endsWith("a=msid-semantic: WMS stream"));
+        assertEquals(
+                List.of("application", "audio", "video", "video", "audio"),
+                sdpAnswer.getMedias().stream().map(SdpAnswer.Section::getMedia).collect(Collectors.toList())
+        );
+        SdpAnswer.Section video = sdpAnswer.findMedia("video", SdpAnswer.Section::isSendrecv);
+        assertEquals("video-mixed-v1", video.getMid());
+        assertEquals(List.of(2001L, 2002L), video.getSsrcs());
+        assertEquals(List.of(Map.entry("FID", List.of(2001L, 2002L)), Map.entry("SIM", List.of(2001L, 2003L, 2005L))), video.getSsrcGroups());
+        assertEquals("audio-a2", sdpAnswer.findMedia("audio", x -> !x.isSendrecv()).getMid());
+
+        Answer answer = SdpAnswerParser.toAnswer(sdpAnswer);
+        assertEquals("conference-1", answer.getConferenceId());
+        assertEquals("sctp1", answer.getSctpConnectionId());
+        assertEquals("a1", answer.getAudioChannelId());
+        assertEquals(List.of(1001L), answer.getAudioSsrc());
+        assertEquals("sha-256", answer.getFingerprintHash());
+        assertEquals("active", answer.getFingerprintSetup());
+        assertEquals(5, answer.getCandidates().size());
+        assertNull(answer.getCandidates().get(2).getGeneration());
+        assertEquals("37.29.9.219", answer.getCandidates().get(3).getRelAddress());
+        assertNull(answer.getCandidates().get(3).getGeneration());
+        assertNull(answer.getCandidates().get(4).getRelAddress());
+        assertEquals("42000", answer.getCandidates().get(4).getRelPort());
+
+        answer = SdpAnswerParser.toAnswer(sdpAnswers.get(1));
+        assertEquals("conference-2", answer.getConferenceId());
+        assertEquals("sctp-2", answer.getSctpConnectionId());
+    }
+
+    @Test
+    public void sameAsRegexParserTest() {
+        assertEquals(regexParse(ANSWERS), SdpAnswerParser.parse(ANSWERS).stream().map(SdpAnswerParser::toAnswer).collect(Collectors.toList()));
+        for (String candidate : CANDIDATES.split("\r\n")) {
+            assertEquals(regexParseCandidate(candidate), SdpAnswerParser.parseCandidate(candidate.substring(2)), candidate);
+        }
+    }
+
+    @Test
+    public void badSdpTest() {
+        assertThrows(BadSdpException.class, () -> SdpAnswerParser.parse("v=0"));
+        assertThrows(BadSdpException.class, () -> SdpAnswerParser.parse("v=0\r\ns=-\r\n"));
+        assertThrows(BadSdpException.class, () -> SdpAnswerParser.parse(ANSWERS + "\r\nv=0"));
+        assertThrows(ProgramLogicException.class, () -> SdpAnswerParser.toAnswer(SdpAnswerParser.parse(ANSWERS.replace("a=ice-pwd:", "a=ice-password:")).get(0)));
+    }
+
+    // not a part of the unit tests, run by gradle benchmark
+    @Test
+    @Tag("benchmark")
+    public void throughputTest() {
+        int iterations = 2000;
+        for (int i = 0; i < iterations; i++) {
+            regexParse(ANSWERS);
+            SdpAnswerParser.parse(ANSWERS).forEach(SdpAnswerParser::toAnswer);
+        }
+        long regexStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            regexParse(ANSWERS);
+        }
+        long regexTime = System.nanoTime() - regexStart;
+        long parserStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            SdpAnswerParser.parse(ANSWERS).forEach(SdpAnswerParser::toAnswer);
+        }
+        long parserTime = System.nanoTime() - parserStart;
+        long answers = (long) iterations * SdpAnswerParser.parse(ANSWERS).size();
+        log.info("Answers parsed per second: regex={}, single pass={}", answers * 1_000_000_000L / regexTime, answers * 1_000_000_000L / parserTime);
+    }
+
+    // the parsing done by SignalingController before SdpAnswerParser
+
+    private final static Pattern ssrcPattern = Pattern.compile("^a=ssrc:(?<ssrcId>\\d+)\\s+.+$");
+    private final static Pattern ssrcGroupPattern = Pattern.compile("^a=ssrc-group:(?<semantic>\\w+)\\s+(?<ssrcIdList>[0-9 ]+)$");
+    private final static Pattern midAttributePattern = Pattern.compile("^a=mid:(?<channelId>.+)$");
+    private final static Pattern midDataAttributeDeprecatedPattern = Pattern.compile("^a=mid:data-(?<conferenceId>.+)-(?<sctpConnectionId>.+)$");
+    private final static Pattern midDataAttributePattern = Pattern.compile("^a=mid:(?<sctpConnectionId>.+)$");
+    private final static Pattern midConfIdAttributePattern = Pattern.compile("^a=mid:confId-(?<conferenceId>.+)$");
+    private final static Pattern candidatePattern = Pattern.compile("^a=candidate:(?<foundation>\\S+) (?<componentId>\\d+) (?<transport>\\S+) (?<priority>\\d+) (?<connectionAddress>\\S+) (?<port>\\d+) typ (?<candidateType>\\S+)( raddr (?<relAddress>\\S+))?( rport (?<relPort>\\d+))?( generation (?<generation>\\d+))?.*$");
+
+    private static Answer.Candidate regexParseCandidate(String line) {
+        Matcher x = candidatePattern.matcher(line);
+        if (!x.matches()) {
+            return null;
+        }
+        return Answer.Candidate.builder()
+                .foundation(x.group("foundation"))
+                .componentId(x.group("componentId"))
+                .transport(x.group("transport"))
+                .priority(x.group("priority"))
+                .connectionAddress(x.group("connectionAddress"))
+                .port(x.group("port"))
+                .candidateType(x.group("candidateType"))
+                .relAddress(x.group("relAddress"))
+                .relPort(x.group("relPort"))
+                .generation(x.group("generation"))
+                .build();
+    }
+
+    private static String regexChannelId(String[] mediaLines, String prefix) {
+        return Arrays.stream(mediaLines)
+                .map(midAttributePattern::matcher)
+                .filter(Matcher::matches)
+                .map(x -> x.group("channelId"))
+                .findFirst()
+                .map(x -> x.replaceAll("^" + prefix, ""))
+                .orElse(null);
+    }
+
+    private static List<Long> regexSsrcs(String[] mediaLines) {
+        return Arrays.stream(mediaLines)
+                .map(ssrcPattern::matcher)
+                .filter(Matcher::matches)
+                .map(x -> x.group("ssrcId"))
+                .map(Long::parseLong)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static List<Map.Entry<String, List<Long>>> regexSsrcGroups(String[] mediaLines) {
+        return Arrays.stream(mediaLines)
+                .map(ssrcGroupPattern::matcher)
+                .filter(Matcher::matches)
+                .map(x -> Map.entry(x.group("semantic"), Arrays.stream(x.group("ssrcIdList").split("\\s+")).map(Long::parseLong).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Answer> regexParse(String sdpAnswers) {
+        List<Answer> answers = new ArrayList<>();
+        for (String sdpAnswer : sdpAnswers.split("\r\n(?=v=)")) {
+            String[] sdpSections = SdpUtils.splitSdpIntoSections(sdpAnswer);
+
+            String[] audioMediaLines = SdpUtils.getMediaDescriptionLines(sdpSections, "audio", "\r\na=sendrecv");
+            String[] videoMediaLines = SdpUtils.getMediaDescriptionLines(sdpSections, "video", "\r\na=sendrecv");
+            String[] dataMediaLines = SdpUtils.getMediaDescriptionLines(sdpSections, "application", "");
+            String[] confIdMediaLines = SdpUtils.getMediaDescriptionLines(sdpSections, "text", "\r\na=mid:confId-");
+
+            String conferenceId;
+            String sctpConnectionId;
+            if (confIdMediaLines.length == 0) {
+                Matcher midDataAttributeMatcher = Arrays.stream(dataMediaLines)
+                        .map(midDataAttributeDeprecatedPattern::matcher)
+                        .filter(Matcher::matches)
+                        .findFirst().orElseThrow();
+                conferenceId = midDataAttributeMatcher.group("conferenceId");
+                sctpConnectionId = midDataAttributeMatcher.group("sctpConnectionId");
+            } else {
+                Matcher midConfIdAttributeMatcher = Arrays.stream(confIdMediaLines)
+                        .map(midConfIdAttributePattern::matcher)
+                        .filter(Matcher::matches)
+                        .findFirst().orElseThrow();
+                conferenceId = midConfIdAttributeMatcher.group("conferenceId");
+                Matcher midDataAttributeMatcher = Arrays.stream(dataMediaLines)
+                        .map(midDataAttributePattern::matcher)
+                        .filter(Matcher::matches)
+                        .findFirst().orElseThrow();
+                sctpConnectionId = midDataAttributeMatcher.group("sctpConnectionId");
+            }
+
+            String iceUfrag = Arrays.stream(dataMediaLines)
+                    .filter(x -> x.startsWith("a=ice-ufrag:"))
+                    .map(x -> x.replace("a=ice-ufrag:", ""))
+                    .findFirst().orElseThrow(() -> new ProgramLogicException("No 'ice-ufrag' attribute"));
+            String icePwd = Arrays.stream(dataMediaLines)
+                    .filter(x -> x.startsWith("a=ice-pwd:"))
+                    .map(x -> x.replace("a=ice-pwd:", ""))
+                    .findFirst().orElseThrow(() -> new ProgramLogicException("No 'ice-pwd' attribute"));
+            String[] fingerprintAttribute = Stream.concat(Arrays.stream(sdpSections[0].split("\r\n")), Arrays.stream(dataMediaLines))
+                    .filter(x -> x.startsWith("a=fingerprint:"))
+                    .map(x -> x.replace("a=fingerprint:", ""))
+                    .map(x -> x.split(" "))
+                    .findFirst().orElseThrow();
+            String fingerprintSetup = Arrays.stream(dataMediaLines)
+                    .filter(x -> x.startsWith("a=setup:"))
+                    .map(x -> x.replace("a=setup:", ""))
+                    .findFirst().orElse(null);
+
+            answers.add(Answer.builder()
+                    .conferenceId(conferenceId)
+                    .sctpConnectionId(sctpConnectionId)
+                    .audioChannelId(regexChannelId(audioMediaLines, "audio-mixed-"))
+                    .audioSsrc(regexSsrcs(audioMediaLines))
+                    .audioSsrcGroups(regexSsrcGroups(audioMediaLines))
+                    .videoChannelId(regexChannelId(videoMediaLines, "video-mixed-"))
+                    .videoSsrc(regexSsrcs(videoMediaLines))
+                    .videoSsrcGroups(regexSsrcGroups(videoMediaLines))
+                    .fingerprintValue(fingerprintAttribute[1])
+                    .fingerprintHash(fingerprintAttribute[0])
+                    .fingerprintSetup(fingerprintSetup)
+                    .iceUfrag(iceUfrag)
+                    .icePwd(icePwd)
+                    .candidates(Arrays.stream(dataMediaLines)
+                            .map(SdpAnswerParserTest::regexParseCandidate)
+                            .filter(x -> x != null)
+                            .collect(Collectors.toList()))
+                    .build());
+        }
+        return answers;
+    }
+}
@@ -0,0 +1,250 @@
+package com.connectclub.jvbuster.videobridge;
+
+import com.connectclub.jvbuster.videobridge.data.OfferDelta;
+import com.connectclub.jvbuster.videobridge.data.PrevOffer;
+import com.connectclub.jvbuster.videobridge.data.Subscription;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.connectclub.jvbuster.videobridge.data.sdp.SessionDescription;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SdpUtilsTest {
+
+    private static Channel channel(String id, String endpoint, Channel.Direction direction, List<Long> ssrcs, List<SsrcGroup> ssrcGroups) {
+        return Channel.builder()
+                .id(id)
+                .endpoint(endpoint)
+                .direction(direction)
+                .ssrcs(ssrcs)
+                .sources(direction == Channel.Direction.SENDRECV ? List.of(1L) : List.of())
+                .ssrcGroups(ssrcGroups)
+                .build();
+    }
+
+    static Conference conference(int endpoints, int leftEndpoint) {
+        Content.ContentBuilder audio = Content.builder().name("audio");
+        Content.ContentBuilder video = Content.builder().name("video");
+        Content.ContentBuilder data = Content.builder().name("data");
+        for (int i = 0; i < endpoints; i++) {
+            String endpoint = "endpoint" + i;
+            Channel.Direction direction = i == 0 ? Channel.Direction.SENDRECV : Channel.Direction.SENDONLY;
+            if (i != leftEndpoint) {
+                audio.channel(channel("audio" + i, endpoint, direction, List.of(100L + i), List.of()));
+            }
+            video.channel(channel("video" + i, endpoint, direction, List.of(200L + i, 300L + i), List.of(SsrcGroup.build("FID", List.of(200L + i, 300L + i)))));
+            data.sctpConnection(SctpConnection.builder().id("sctp" + i).endpoint(endpoint).build());
+        }
+        Transport transport = Transport.builder()
+                .ufrag("ufrag")
+                .pwd("pwd")
+                .rtcpMux(true)
+                .fingerprints(List.of(Fingerprint.builder().hash("sha-256").fingerprint("AB:CD").setup("actpass").build()))
+                .candidates(List.of(
+                        Candidate.builder().foundation("1").component(1).protocol(Candidate.Protocol.UDP).priority(2130706431)
+                                .ip("10.0.0.1").port(10000).type(Candidate.Type.HOST).generation("0").build(),
+                        Candidate.builder().foundation("2").component(1).protocol(Candidate.Protocol.UDP).priority(1694498815)
+                                .ip("1.2.3.4").port(10000).type(Candidate.Type.SRFLX).relAddr("10.0.0.1").relPort(10000).generation("0").build()
+                ))
+                .build();
+        return Conference.builder()
+                .id("conference")
+                .contents(List.of(audio.build(), video.build(), data.build()))
+                .channelBundles(List.of(ChannelBundle.builder().id("endpoint0").transport(transport).build()))
+                .endpoints(List.of(Endpoint.builder().id("endpoint0").uuid(UUID.nameUUIDFromBytes("endpoint0".getBytes())).build()))
+                .build();
+    }
+
+    private static List<String> section(String sdp, String mid) {
+        return Arrays.stream(SdpUtils.splitSdpIntoSections(sdp))
+                .filter(x -> x.contains("\r\na=mid:" + mid + "\r\n"))
+                .findFirst()
+                .map(x -> Arrays.asList(x.split("\r\n")))
+                .orElseThrow();
+    }
+
+    @Test
+    public void remoteMediaSectionTest() {
+        String sdp = SdpUtils.toOfferSdp(conference(3, -1), "endpoint0", null, null).append(new StringBuilder()).toString();
+
+        assertEquals(List.of(
+                "m=video 1 RTP/SAVPF 100 96",
+                "c=IN IP4 0.0.0.0",
+                "a=rtcp:1 IN IP4 0.0.0.0",
+                "a=sendonly",
+                "a=rtpmap:100 VP8/90000",
+                "a=rtpmap:96 rtx/90000",
+                "a=fmtp:100 max-fr=30; max-recv-height=360; max-recv-width=360",
+                "a=fmtp:96 apt=100",
+                "a=rtcp-fb:100 ccm fir",
+                "a=rtcp-fb:100 nack",
+                "a=rtcp-fb:100 nack pli",
+                "a=rtcp-fb:100 transport-cc",
+                "a=rtcp-fb:96 ccm fir",
+                "a=rtcp-fb:96 nack",
+                "a=rtcp-fb:96 nack pli",
+                "a=extmap:3 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time",
+                "a=extmap:5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01",
+                "a=mid:video-video2",
+                "a=rtcp-mux",
+                "a=candidate:1 1 udp 2130706431 10.0.0.1 10000 typ host generation 0",
+                "a=candidate:2 1 udp 1694498815 1.2.3.4 10000 typ srflx raddr 10.0.0.1 rport 10000 generation 0",
+                "a=msid:endpoint2 video2",
+                "a=ssrc-group:FID 202 302",
+                "a=ssrc:202 cname:endpoint2",
+                "a=ssrc:302 cname:endpoint2"
+        ), section(sdp, "video-video2"));
+        assertEquals(List.of(
+                "m=audio 1 RTP/SAVPF 111",
+                "c=IN IP4 0.0.0.0",
+                "b=AS:16",
+                "a=rtcp:1 IN IP4 0.0.0.0",
+                "a=recvonly",
+                "a=rtpmap:111 opus/48000/2",
+                "a=fmtp:111 minptime=10; stereo=0; useinbandfec=1",
+                "a=rtcp-fb:111 transport-cc",
+                "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level",
+                "a=extmap:5 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01",
+                "a=mid:audio-mixed-audio0",
+                "a=msid:mixedmslabel audio",
+                "a=ssrc:1 cname:mixed",
+                "a=rtcp-mux",
+                "a=candidate:1 1 udp 2130706431 10.0.0.1 10000 typ host generation 0",
+                "a=candidate:2 1 udp 1694498815 1.2.3.4 10000 typ srflx raddr 10.0.0.1 rport 10000 generation 0"
+        ), section(sdp, "audio-mixed-audio0"));
+    }
+
+    @Test
+    public void prevOfferOrderIsKeptTest() {
+        SessionDescription first = SdpUtils.toOfferSdp(conference(4, -1), "endpoint0", 300L, null);
+        String firstSdp = first.append(new StringBuilder()).toString();
+        String[] firstSections = SdpUtils.splitSdpIntoSections(firstSdp);
+        List<String> channels = SdpUtils.getOtherMediaIds(firstSections);
+        assertEquals(6, channels.size());
+
+        // the audio of endpoint2 is gone, its section is disabled in place
+        String secondSdp = SdpUtils.toOfferSdp(conference(4, 2), "endpoint0", 300L, PrevOffer.builder()
+                .conferenceId("conference")
+                .sessionId(first.getOrigin().getSessId())
+                .sessionVersion(first.getOrigin().getSessVersion())
+                .channels(channels)
+                .build()
+        ).append(new StringBuilder()).toString();
+        String[] secondSections = SdpUtils.splitSdpIntoSections(secondSdp);
+
+        assertEquals(firstSections.length, secondSections.length);
+        assertEquals(first.getOrigin().getSessVersion() + 1, SdpUtils.getOrigin(secondSections).getSessVersion());
+        assertEquals(
+                channels.stream().map(x -> x.equals("audio-audio2") ? "audio" : x).collect(Collectors.toList()),
+                SdpUtils.getOtherMediaIds(secondSections)
+        );
+        for (int i = 1; i < firstSections.length; i++) {
+            if (!firstSections[i].contains("a=mid:audio-audio2\r\n")) {
+                assertEquals(firstSections[i], secondSections[i]);
+            }
+        }
+    }
+
+    private static PrevOffer prevOffer(SessionDescription offer, String[] sdpSections) {
+        return PrevOffer.builder()
+                .conferenceId("conference")
+                .sessionId(offer.getOrigin().getSessId())
+                .sessionVersion(offer.getOrigin().getSessVersion())
+                .channels(SdpUtils.getOtherMediaIds(sdpSections))
+                .build();
+    }
+
+    @Test
+    public void offerDeltaTest() {
+        SessionDescription first = SdpUtils.toOfferSdp(conference(4, -1), "endpoint0", 300L, null);
+        String[] firstSections = SdpUtils.splitSdpIntoSections(first.append(new StringBuilder()).toString());
+
+        // endpoint2 stops sending audio and endpoint4 joins
+        SessionDescription second = SdpUtils.toOfferSdp(conference(5, 2), "endpoint0", 300L, prevOffer(first, firstSections));
+        OfferDelta secondDelta = SdpUtils.toOfferDelta(second, "conference", firstSections);
+        String[] secondSections = SdpUtils.splitSdpIntoSections(second.append(new StringBuilder()).toString());
+
+        assertEquals("conference", secondDelta.getConferenceId());
+        assertEquals(first.getOrigin().getSessVersion() + 1, secondDelta.getSessionVersion());
+        assertEquals(secondSections[0] + "\r\n", secondDelta.getSessionDetails());
+        assertEquals(secondSections.length - 1, secondDelta.getMediaCount());
+        assertEquals(
+                List.of(OfferDelta.Change.REMOVED, OfferDelta.Change.ADDED, OfferDelta.Change.ADDED),
+                secondDelta.getSections().stream().map(OfferDelta.Section::getChange).collect(Collectors.toList())
+        );
+        for (OfferDelta.Section section : secondDelta.getSections()) {
+            assertEquals(secondSections[section.getIndex() + 1].stripTrailing(), section.getSdp().stripTrailing());
+        }
+        assertTrue(secondDelta.getSections().get(0).getSdp().startsWith("m=audio 0 "));
+
+        // endpoint2 sends audio again, its channel takes the disabled slot
+        SessionDescription third = SdpUtils.toOfferSdp(conference(5, -1), "endpoint0", 300L, prevOffer(second, secondSections));
+        OfferDelta thirdDelta = SdpUtils.toOfferDelta(third, "conference", secondSections);
+        assertEquals(1, thirdDelta.getSections().size());
+        assertEquals(OfferDelta.Change.REUSED, thirdDelta.getSections().get(0).getChange());
+        assertEquals(secondDelta.getSections().get(0).getIndex(), thirdDelta.getSections().get(0).getIndex());
+        assertTrue(thirdDelta.getSections().get(0).getSdp().contains("\r\na=mid:audio-audio2\r\n"));
+
+        // nothing has changed
+        SessionDescription fourth = SdpUtils.toOfferSdp(conference(5, -1), "endpoint0", 300L, prevOffer(third, SdpUtils.splitSdpIntoSections(third.append(new StringBuilder()).toString())));
+        assertEquals(List.of(), SdpUtils.toOfferDelta(fourth, "conference", SdpUtils.splitSdpIntoSections(third.append(new StringBuilder()).toString())).getSections());
+    }
+
+    private static List<String> subscribedOffer(SessionDescription prev, Subscription subscription, List<SessionDescription> offers) {
+        String[] prevSections = prev == null ? null : SdpUtils.splitSdpIntoSections(prev.append(new StringBuilder()).toString());
+        SessionDescription offer = SdpUtils.toOfferSdp(conference(5, -1), "endpoint0", 300L, prev == null ? null : prevOffer(prev, prevSections), subscription);
+        offers.add(offer);
+        return SdpUtils.getOtherMediaIds(SdpUtils.splitSdpIntoSections(offer.append(new StringBuilder()).toString()));
+    }
+
+    @Test
+    public void subscriptionTest() {
+        List<SessionDescription> offers = new ArrayList<>();
+
+        List<String> first = subscribedOffer(null, Subscription.builder().endpoints(Set.of("endpoint1", "endpoint2")).build(), offers);
+        assertEquals(Set.of("audio-audio1", "video-video1", "audio-audio2", "video-video2"), Set.copyOf(first));
+        assertEquals(4, first.size());
+
+        // the sections of endpoint1 are disabled in place, endpoint3 is added
+        List<String> second = subscribedOffer(offers.get(0), Subscription.builder().endpoints(Set.of("endpoint2", "endpoint3")).build(), offers);
+        assertEquals(6, second.size());
+        for (int i = 0; i < first.size(); i++) {
+            String channel = first.get(i);
+            assertEquals(channel.endsWith("1") ? channel.split("-")[0] : channel, second.get(i));
+        }
+        assertEquals(Set.of("audio-audio3", "video-video3"), Set.copyOf(second.subList(4, 6)));
+
+        // endpoint4 takes the disabled sections, the offer does not grow
+        List<String> third = subscribedOffer(offers.get(1), Subscription.builder().endpoints(Set.of("endpoint2", "endpoint4")).build(), offers);
+        assertEquals(6, third.size());
+        assertEquals(
+                Set.of("audio-audio2", "video-video2", "audio-audio4", "video-video4"),
+                third.stream().filter(x -> x.contains("-")).collect(Collectors.toSet())
+        );
+        for (int i = 0; i < second.size(); i++) {
+            if (second.get(i).startsWith("audio-audio2") || second.get(i).startsWith("video-video2")) {
+                assertEquals(second.get(i), third.get(i));
+            }
+        }
+
+        // the endpoints of the previous offer are kept first
+        List<String> fourth = subscribedOffer(offers.get(2), Subscription.builder().limit(1).build(), offers);
+        assertEquals(6, fourth.size());
+        assertEquals(
+                Set.of("audio-audio2", "video-video2"),
+                fourth.stream().filter(x -> x.contains("-")).collect(Collectors.toSet())
+        );
+
+        List<String> all = subscribedOffer(null, Subscription.ALL, offers);
+        assertEquals(SdpUtils.getOtherMediaIds(SdpUtils.splitSdpIntoSections(
+                SdpUtils.toOfferSdp(conference(5, -1), "endpoint0", 300L, null).append(new StringBuilder()).toString()
+        )), all);
+    }
+}
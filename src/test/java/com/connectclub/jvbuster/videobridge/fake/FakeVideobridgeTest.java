@@ -0,0 +1,108 @@
+package com.connectclub.jvbuster.videobridge.fake;
+
+import com.connectclub.jvbuster.exception.EndpointNotFound;
+import com.connectclub.jvbuster.repository.data.JvbConferenceData;
+import com.connectclub.jvbuster.videobridge.ConferenceIndex;
+import com.connectclub.jvbuster.videobridge.JvbConferenceUtils;
+import com.connectclub.jvbuster.videobridge.JvbInstance;
+import com.connectclub.jvbuster.videobridge.data.jvb.*;
+import com.connectclub.jvbuster.videobridge.exception.JvbInstanceRestException;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FakeVideobridgeTest {
+
+    private FakeVideobridge videobridge;
+    private JvbInstance jvbInstance;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        videobridge = new FakeVideobridge(0).start();
+        jvbInstance = new JvbInstance("fake-1", "fake", "http", "127.0.0.1", videobridge.getPort(), null, false, true, 0, new OkHttpClient());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        videobridge.stop();
+    }
+
+    private Conference addEndpoint(Conference conference, String endpoint) throws IOException, JvbInstanceRestException {
+        JvbConferenceData jvbConferenceData = JvbConferenceData.builder()
+                .confId(conference.getId())
+                .gid(conference.getGid())
+                .build();
+        return jvbInstance.patchConference(JvbConferenceUtils.buildPatchWithNewEndpoint(jvbConferenceData, endpoint, endpoint, Channel.Direction.SENDRECV));
+    }
+
+    @Test
+    public void endpointLifecycleTest() throws IOException, JvbInstanceRestException {
+        Conference conference = jvbInstance.createConference("gid-1");
+        assertEquals("gid-1", conference.getGid());
+
+        addEndpoint(conference, "endpoint-1");
+        Conference patched = addEndpoint(conference, "endpoint-2");
+
+        ConferenceIndex index = ConferenceIndex.of(patched);
+        assertTrue(index.hasEndpoint("endpoint-1"));
+        assertNotNull(index.getEndpoint("endpoint-2").getUuid());
+        assertEquals(1, index.getChannels("endpoint-1", "audio").size());
+        assertEquals(1, index.getChannels("endpoint-2", "video").size());
+        assertEquals(1, index.getSctpConnections("endpoint-1").size());
+        assertFalse(index.getChannelBundle("endpoint-1").getTransport().getFingerprints().isEmpty());
+        assertTrue(index.getSendingChannels("audio").isEmpty());
+
+        Conference endpointView = jvbInstance.getConference(conference.getId(), "endpoint-1");
+        assertEquals(1, ConferenceIndex.of(endpointView).getChannels("audio").size());
+        assertEquals(1, endpointView.getChannelBundles().size());
+
+        Channel audioChannel = index.getChannels("endpoint-1", "audio").get(0);
+        audioChannel.setSources(List.of(1L));
+        audioChannel.setSsrcs(List.of());
+        jvbInstance.patchConference(Conference.builder()
+                .id(conference.getId())
+                .contents(List.of(Content.builder().name("audio").channel(audioChannel).build()))
+                .build());
+        Stats stats = jvbInstance.getStats();
+        assertEquals(1, stats.getEndpointsSendingAudio());
+        assertEquals(1, stats.getReceiveOnlyEndpoints());
+
+        Conference expired = jvbInstance.patchConference(JvbConferenceUtils.buildPatchWithExpiredEndpoint(patched, "endpoint-2"));
+        assertTrue(ConferenceIndex.of(expired).getChannels("endpoint-2", "audio").isEmpty());
+        assertTrue(ConferenceIndex.of(expired).getSctpConnections("endpoint-2").isEmpty());
+
+        jvbInstance.deleteEndpoint(conference.getId(), "endpoint-1");
+        assertFalse(ConferenceIndex.of(jvbInstance.getConference(conference.getId())).hasEndpoint("endpoint-1"));
+    }
+
+    @Test
+    public void unknownSctpConnectionTest() throws IOException, JvbInstanceRestException {
+        Conference conference = jvbInstance.createConference("gid-1");
+        Conference patch = Conference.builder()
+                .id(conference.getId())
+                .contents(List.of(Content.builder()
+                        .name("data")
+                        .sctpConnection(SctpConnection.builder().id("unknown").expire(10).endpoint("endpoint-1").build())
+                        .build()))
+                .build();
+        assertThrows(EndpointNotFound.class, () -> jvbInstance.patchConference(patch));
+    }
+
+    @Test
+    public void injectedErrorsTest() throws IOException, JvbInstanceRestException {
+        videobridge.setConferenceExpireInMillis(0);
+        jvbInstance.createConference("gid-1");
+        assertEquals(1, jvbInstance.expireConferences().size());
+        assertEquals(0, videobridge.getConferencesCount());
+
+        videobridge.setErrorRate(1);
+        JvbInstanceRestException e = assertThrows(JvbInstanceRestException.class, () -> jvbInstance.getStats());
+        assertEquals(500, e.getResponseCode());
+    }
+}
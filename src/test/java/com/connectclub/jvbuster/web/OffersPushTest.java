@@ -0,0 +1,60 @@
+package com.connectclub.jvbuster.web;
+
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.NewVideobridgeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RedissonClient;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OffersPushTest {
+
+    @Mock
+    private NewVideobridgeService newVideobridgeService;
+
+    @Mock
+    private ConferenceVersionService conferenceVersionService;
+
+    private Consumer<String> versionListener;
+
+    private OffersPush offersPush;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void beforeEach() {
+        offersPush = new OffersPush(3600000, Runnable::run, newVideobridgeService, new SingleFlight(false, 5000, Runnable::run, mock(RedissonClient.class)), conferenceVersionService);
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(conferenceVersionService).addListener(listener.capture());
+        versionListener = listener.getValue();
+    }
+
+    @Test
+    public void onlyOutdatedSubscribersGetOffersTest() throws Exception {
+        when(conferenceVersionService.get("gid")).thenReturn(7L, 7L, 8L);
+        when(conferenceVersionService.getAsync("gid")).thenReturn(CompletableFuture.completedFuture(7L), CompletableFuture.completedFuture(8L));
+        when(newVideobridgeService.getCurrentOffers(any(), any())).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        offersPush.subscribe("gid", "ep-1", 7);
+        offersPush.subscribe("gid", "ep-2", 6);
+        verify(newVideobridgeService, never()).getCurrentOffers("gid", "ep-1");
+        verify(newVideobridgeService).getCurrentOffers("gid", "ep-2");
+
+        versionListener.accept("gid");
+        verify(newVideobridgeService).getCurrentOffers("gid", "ep-1");
+        verify(newVideobridgeService, times(2)).getCurrentOffers("gid", "ep-2");
+
+        versionListener.accept("other-gid");
+        verifyNoMoreInteractions(newVideobridgeService);
+    }
+}
@@ -0,0 +1,43 @@
+package com.connectclub.jvbuster.web;
+
+import com.connectclub.jvbuster.SessionDescriptionTest;
+import com.connectclub.jvbuster.videobridge.data.sdp.SdpWriter;
+import com.connectclub.jvbuster.web.data.SdpOffers;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SdpOffersHttpMessageConverterTest {
+
+    @Test
+    public void offersAreWrittenAsTextTest() throws Exception {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        new SdpOffersHttpMessageConverter().write(
+                new SdpOffers(List.of(SessionDescriptionTest.sessionDescription, SessionDescriptionTest.sessionDescription)),
+                MediaType.TEXT_PLAIN,
+                outputMessage
+        );
+
+        assertEquals(
+                String.join("\r\n", SessionDescriptionTest.expectedSessionDescriptionString, SessionDescriptionTest.expectedSessionDescriptionString),
+                outputMessage.getBodyAsString(StandardCharsets.ISO_8859_1)
+        );
+        assertEquals("text/plain;charset=ISO-8859-1", outputMessage.getHeaders().getContentType().toString());
+    }
+
+    @Test
+    public void smallBufferIsFlushedTest() {
+        StringWriter stringWriter = new StringWriter();
+        try (SdpWriter writer = new SdpWriter(stringWriter, 0)) {
+            SessionDescriptionTest.sessionDescription.write(writer);
+            writer.append(-1234567890123L).append(Long.MIN_VALUE);
+        }
+        assertEquals(SessionDescriptionTest.expectedSessionDescriptionString + "-1234567890123" + Long.MIN_VALUE, stringWriter.toString());
+    }
+}
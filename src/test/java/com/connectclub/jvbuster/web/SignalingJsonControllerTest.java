@@ -0,0 +1,77 @@
+package com.connectclub.jvbuster.web;
+
+import com.connectclub.jvbuster.security.VideobridgeAuthenticationToken;
+import com.connectclub.jvbuster.videobridge.data.VideobridgeConferenceOffer;
+import com.connectclub.jvbuster.videobridge.i.ConferenceVersionService;
+import com.connectclub.jvbuster.videobridge.i.NewVideobridgeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RedissonClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SignalingJsonControllerTest {
+
+    @Mock
+    private NewVideobridgeService newVideobridgeService;
+
+    @Mock
+    private ConferenceVersionService conferenceVersionService;
+
+    private final VideobridgeAuthenticationToken authToken = new VideobridgeAuthenticationToken(false, "ep", "gid");
+
+    private SignalingJsonController signalingJsonController;
+
+    @BeforeEach
+    public void beforeEach() {
+        SingleFlight singleFlight = new SingleFlight(false, 5000, Runnable::run, mock(RedissonClient.class));
+        signalingJsonController = new SignalingJsonController(
+                newVideobridgeService,
+                singleFlight,
+                conferenceVersionService,
+                new OffersPush(3600000, Runnable::run, newVideobridgeService, singleFlight, conferenceVersionService),
+                Runnable::run
+        );
+    }
+
+    @Test
+    public void currentOffersNotModifiedTest() throws Exception {
+        when(conferenceVersionService.get("gid")).thenReturn(5L);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/signaling-new/current-offers");
+        request.addHeader("If-None-Match", "\"5\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(signalingJsonController.getCurrentOffers(authToken, new ServletWebRequest(request, response)));
+        assertEquals(304, response.getStatus());
+        verifyNoInteractions(newVideobridgeService);
+    }
+
+    @Test
+    public void currentOffersModifiedTest() throws Exception {
+        List<VideobridgeConferenceOffer> offers = List.of(VideobridgeConferenceOffer.builder().videobridgeId("jvb-1").build());
+        when(conferenceVersionService.get("gid")).thenReturn(6L);
+        when(conferenceVersionService.getAsync("gid")).thenReturn(CompletableFuture.completedFuture(6L));
+        when(newVideobridgeService.getCurrentOffers("gid", "ep")).thenReturn(CompletableFuture.completedFuture(offers));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/signaling-new/current-offers");
+        request.addHeader("If-None-Match", "\"5\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<List<VideobridgeConferenceOffer>> responseEntity = signalingJsonController.getCurrentOffers(authToken, new ServletWebRequest(request, response)).get();
+        assertSame(offers, responseEntity.getBody());
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertEquals("\"6\"", responseEntity.getHeaders().getETag());
+    }
+}
@@ -0,0 +1,64 @@
+package com.connectclub.jvbuster.web;
+
+import com.connectclub.jvbuster.exception.EndpointNotFound;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class SingleFlightTest {
+
+    private SingleFlight singleFlight;
+
+    @BeforeEach
+    public void beforeEach() {
+        singleFlight = new SingleFlight(false, 5000, Runnable::run, mock(RedissonClient.class));
+    }
+
+    @Test
+    public void concurrentRequestsShareComputationTest() throws Exception {
+        CompletableFuture<String> computation = new CompletableFuture<>();
+        AtomicInteger computations = new AtomicInteger();
+        CompletableFuture<String> first = singleFlight.execute("op", "gid", "ep", String.class, () -> {
+            computations.incrementAndGet();
+            return computation;
+        });
+        CompletableFuture<String> second = singleFlight.execute("op", "gid", "ep", String.class, () -> {
+            computations.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertFalse(second.isDone());
+        computation.complete("result");
+
+        assertEquals("result", first.get(5, TimeUnit.SECONDS));
+        assertEquals("result", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, computations.get());
+        assertEquals("next", singleFlight.execute("op", "gid", "ep", String.class, () -> CompletableFuture.completedFuture("next")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failureIsSharedTest() {
+        CompletableFuture<String> computation = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("op", "gid", "ep", String.class, () -> computation);
+        CompletableFuture<String> second = singleFlight.execute("op", "gid", "ep", String.class, () -> CompletableFuture.completedFuture("other"));
+        computation.completeExceptionally(new EndpointNotFound());
+
+        assertTrue(assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause() instanceof EndpointNotFound);
+        assertTrue(assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause() instanceof EndpointNotFound);
+    }
+
+    @Test
+    public void thrownFailureIsSharedTest() {
+        CompletableFuture<String> first = singleFlight.execute("op", "gid", "ep", String.class, () -> {
+            throw new EndpointNotFound();
+        });
+
+        assertTrue(assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause() instanceof EndpointNotFound);
+        assertEquals("next", singleFlight.execute("op", "gid", "ep", String.class, () -> CompletableFuture.completedFuture("next")).join());
+    }
+}